@@ -0,0 +1,219 @@
+import {css, html, LitElement} from 'lit';
+
+// Viewport.MARGIN and SpriteAtlas.CELL on the server
+const MARGIN = 5;
+const CELL = 60;
+
+const CLOSED = 0;
+const FLAGGED = 1;
+const PIECE = 2;
+const FREE = 3;
+
+/**
+ * Draws the board from cell states sent by BoardDeltas, so the server never issues canvas calls.
+ * Clicks and wheel input are reported with canvas offsets, like the server-drawn canvas does.
+ */
+class ChessBoard extends LitElement {
+
+  static get properties() {
+    return {
+      atlas: {type: String},
+      hoverColor: {type: String},
+      viewportInterval: {type: Number},
+    };
+  }
+
+  static get styles() {
+    return css`
+      :host {
+        display: inline-block;
+        position: relative;
+      }
+
+      canvas {
+        display: block;
+      }
+
+      .hover {
+        position: absolute;
+        pointer-events: none;
+        box-sizing: border-box;
+        display: none;
+      }
+    `;
+  }
+
+  constructor() {
+    super();
+    this.viewportInterval = 0;
+    this.__window = {size: 0, x: 0, y: 0, tiles: 0, tile: CELL};
+    this.__cells = new Map();
+    this.__wheel = {x: 0, y: 0, panX: 0, panY: 0, zoom: 0, offsetX: 0, offsetY: 0, timer: null};
+  }
+
+  render() {
+    return html`
+      <canvas
+          @click=${e => this.__click(e, 0)}
+          @contextmenu=${e => this.__click(e, 2)}
+          @mousemove=${this.__hover}
+          @mouseleave=${() => this.__highlight.style.display = 'none'}
+          @wheel=${this.__onWheel}></canvas>
+      <div class="hover"></div>`;
+  }
+
+  firstUpdated() {
+    this.__canvas = this.renderRoot.querySelector('canvas');
+    this.__highlight = this.renderRoot.querySelector('.hover');
+    this.__draw();
+  }
+
+  updated(changed) {
+    if (changed.has('atlas') && this.atlas) {
+      this.__image = new Image();
+      this.__image.onload = () => this.__draw();
+      this.__image.src = this.atlas;
+    }
+  }
+
+  /**
+   * Applies one message: a whole window or changed cells, see BoardDeltas.
+   */
+  apply(message) {
+    const data = JSON.parse(message);
+    let i = 1;
+    if (data[0] === 1) {
+      const [, size, x, y, tiles, tile] = data;
+      this.__window = {size, x, y, tiles, tile};
+      this.__cells.clear();
+      for (i = 6; i < data.length; i += 2) this.__cells.set(data[i], data[i + 1]);
+      this.__draw();
+      return;
+    }
+    const ctx = this.__context();
+    for (; i < data.length; i += 2) {
+      if (data[i + 1] === CLOSED) {
+        this.__cells.delete(data[i]);
+      } else {
+        this.__cells.set(data[i], data[i + 1]);
+      }
+      if (ctx) this.__drawCell(ctx, data[i]);
+    }
+  }
+
+  __context() {
+    return this.__canvas ? this.__canvas.getContext('2d') : null;
+  }
+
+  __draw() {
+    const ctx = this.__context();
+    if (!ctx) return;
+    const w = this.__window;
+    // like Viewport.getCanvasSize(); assigning the size also clears the canvas
+    const size = Math.trunc(w.tile * w.tiles + 2 * MARGIN);
+    this.__canvas.width = size;
+    this.__canvas.height = size;
+    this.__highlight.style.width = this.__highlight.style.height = w.tile + 'px';
+    this.__highlight.style.border = '4px solid ' + (this.hoverColor || '#39547D');
+    for (let cell = 0; cell < w.tiles * w.tiles; cell++) this.__drawCell(ctx, cell);
+  }
+
+  __drawCell(ctx, cell) {
+    const w = this.__window;
+    const x = w.x + cell % w.tiles;
+    const y = w.y + Math.trunc(cell / w.tiles);
+    const left = MARGIN + (x - w.x) * w.tile;
+    const top = MARGIN + (y - w.y) * w.tile;
+    const state = this.__cells.get(cell) || CLOSED;
+    const kind = state & 3;
+    const value = state >> 2;
+    if (kind === CLOSED || kind === FLAGGED) {
+      ctx.fillStyle = (x % 2 + y % 2) % 2 === 0 ? '#076271' : '#20457D';
+      ctx.fillRect(left, top, w.tile, w.tile);
+      if (kind === FLAGGED) this.__drawSprite(ctx, value, 0, left, top);
+      return;
+    }
+    ctx.fillStyle = '#ADB9C9';
+    ctx.fillRect(left, top, w.tile, w.tile);
+    ctx.strokeStyle = 'black';
+    ctx.lineWidth = 4;
+    ctx.strokeRect(left + 2, top + 2, w.tile - 4, w.tile - 4);
+    if (kind === PIECE) {
+      this.__drawSprite(ctx, value, 1, left, top);
+    } else if (value > 0) {
+      ctx.fillStyle = 'black';
+      ctx.font = w.tile / 2 + 'px serif';
+      ctx.fillText(String(value), left + w.tile / 2.6087, top + w.tile / 1.5);
+    }
+  }
+
+  __drawSprite(ctx, column, row, left, top) {
+    // drawn once the image arrives, by the full redraw in its onload
+    if (!this.__image || !this.__image.complete) return;
+    const tile = this.__window.tile;
+    ctx.drawImage(this.__image, column * CELL, row * CELL, CELL, CELL,
+        left + tile * 0.03, top + tile * 0.03, tile * 0.94, tile * 0.94);
+  }
+
+  __tileAt(offset) {
+    const w = this.__window;
+    if (offset < MARGIN) return -1;
+    const tile = Math.trunc((offset - MARGIN) / w.tile);
+    return tile < w.tiles ? tile : -1;
+  }
+
+  __click(e, button) {
+    e.preventDefault();
+    this.dispatchEvent(new CustomEvent('board-click', {detail: {offsetX: e.offsetX, offsetY: e.offsetY, button}}));
+  }
+
+  __hover(e) {
+    const x = this.__tileAt(e.offsetX);
+    const y = this.__tileAt(e.offsetY);
+    const style = this.__highlight.style;
+    if (x < 0 || y < 0) {
+      style.display = 'none';
+      return;
+    }
+    style.left = (MARGIN + x * this.__window.tile) + 'px';
+    style.top = (MARGIN + y * this.__window.tile) + 'px';
+    style.display = 'block';
+  }
+
+  /**
+   * Wheel pans by whole tiles, ctrl + wheel zooms; sent at most once per viewportInterval.
+   */
+  __onWheel(e) {
+    if (!this.viewportInterval) return;
+    e.preventDefault();
+    const v = this.__wheel;
+    const unit = e.deltaMode === 1 ? 16 : e.deltaMode === 2 ? this.__canvas.height : 1;
+    if (e.ctrlKey) {
+      v.zoom -= Math.sign(e.deltaY);
+      v.offsetX = e.offsetX;
+      v.offsetY = e.offsetY;
+    } else {
+      const tile = this.__window.tile;
+      v.x += (e.shiftKey && !e.deltaX ? e.deltaY : e.deltaX) * unit;
+      v.y += (e.shiftKey && !e.deltaX ? 0 : e.deltaY) * unit;
+      const dx = Math.trunc(v.x / tile);
+      const dy = Math.trunc(v.y / tile);
+      v.x -= dx * tile;
+      v.y -= dy * tile;
+      v.panX += dx;
+      v.panY += dy;
+    }
+    if (!v.timer) v.timer = setTimeout(() => this.__sendViewport(), this.viewportInterval);
+  }
+
+  __sendViewport() {
+    const v = this.__wheel;
+    v.timer = null;
+    if (!v.panX && !v.panY && !v.zoom) return;
+    this.dispatchEvent(new CustomEvent('viewport-change', {detail: {
+      panX: v.panX, panY: v.panY, zoom: v.zoom, offsetX: v.offsetX, offsetY: v.offsetY}}));
+    v.panX = v.panY = v.zoom = 0;
+  }
+}
+
+customElements.define('chess-board', ChessBoard);
@@ -0,0 +1,208 @@
+package ua.oleksiienko.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ua.oleksiienko.entities.BitBoard;
+import ua.oleksiienko.entities.Board;
+import ua.oleksiienko.entities.ChangeSet;
+import ua.oleksiienko.entities.GameBoard;
+import ua.oleksiienko.services.NoGuessGenerator;
+import ua.oleksiienko.solver.Deduction;
+import ua.oleksiienko.solver.Position;
+import ua.oleksiienko.solver.Solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The board engines: construction with piece placement, flood-fill opening, flag cycling and the
+ * end-of-game checks, and the solver on the positions of a game. Counted pieces build a {@link Board}; {@code pieces=default} goes through
+ * {@link GameBoard#of} like the game does, so at size 8 it measures the
+ * {@link BitBoard} players actually get.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BoardBenchmark {
+
+    @State(Scope.Thread)
+    public static class Layout {
+
+        @Param({"8", "64", "512", "2048"})
+        int size;
+
+        @Param({"6", "default", "25%"})
+        String pieces;
+
+        long seed;
+    }
+
+    @Benchmark
+    public GameBoard construct(Layout layout) {
+        return Boards.of(layout.size, layout.pieces, layout.seed++);
+    }
+
+    /**
+     * A board that is thrown away after one opening, as opening changes it for good. With no
+     * pieces the whole board floods open, the worst case for the fill.
+     */
+    @State(Scope.Thread)
+    public static class Fresh {
+
+        @Param({"8", "64", "512", "2048"})
+        int size;
+
+        @Param({"0", "default", "25%"})
+        String pieces;
+
+        GameBoard board;
+        int x;
+        int y;
+        private long seed;
+
+        @Setup(Level.Invocation)
+        public void setUp() {
+            board = Boards.of(size, pieces, seed++);
+            int start = Boards.startCell(board);
+            x = start / size;
+            y = start % size;
+        }
+    }
+
+    @Benchmark
+    public ChangeSet openCell(Fresh fresh) {
+        return fresh.board.openCell(fresh.x, fresh.y, true);
+    }
+
+    @State(Scope.Thread)
+    public static class Played {
+
+        @Param({"8", "64", "512", "2048"})
+        int size;
+
+        @Param({"6", "default", "25%"})
+        String pieces;
+
+        GameBoard board;
+        int x;
+        int y;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            board = Boards.of(size, pieces, 42);
+            int free = Boards.startCell(board);
+            Boards.flagAllCorrectly(board);
+            x = free / size;
+            y = free % size;
+        }
+    }
+
+    /**
+     * Seven clicks take a closed cell through every flag and back to closed.
+     */
+    @Benchmark
+    @OperationsPerInvocation(7)
+    public int flagNextCycle(Played played) {
+        for (int i = 0; i < 7; i++) {
+            played.board.flagNext(played.x, played.y);
+        }
+        return played.board.getFlaggedCount();
+    }
+
+    @Benchmark
+    public boolean checkWin(Played played) {
+        return played.board.checkWin();
+    }
+
+    @Benchmark
+    public boolean checkAllFlagged(Played played) {
+        return played.board.checkAllFlagged();
+    }
+
+    /**
+     * The positions 8x8 games pass through: each board is opened at its start, then at every cell
+     * the solver proves safe until it proves none. A few positions run into the search budget and
+     * carry the mean, so the target is checked on the median once the trial is over.
+     */
+    @State(Scope.Thread)
+    public static class Game {
+
+        // median solve time typical positions have to meet
+        private static final long TARGET_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+        @Param({"200"})
+        int boards;
+
+        final Solver solver = new Solver();
+        final List<Position> positions = new ArrayList<>();
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            for (long seed = 0; seed < boards; seed++) {
+                GameBoard board = GameBoard.of(8, seed);
+                if (!NoGuessGenerator.openStart(board)) continue;
+                while (true) {
+                    Position position = Position.of(board);
+                    positions.add(position);
+                    Deduction deduction = solver.solve(position);
+                    if (deduction.isSolved() || !openSafe(board, deduction)) break;
+                }
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void checkTarget() {
+            // each position's best of three, so a stray pause on a busy machine doesn't count
+            long[] times = new long[positions.size()];
+            Arrays.fill(times, Long.MAX_VALUE);
+            for (int round = 0; round < 3; round++) {
+                for (int i = 0; i < times.length; i++) {
+                    long start = System.nanoTime();
+                    solver.solve(positions.get(i));
+                    times[i] = Math.min(times[i], System.nanoTime() - start);
+                }
+            }
+            Arrays.sort(times);
+            long median = times[times.length / 2];
+            if (median > TARGET_NANOS) {
+                throw new IllegalStateException(String.format("Median solve took %.3f ms over %d positions, the target is %.3f ms",
+                        median / 1e6, times.length, TARGET_NANOS / 1e6));
+            }
+        }
+
+        private static boolean openSafe(GameBoard board, Deduction deduction) {
+            boolean opened = false;
+            for (int x = 0; x < board.getSize(); x++) {
+                for (int y = 0; y < board.getSize(); y++) {
+                    if (board.getVisibility(x, y) != Board.CellVisibility.OPENED && deduction.isSafe(x, y)) {
+                        board.openCell(x, y, false);
+                        opened = true;
+                    }
+                }
+            }
+            return opened;
+        }
+    }
+
+    @Benchmark
+    public Deduction solve(Game game) {
+        return game.solver.solve(game.positions.get(game.next++ % game.positions.size()));
+    }
+}
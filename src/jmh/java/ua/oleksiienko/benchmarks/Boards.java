@@ -0,0 +1,71 @@
+package ua.oleksiienko.benchmarks;
+
+import ua.oleksiienko.entities.BitBoard;
+import ua.oleksiienko.entities.Board;
+import ua.oleksiienko.entities.GameBoard;
+import ua.oleksiienko.entities.Piece;
+
+/**
+ * Board set-ups shared by the benchmarks.
+ */
+final class Boards {
+
+    private Boards() {
+    }
+
+    /**
+     * Reads a piece count parameter: either a number of pieces or a percentage of the cells, like
+     * {@code "25%"}, so one value makes a dense board at every size.
+     */
+    static int pieces(String spec, int size) {
+        if (spec.endsWith("%")) {
+            return (int) ((long) size * size * Integer.parseInt(spec.substring(0, spec.length() - 1)) / 100);
+        }
+        return Math.min(Integer.parseInt(spec), size * size);
+    }
+
+    static Board create(int size, String pieces, long seed) {
+        return new Board(size, seed, pieces(pieces, size));
+    }
+
+    /**
+     * Like {@link #create}, except that {@code "default"} pieces builds the board players get from
+     * {@link GameBoard#of}, a {@link BitBoard} at 8x8.
+     */
+    static GameBoard of(int size, String pieces, long seed) {
+        return pieces.equals("default") ? GameBoard.of(size, seed) : create(size, pieces, seed);
+    }
+
+    /**
+     * The first empty cell, or the first cell without a piece if every free cell is attacked;
+     * {@code -1} if the board is full.
+     */
+    static int startCell(GameBoard board) {
+        int size = board.getSize();
+        int fallback = -1;
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                Board.CellStatus status = board.getStatus(x, y);
+                if (status == Board.CellStatus.EMPTY) return x * size + y;
+                if (fallback < 0 && status != Board.CellStatus.PIECED) fallback = x * size + y;
+            }
+        }
+        return fallback;
+    }
+
+    /**
+     * Flags every piece with its own type, the state {@link GameBoard#checkWin()} has to walk fully.
+     */
+    static void flagAllCorrectly(GameBoard board) {
+        int size = board.getSize();
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                Piece piece = board.getPiece(x, y);
+                if (piece == null) continue;
+                do {
+                    board.flagNext(x, y);
+                } while (board.getFlag(x, y) != piece);
+            }
+        }
+    }
+}
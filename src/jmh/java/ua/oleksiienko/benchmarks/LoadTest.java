@@ -0,0 +1,516 @@
+package ua.oleksiienko.benchmarks;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ua.oleksiienko.entities.Board;
+import ua.oleksiienko.entities.GameBoard;
+import ua.oleksiienko.journal.MoveJournal;
+import ua.oleksiienko.services.BoardImageRenderer;
+import ua.oleksiienko.services.BoardImages;
+import ua.oleksiienko.services.BoardPool;
+import ua.oleksiienko.services.GameExecutors;
+import ua.oleksiienko.services.GameMetrics;
+import ua.oleksiienko.services.GameSession;
+import ua.oleksiienko.services.PainterService.Rendering;
+import ua.oleksiienko.utils.BoardDeltas;
+import ua.oleksiienko.utils.BoardPainter;
+import ua.oleksiienko.utils.BoardRenderer;
+import ua.oleksiienko.utils.CanvasCommandBuffer;
+import ua.oleksiienko.utils.Viewport;
+import ua.oleksiienko.utils.VirtualThreads;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives many simulated players through the real {@link GameSession} logic, with every batch of
+ * canvas commands sent into a counter instead of a browser, and reports how the node holds up.
+ * <p>
+ * Players open or flag a tile of their window; the mouse moves on the way there stay in the
+ * browser, which draws the hover highlight, so they are not sent. Players mostly avoid pieces,
+ * so games last long enough to be realistic, and start a new game (taken from a
+ * {@link BoardPool}) when one is lost or all flags are placed. With {@code think-ms} above zero every player waits that long on
+ * average between events and latency is counted from when the event was due, so a saturated node
+ * shows up as queueing delay instead of as a lower event rate.
+ * <p>
+ * By default a few threads loop over all players, which measures the game logic alone. With
+ * {@code dispatch=pool} or {@code dispatch=virtual} each due event is handed to a thread of a
+ * fixed pool (as Tomcat does with a request) or to a new virtual thread, and {@code block-ms}
+ * makes every event wait that long, standing in for a database or another blocking call.
+ * {@code dispatch=virtual} needs a Java 21 runtime; the classes still target 17, so running Maven
+ * with {@code JAVA_HOME} set to a Java 21 JDK is enough, and the platform dispatches can be compared
+ * on the same runtime.
+ * {@code render=client} and {@code render=image} stand in for the other {@code chess-sweeper.render}
+ * modes, sending cell states or server-rendered images (counted in full, as if never cached by
+ * the browser) instead of canvas commands.
+ * <p>
+ * Options are {@code key=value} arguments, see {@link Options}; run it with
+ * {@code ./mvnw verify -Pbench,load -DskipTests -Dload.args="sessions=500 think-ms=200"}.
+ */
+public class LoadTest {
+
+    enum Event {
+        START,
+        OPEN,
+        FLAG,
+        PAN,
+        FINISH
+    }
+
+    enum Dispatch {
+        LOOP,
+        POOL,
+        VIRTUAL
+    }
+
+    static final class Options {
+        int sessions = 200;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Dispatch dispatch = Dispatch.LOOP;
+        int poolThreads = 200;
+        int blockMillis = 0;
+        int size = 8;
+        int tiles = 16;
+        int thinkMillis = 0;
+        int warmupSeconds = 5;
+        int seconds = 20;
+        int pool = 32;
+        String journal = "";
+        boolean metrics = true;
+        Rendering rendering = Rendering.CANVAS;
+        long seed = 1;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (String arg : args) {
+                String[] pair = arg.split("=", 2);
+                if (pair.length != 2) throw new IllegalArgumentException("Expected key=value: " + arg);
+                String value = pair[1];
+                switch (pair[0]) {
+                    case "sessions" -> options.sessions = Integer.parseInt(value);
+                    case "threads" -> options.threads = Integer.parseInt(value);
+                    case "dispatch" -> options.dispatch = Dispatch.valueOf(value.toUpperCase(Locale.ROOT));
+                    case "pool-threads" -> options.poolThreads = Integer.parseInt(value);
+                    case "block-ms" -> options.blockMillis = Integer.parseInt(value);
+                    case "size" -> options.size = Integer.parseInt(value);
+                    case "tiles" -> options.tiles = Integer.parseInt(value);
+                    case "think-ms" -> options.thinkMillis = Integer.parseInt(value);
+                    case "warmup" -> options.warmupSeconds = Integer.parseInt(value);
+                    case "seconds" -> options.seconds = Integer.parseInt(value);
+                    case "pool" -> options.pool = Integer.parseInt(value);
+                    case "journal" -> options.journal = value;
+                    case "metrics" -> options.metrics = Boolean.parseBoolean(value);
+                    case "render" -> options.rendering = Rendering.valueOf(value.toUpperCase(Locale.ROOT));
+                    case "seed" -> options.seed = Long.parseLong(value);
+                    default -> throw new IllegalArgumentException("Unknown option " + pair[0]);
+                }
+            }
+            return options;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Options options = Options.parse(args);
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        GameMetrics metrics = options.metrics ? new GameMetrics(new SimpleMeterRegistry(), true, 0.01) : GameMetrics.disabled();
+        GameExecutors executors = new GameExecutors(options.dispatch == Dispatch.VIRTUAL);
+        if (options.dispatch == Dispatch.VIRTUAL && !executors.isVirtual()) {
+            throw new IllegalStateException("dispatch=virtual needs Java 21, running on " + Runtime.version());
+        }
+        BoardPool pool = new BoardPool(options.pool, List.of(options.size), false, null, metrics, executors);
+        MoveJournal journal = new MoveJournal(options.journal, 64 << 20, 1000);
+        BoardImages images = options.rendering == Rendering.IMAGE ? new BoardImages(64 << 20) : null;
+        long baseline = settledHeap(memory);
+
+        Random seeds = new Random(options.seed);
+        List<Player> players = new ArrayList<>(options.sessions);
+        for (int i = 0; i < options.sessions; i++) {
+            players.add(new Player(options, pool, journal, metrics, images, seeds.nextLong()));
+        }
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(options.warmupSeconds);
+        long measureTo = measureFrom + TimeUnit.SECONDS.toNanos(options.seconds);
+        long thinkNanos = TimeUnit.MILLISECONDS.toNanos(options.thinkMillis);
+        for (Player player : players) player.due = start;
+        List<Stats> stats = new ArrayList<>();
+        if (options.dispatch == Dispatch.LOOP) {
+            Worker[] workers = new Worker[options.threads];
+            for (int t = 0; t < workers.length; t++) {
+                List<Player> own = new ArrayList<>();
+                for (int i = t; i < players.size(); i += workers.length) own.add(players.get(i));
+                workers[t] = new Worker(own, thinkNanos, measureFrom, measureTo);
+                workers[t].start();
+            }
+            for (Worker worker : workers) {
+                worker.join();
+                stats.add(worker.stats);
+            }
+        } else {
+            ExecutorService executor = options.dispatch == Dispatch.VIRTUAL
+                    ? VirtualThreads.newPerTaskExecutor("load-")
+                    : Executors.newFixedThreadPool(options.poolThreads, executors.threadFactory("load-pool"));
+            dispatch(players, executor, thinkNanos, measureFrom, measureTo);
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+            for (Player player : players) stats.add(player.stats);
+        }
+        long retained = settledHeap(memory) - baseline;
+
+        report(options, stats, retained);
+        if (images != null) {
+            System.out.printf(Locale.ROOT, "images      %.1f%% served from the cache%n",
+                    100.0 * images.getHits() / Math.max(1, images.getHits() + images.getMisses()));
+        }
+        pool.shutdown();
+        journal.close();
+    }
+
+    /**
+     * Hands every due event to the executor, at most one per player at a time, like requests of
+     * one UI that Vaadin serializes on the session lock.
+     */
+    private static void dispatch(List<Player> players, ExecutorService executor, long thinkNanos,
+                                 long measureFrom, long measureTo) {
+        while (true) {
+            long now = System.nanoTime();
+            if (now >= measureTo) break;
+            boolean measuring = now >= measureFrom;
+            long next = now + TimeUnit.MICROSECONDS.toNanos(200);
+            for (Player player : players) {
+                if (player.busy) continue;
+                if (player.due > now) {
+                    next = Math.min(next, player.due);
+                    continue;
+                }
+                if (measuring && !player.measuring) {
+                    player.measuring = true;
+                    player.stats = new Stats();
+                }
+                player.busy = true;
+                executor.execute(() -> {
+                    player.serve(player.stats, thinkNanos);
+                    player.busy = false;
+                });
+            }
+            LockSupport.parkNanos(Math.max(next - System.nanoTime(), 20_000));
+        }
+    }
+
+    private static void report(Options options, List<Stats> stats, long retained) {
+        Map<Event, Histogram> latencies = new HashMap<>();
+        long commands = 0;
+        long bytes = 0;
+        long allocated = 0;
+        for (Stats part : stats) {
+            part.latencies.forEach((event, histogram) -> latencies.computeIfAbsent(event, it -> new Histogram()).add(histogram));
+            commands += part.commands;
+            bytes += part.bytes;
+            allocated += part.allocated;
+        }
+        double seconds = options.seconds;
+        Histogram all = new Histogram();
+        latencies.values().forEach(all::add);
+
+        String threads = switch (options.dispatch) {
+            case LOOP -> options.threads + " threads";
+            case POOL -> "a pool of " + options.poolThreads + " threads";
+            case VIRTUAL -> "virtual threads";
+        };
+        System.out.printf(Locale.ROOT, "%d sessions on %s, %dx%d boards, %d ms think time, %d ms blocking, metrics %s, %d s measured after %d s warm-up%n",
+                options.sessions, threads, options.size, options.size, options.thinkMillis, options.blockMillis,
+                options.metrics ? "on" : "off", options.seconds, options.warmupSeconds);
+        System.out.printf(Locale.ROOT, "%-10s %12s %10s %10s %10s %10s %10s%n", "event", "per second", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us");
+        for (Event event : Event.values()) {
+            Histogram histogram = latencies.get(event);
+            if (histogram != null) printRow(event.name().toLowerCase(Locale.ROOT), histogram, seconds);
+        }
+        printRow("all", all, seconds);
+        String unit = switch (options.rendering) {
+            case CANVAS -> "commands";
+            case CLIENT -> "cells";
+            case IMAGE -> "images";
+        };
+        System.out.printf(Locale.ROOT, "%-11s %.0f %s/s, %.1f KB/s, %.1f %s per event, %.0f bytes per event%n",
+                options.rendering.name().toLowerCase(Locale.ROOT), commands / seconds, unit, bytes / seconds / 1024,
+                (double) commands / Math.max(1, all.count()), unit, (double) bytes / Math.max(1, all.count()));
+        if (options.dispatch == Dispatch.LOOP) {
+            System.out.printf(Locale.ROOT, "allocation  %.1f MB/s, %.0f bytes per event%n",
+                    allocated / seconds / (1 << 20), (double) allocated / Math.max(1, all.count()));
+        } else {
+            // allocation is only counted per thread, and dispatched events move between threads
+            System.out.println("allocation  n/a when dispatched");
+        }
+        System.out.printf(Locale.ROOT, "retained    %.1f KB per session%n", retained / 1024.0 / options.sessions);
+    }
+
+    private static void printRow(String name, Histogram histogram, double seconds) {
+        System.out.printf(Locale.ROOT, "%-10s %12.0f %10.1f %10.1f %10.1f %10.1f %10.1f%n", name, histogram.count() / seconds,
+                histogram.percentile(0.5) / 1e3, histogram.percentile(0.9) / 1e3, histogram.percentile(0.99) / 1e3,
+                histogram.percentile(0.999) / 1e3, histogram.max() / 1e3);
+    }
+
+    private static long settledHeap(MemoryMXBean memory) throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Latencies and canvas output of the events one thread or player served while measuring.
+     */
+    private static final class Stats {
+
+        private final Map<Event, Histogram> latencies = new HashMap<>();
+        private long commands;
+        private long bytes;
+        private long allocated;
+    }
+
+    /**
+     * Serves its share of the players, each whenever its next event is due.
+     */
+    private static final class Worker extends Thread {
+
+        private final List<Player> players;
+        private final long thinkNanos;
+        private final long measureFrom;
+        private final long measureTo;
+        private Stats stats = new Stats();
+
+        Worker(List<Player> players, long thinkNanos, long measureFrom, long measureTo) {
+            super("load-worker");
+            this.players = players;
+            this.thinkNanos = thinkNanos;
+            this.measureFrom = measureFrom;
+            this.measureTo = measureTo;
+        }
+
+        @Override
+        public void run() {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            boolean measuring = false;
+            long allocatedBefore = 0;
+            while (true) {
+                long now = System.nanoTime();
+                if (now >= measureTo) break;
+                if (!measuring && now >= measureFrom) {
+                    measuring = true;
+                    stats = new Stats();
+                    allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+                }
+                long next = Long.MAX_VALUE;
+                for (Player player : players) {
+                    if (player.due <= now) {
+                        player.serve(stats, thinkNanos);
+                    }
+                    next = Math.min(next, player.due);
+                }
+                now = System.nanoTime();
+                if (next > now) {
+                    LockSupport.parkNanos(Math.min(next, measureTo) - now);
+                }
+            }
+            stats.allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        }
+    }
+
+    /**
+     * One simulated player. Each step is a single browser event.
+     */
+    private static final class Player {
+
+        private final Options options;
+        private final BoardPool pool;
+        private final MoveJournal journal;
+        private final GameMetrics metrics;
+        private final BoardImages images;
+        private final Random random;
+        private BoardRenderer renderer;
+        private long sentInEarlierGames;
+        private final long blockNanos;
+        private long bytes;
+        private long due;
+        private volatile boolean busy;
+        private boolean measuring;
+        private Stats stats = new Stats();
+
+        private GameSession session;
+        private boolean finishing;
+        private int targetX;
+        private int targetY;
+        private boolean flagTarget;
+
+        Player(Options options, BoardPool pool, MoveJournal journal, GameMetrics metrics, BoardImages images, long seed) {
+            this.options = options;
+            this.pool = pool;
+            this.journal = journal;
+            this.metrics = metrics;
+            this.images = images;
+            this.random = new Random(seed);
+            this.blockNanos = TimeUnit.MILLISECONDS.toNanos(options.blockMillis);
+        }
+
+        long think(long meanNanos) {
+            return (long) (-Math.log(1 - random.nextDouble()) * meanNanos);
+        }
+
+        /**
+         * Runs the event that is due and schedules the next one.
+         */
+        void serve(Stats stats, long thinkNanos) {
+            long sentBefore = sent();
+            long bytesBefore = bytes;
+            long started = thinkNanos > 0 ? due : System.nanoTime();
+            Event event = step();
+            if (blockNanos > 0) {
+                LockSupport.parkNanos(blockNanos);
+            }
+            long now = System.nanoTime();
+            stats.latencies.computeIfAbsent(event, it -> new Histogram()).record(now - started);
+            stats.commands += sent() - sentBefore;
+            stats.bytes += bytes - bytesBefore;
+            due = thinkNanos > 0 ? due + think(thinkNanos) : now;
+        }
+
+        /**
+         * Commands or cells sent to this player so far, over all games.
+         */
+        long sent() {
+            return renderer == null ? 0 : sentInEarlierGames + renderer.getSentCount();
+        }
+
+        Event step() {
+            if (session == null || session.isOver()) {
+                newGame();
+                return Event.START;
+            }
+            if (finishing) {
+                session.finish();
+                session.close();
+                session = null;
+                return Event.FINISH;
+            }
+            Viewport viewport = session.getViewport();
+            if (options.size > viewport.getTiles() && random.nextInt(20) == 0) {
+                session.moveViewport(random.nextInt(5) - 2, random.nextInt(5) - 2, 0, 0, 0);
+                pickTarget();
+                return Event.PAN;
+            }
+            double toX = viewport.left(targetX) + viewport.getTileSize() / 2;
+            double toY = viewport.top(targetY) + viewport.getTileSize() / 2;
+            Event event;
+            if (flagTarget) {
+                session.flag((int) toX, (int) toY);
+                event = Event.FLAG;
+            } else {
+                session.open((int) toX, (int) toY);
+                event = Event.OPEN;
+            }
+            GameBoard board = session.getBoard();
+            finishing = board.getFlaggedCount() == board.getNumberOfMines();
+            pickTarget();
+            return event;
+        }
+
+        private void newGame() {
+            GameBoard board = pool.take(options.size);
+            int tiles = Math.min(board.getSize(), options.tiles);
+            Viewport viewport = new Viewport(board.getSize(), tiles, tiles, 60);
+            sentInEarlierGames = sent();
+            renderer = switch (options.rendering) {
+                case CANVAS -> new BoardPainter(board, new CanvasCommandBuffer(batch -> bytes += batch.length()), viewport, () -> {});
+                case CLIENT -> new BoardDeltas(board, viewport, message -> bytes += message.length());
+                case IMAGE -> new BoardImageRenderer(board, viewport, images, etag -> bytes += images.get(etag).length);
+            };
+            if (session != null) session.close();
+            session = new GameSession(board, viewport, renderer, journal, metrics, () -> {});
+            session.paint();
+            finishing = false;
+            pickTarget();
+        }
+
+        /**
+         * Picks the next tile in the viewport: usually a closed cell that is safe to open, sometimes
+         * a piece to flag or a guess.
+         */
+        private void pickTarget() {
+            GameBoard board = session.getBoard();
+            Viewport viewport = session.getViewport();
+            flagTarget = random.nextInt(10) < 3;
+            for (int attempt = 0; attempt < 32; attempt++) {
+                targetX = viewport.getOriginX() + random.nextInt(viewport.getTiles());
+                targetY = viewport.getOriginY() + random.nextInt(viewport.getTiles());
+                if (board.getVisibility(targetX, targetY) == Board.CellVisibility.OPENED) continue;
+                boolean piece = board.getPiece(targetX, targetY) != null;
+                if (piece == flagTarget || random.nextInt(20) == 0) break;
+            }
+        }
+    }
+
+    /**
+     * Log-linear latency histogram in nanoseconds, 32 buckets per power of two, so percentiles
+     * are within about three percent.
+     */
+    static final class Histogram {
+
+        private static final int SUB = 32;
+
+        private final long[] counts = new long[64 * SUB];
+        private long count;
+        private long max;
+
+        void record(long nanos) {
+            long value = Math.max(0, nanos);
+            counts[index(value)]++;
+            count++;
+            max = Math.max(max, value);
+        }
+
+        void add(Histogram other) {
+            for (int i = 0; i < counts.length; i++) counts[i] += other.counts[i];
+            count += other.count;
+            max = Math.max(max, other.max);
+        }
+
+        long count() {
+            return count;
+        }
+
+        long max() {
+            return max;
+        }
+
+        long percentile(double quantile) {
+            long rank = (long) Math.ceil(quantile * count);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && counts[i] > 0) return Math.min(max, upperBound(i));
+            }
+            return max;
+        }
+
+        private static int index(long value) {
+            if (value < 2 * SUB) return (int) value;
+            int shift = 63 - Long.numberOfLeadingZeros(value) - 5;
+            return (shift + 1) * SUB + (int) ((value >>> shift) - SUB);
+        }
+
+        private static long upperBound(int index) {
+            if (index < 2 * SUB) return index;
+            int shift = index / SUB - 1;
+            return ((long) (index % SUB + SUB + 1) << shift) - 1;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package ua.oleksiienko.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ua.oleksiienko.entities.Board;
+import ua.oleksiienko.utils.BoardPainter;
+import ua.oleksiienko.utils.CanvasCommandBuffer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The drawing done per interaction, sent into a stubbed canvas instead of a browser. Besides the
+ * interaction rate, the {@code commands} and {@code bytes} counters report what reached the canvas
+ * per second; divided by the interaction rate they give the commands and payload per interaction.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PainterBenchmark {
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Canvas {
+
+        public long commands;
+        public long bytes;
+
+        CanvasCommandBuffer buffer;
+        private BoardPainter painter;
+        private Board painted;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            buffer = new CanvasCommandBuffer(batch -> bytes += batch.length());
+        }
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            commands = 0;
+            bytes = 0;
+        }
+
+        BoardPainter painter(Board board) {
+            if (board != painted) {
+                painter = new BoardPainter(board, buffer, 60, () -> {});
+                painted = board;
+            }
+            return painter;
+        }
+
+        void flush() {
+            long sent = buffer.getSentCount();
+            buffer.flush();
+            commands += buffer.getSentCount() - sent;
+        }
+    }
+
+    @State(Scope.Thread)
+    public abstract static class Table {
+
+        @Param({"8", "64", "512", "2048"})
+        int size;
+
+        @Param({"6", "25%"})
+        String pieces;
+
+        Board board;
+        int x;
+        int y;
+
+        void start(Board board) {
+            this.board = board;
+            int start = Boards.startCell(board);
+            x = start / size;
+            y = start % size;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Game extends Table {
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            start(Boards.create(size, pieces, 42));
+        }
+    }
+
+    /**
+     * Opening changes a board for good, so every opening gets a new one.
+     */
+    @State(Scope.Thread)
+    public static class FreshGame extends Table {
+
+        private long seed;
+
+        @Setup(Level.Invocation)
+        public void setUp() {
+            start(Boards.create(size, pieces, seed++));
+        }
+    }
+
+    /**
+     * A left click on a fresh board: the cells it opened get repainted.
+     */
+    @Benchmark
+    public void open(FreshGame game, Canvas canvas) {
+        canvas.painter(game.board).paintChanges(game.board.openCell(game.x, game.y, true));
+        canvas.flush();
+    }
+
+    /**
+     * A right click, which repaints the one tile.
+     */
+    @Benchmark
+    public void flag(Game game, Canvas canvas) {
+        game.board.flagNext(game.x, game.y);
+        canvas.painter(game.board).paintTile(game.x, game.y);
+        canvas.flush();
+    }
+
+    /**
+     * What the first paint and every resize cost.
+     */
+    @Benchmark
+    public void repaint(Game game, Canvas canvas) {
+        canvas.painter(game.board).paintBoard();
+        canvas.flush();
+    }
+}
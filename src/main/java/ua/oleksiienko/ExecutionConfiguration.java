@@ -0,0 +1,25 @@
+package ua.oleksiienko;
+
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ua.oleksiienko.services.GameExecutors;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Hands Tomcat's request processing to virtual threads when {@link GameExecutors} runs on them.
+ */
+@Configuration
+public class ExecutionConfiguration {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadRequests(GameExecutors executors) {
+        return handler -> {
+            ExecutorService executor = executors.newRequestExecutor();
+            if (executor != null) {
+                handler.setExecutor(executor);
+            }
+        };
+    }
+}
@@ -0,0 +1,118 @@
+package ua.oleksiienko.entities;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Attack lookup for a {@link Board} of a given size, squares indexed by {@code x * size + y}.
+ * <p>
+ * Knights and kings get a per-square byte telling which of their eight moves stay on the board,
+ * so marking them is a few table-driven index additions without bounds checks. Sliders add a
+ * precomputed index delta per step, for as many steps as the edge allows, and stop at the first
+ * blocker.
+ * Magic lookups only pay off when a whole rank fits in a machine word, which is what
+ * {@link BitAttacks} does for the 8x8 {@link BitBoard}.
+ * <p>
+ * Tables for sizes up to {@link #SHARED_SIZE} are built once per size and shared by every board
+ * of that size. Larger boards build their own, which costs about as much as the board's own
+ * arrays; caching those would let clients pin two bytes per cell of every size they ask for.
+ */
+final class AttackTables {
+
+    private static final int[][] KNIGHT_MOVES = {{2, 1}, {1, 2}, {-2, 1}, {-1, 2}, {2, -1}, {1, -2}, {-2, -1}, {-1, -2}};
+    private static final int[][] KING_MOVES = {{1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}, {-1, -1}, {0, -1}, {1, -1}};
+    // rook directions first, then bishop directions
+    private static final int[][] DIRECTIONS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}, {1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+
+    static final int SHARED_SIZE = 64;
+
+    private static final Map<Integer, AttackTables> TABLES = new ConcurrentHashMap<>();
+
+    private final int size;
+    private final int[] knightDeltas = new int[8];
+    private final int[] kingDeltas = new int[8];
+    private final int[] directionDeltas = new int[8];
+    private final byte[] knightMoves;
+    private final byte[] kingMoves;
+
+    /**
+     * Receives every attacked square and answers whether it holds a piece that stops sliders.
+     */
+    interface AttackVisitor {
+        boolean visit(int index);
+    }
+
+    static AttackTables forSize(int size) {
+        return size <= SHARED_SIZE ? TABLES.computeIfAbsent(size, AttackTables::new) : new AttackTables(size);
+    }
+
+    private AttackTables(int size) {
+        this.size = size;
+        for (int i = 0; i < 8; i++) {
+            knightDeltas[i] = KNIGHT_MOVES[i][0] * size + KNIGHT_MOVES[i][1];
+            kingDeltas[i] = KING_MOVES[i][0] * size + KING_MOVES[i][1];
+            directionDeltas[i] = DIRECTIONS[i][0] * size + DIRECTIONS[i][1];
+        }
+        knightMoves = new byte[size * size];
+        kingMoves = new byte[size * size];
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                knightMoves[x * size + y] = onBoard(x, y, KNIGHT_MOVES);
+                kingMoves[x * size + y] = onBoard(x, y, KING_MOVES);
+            }
+        }
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    void forEachAttack(Piece piece, int x, int y, AttackVisitor visitor) {
+        int index = x * size + y;
+        switch (piece) {
+            case KNIGHT -> jump(index, knightMoves[index], knightDeltas, visitor);
+            case KING -> jump(index, kingMoves[index], kingDeltas, visitor);
+            case ROOK -> slide(x, y, 0, 4, visitor);
+            case BISHOP -> slide(x, y, 4, 8, visitor);
+            case QUEEN -> slide(x, y, 0, 8, visitor);
+        }
+    }
+
+    private static void jump(int index, byte moves, int[] deltas, AttackVisitor visitor) {
+        for (int m = moves & 0xFF; m != 0; m &= m - 1) {
+            visitor.visit(index + deltas[Integer.numberOfTrailingZeros(m)]);
+        }
+    }
+
+    private void slide(int x, int y, int from, int to, AttackVisitor visitor) {
+        int index = x * size + y;
+        for (int d = from; d < to; d++) {
+            int delta = directionDeltas[d];
+            int target = index;
+            for (int steps = rayLength(x, y, d); steps > 0; steps--) {
+                target += delta;
+                if (visitor.visit(target)) break;
+            }
+        }
+    }
+
+    private int rayLength(int x, int y, int direction) {
+        int dx = DIRECTIONS[direction][0];
+        int dy = DIRECTIONS[direction][1];
+        int alongX = dx > 0 ? size - 1 - x : dx < 0 ? x : Integer.MAX_VALUE;
+        int alongY = dy > 0 ? size - 1 - y : dy < 0 ? y : Integer.MAX_VALUE;
+        return Math.min(alongX, alongY);
+    }
+
+    private byte onBoard(int x, int y, int[][] moves) {
+        int mask = 0;
+        for (int i = 0; i < moves.length; i++) {
+            int tx = x + moves[i][0];
+            int ty = y + moves[i][1];
+            if (tx >= 0 && ty >= 0 && tx < size && ty < size) {
+                mask |= 1 << i;
+            }
+        }
+        return (byte) mask;
+    }
+}
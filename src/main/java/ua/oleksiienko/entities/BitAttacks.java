@@ -0,0 +1,158 @@
+package ua.oleksiienko.entities;
+
+/**
+ * Attack masks for the 8x8 {@link BitBoard}, squares indexed by {@code x * 8 + y}. Knights and kings
+ * use one precomputed mask per square; rooks and bishops use magic bitboards, so a slider's
+ * blocker-aware attacks are a mask, a multiplication, a shift and one table read.
+ * <p>
+ * All tables are built once, when the class is first used, and shared by every board.
+ */
+final class BitAttacks {
+
+    private static final int[][] ROOK_DIRECTIONS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+    private static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+    private static final int[][] KNIGHT_MOVES = {{2, 1}, {1, 2}, {-2, 1}, {-1, 2}, {2, -1}, {1, -2}, {-2, -1}, {-1, -2}};
+    private static final int[][] KING_MOVES = {{1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}, {-1, -1}, {0, -1}, {1, -1}};
+
+    private static final long[] KNIGHT = new long[64];
+    private static final long[] KING = new long[64];
+
+    // Found once by trial and error over random sparse numbers (the search takes seconds, so the
+    // results are kept here); any number that maps every blocker subset without a harmful
+    // collision works, and the static initializer rejects one that doesn't.
+    private static final long[] ROOK_MAGICS = {
+            0x2080044000102880L, 0x0240200440001001L, 0x0A00220040100880L, 0x42000A0004204010L,
+            0x0100100408010002L, 0x0100020100080400L, 0x41000D8100140200L, 0x0180003100004480L,
+            0x0D00800020804000L, 0x0002400160005000L, 0x2004801002200082L, 0x0081001001000820L,
+            0x4005000410080100L, 0x0012000408820010L, 0xC004000250040881L, 0x0061000200804100L,
+            0x0080014000402000L, 0x4150104040002000L, 0x0C00410010200901L, 0x0000828010028800L,
+            0x0008004004020040L, 0x0220808004000200L, 0x0000040090110218L, 0x0000020000412084L,
+            0x1880004040002000L, 0x4040008080402000L, 0x0120008080201000L, 0x2010100080080480L,
+            0x0008080080800400L, 0x0011000300040008L, 0x4008320400810810L, 0x0002208200010044L,
+            0x0000400020800080L, 0x1040802001804008L, 0x0041600081803000L, 0xC0E20140AA003020L,
+            0x6007010801001004L, 0x0042002004040010L, 0x1002810244004810L, 0x4010086102000084L,
+            0x200080204000800AL, 0x0110002002464000L, 0x0AD0001020008080L, 0x2080100008008080L,
+            0x0000080004008080L, 0x0180200410080140L, 0x0401502821040002L, 0x000200410882001CL,
+            0x2403102480024100L, 0x0200201000400040L, 0xA141A00184900880L, 0x2004800804100080L,
+            0x0202080110050100L, 0x2002040080020080L, 0x8104104201080400L, 0x4001000600628300L,
+            0x0021004080002011L, 0x0481001020400089L, 0x8501108200C1218AL, 0x0420100021000409L,
+            0x0001000204100801L, 0x200A000801041002L, 0x2240080A10114084L, 0x0401040040208102L
+    };
+    private static final long[] BISHOP_MAGICS = {
+            0x0060200C02408028L, 0x1008480104302040L, 0x8108480110202014L, 0x0004042E80001400L,
+            0x034410A800810000L, 0x204201100A0E0821L, 0x0A008815103200A4L, 0xC010804808010821L,
+            0x2800040808010420L, 0x0000A20208010310L, 0x12804404042044A0L, 0x0842490401080200L,
+            0x8082045040100000L, 0xA048C0883C400911L, 0x048A008090082100L, 0x0000904904016010L,
+            0x0060304018218300L, 0x0004C00208020404L, 0x1010000806841251L, 0x000880C802084180L,
+            0x0150140202100004L, 0x241A000040426000L, 0x1802098402022302L, 0x8042050041040106L,
+            0x20101A8030200D00L, 0x0801210884043400L, 0x20080E00C4040850L, 0x4504080080202040L,
+            0x9005010022104008L, 0x000802022220940CL, 0x008236400209300AL, 0x0004004000210410L,
+            0x0404112848442054L, 0x0002100448020824L, 0x040090C8080C0808L, 0x2010040400080210L,
+            0x0010020010020104L, 0x20202102400A0818L, 0x2810540044210100L, 0x1141004082090400L,
+            0x0004040440000460L, 0xB461210820410210L, 0x012148C258001000L, 0x000000C208028080L,
+            0x0080880105001010L, 0x2041202808420380L, 0x0008901082201080L, 0x0204009400408908L,
+            0x0482084104900000L, 0x00804600D0080040L, 0x104C012C02480042L, 0x1041080042021080L,
+            0x00010040914500C4L, 0x2000C16408208030L, 0x1020050400840082L, 0x1020010102088102L,
+            0x40A1003801043000L, 0x0803802108280481L, 0x8200200824020800L, 0x2300001044460800L,
+            0x006008A010020228L, 0x1000502005010200L, 0x8000128441080201L, 0x8620600100450042L
+    };
+
+    private static final Magic[] ROOK = new Magic[64];
+    private static final Magic[] BISHOP = new Magic[64];
+
+    static {
+        for (int sq = 0; sq < 64; sq++) {
+            KNIGHT[sq] = jumps(sq, KNIGHT_MOVES);
+            KING[sq] = jumps(sq, KING_MOVES);
+            ROOK[sq] = Magic.build(sq, ROOK_DIRECTIONS, ROOK_MAGICS[sq]);
+            BISHOP[sq] = Magic.build(sq, BISHOP_DIRECTIONS, BISHOP_MAGICS[sq]);
+        }
+    }
+
+    private BitAttacks() {
+    }
+
+    static long of(Piece piece, int sq, long occupied) {
+        return switch (piece) {
+            case BISHOP -> BISHOP[sq].attacks(occupied);
+            case KNIGHT -> KNIGHT[sq];
+            case ROOK -> ROOK[sq].attacks(occupied);
+            case QUEEN -> BISHOP[sq].attacks(occupied) | ROOK[sq].attacks(occupied);
+            case KING -> KING[sq];
+        };
+    }
+
+    private static long jumps(int sq, int[][] moves) {
+        long mask = 0;
+        for (int[] m : moves) {
+            int x = sq / 8 + m[0];
+            int y = sq % 8 + m[1];
+            if (x >= 0 && y >= 0 && x < 8 && y < 8) {
+                mask |= 1L << (x * 8 + y);
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Reference slider walk, only used to fill the magic tables.
+     */
+    private static long slide(int sq, int[][] directions, long occupied) {
+        long attacks = 0;
+        for (int[] d : directions) {
+            int x = sq / 8 + d[0];
+            int y = sq % 8 + d[1];
+            while (x >= 0 && y >= 0 && x < 8 && y < 8) {
+                long bit = 1L << (x * 8 + y);
+                attacks |= bit;
+                if ((occupied & bit) != 0) break;
+                x += d[0];
+                y += d[1];
+            }
+        }
+        return attacks;
+    }
+
+    /**
+     * Squares whose occupancy can change the attacks from {@code sq}: the rays without their last
+     * square, which is attacked whether it is occupied or not.
+     */
+    private static long relevant(int sq, int[][] directions) {
+        long mask = 0;
+        for (int[] d : directions) {
+            int x = sq / 8 + d[0];
+            int y = sq % 8 + d[1];
+            while (x + d[0] >= 0 && y + d[1] >= 0 && x + d[0] < 8 && y + d[1] < 8) {
+                mask |= 1L << (x * 8 + y);
+                x += d[0];
+                y += d[1];
+            }
+        }
+        return mask;
+    }
+
+    private record Magic(long mask, long magic, int shift, long[] table) {
+
+        long attacks(long occupied) {
+            return table[(int) (((occupied & mask) * magic) >>> shift)];
+        }
+
+        static Magic build(int sq, int[][] directions, long magic) {
+            long mask = relevant(sq, directions);
+            int bits = Long.bitCount(mask);
+            long[] table = new long[1 << bits];
+            // walk every subset of the mask (Carry-Rippler), starting and ending at the empty set
+            long subset = 0;
+            do {
+                int index = (int) ((subset * magic) >>> (64 - bits));
+                long attacks = slide(sq, directions, subset);
+                if (table[index] != 0 && table[index] != attacks) {
+                    throw new IllegalStateException("Bad magic for square " + sq);
+                }
+                table[index] = attacks;
+                subset = (subset - mask) & mask;
+            } while (subset != 0);
+            return new Magic(mask, magic, 64 - bits, table);
+        }
+    }
+}
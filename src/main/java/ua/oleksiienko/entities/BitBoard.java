@@ -0,0 +1,255 @@
+package ua.oleksiienko.entities;
+
+import java.io.Serial;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Board engine for the standard 8x8 game. Every per-cell property is a bit of a {@code long}
+ * indexed by {@code x * 8 + y}, so the whole game state is a handful of words and one small
+ * array of beat counts, and whole regions are opened with a few shifts.
+ * Attacks come from the shared {@link BitAttacks} tables.
+ */
+public class BitBoard implements GameBoard {
+
+    public static final int SIZE = 8;
+
+    private static final long Y0 = 0x0101010101010101L;
+    private static final long Y7 = Y0 << 7;
+
+    private final long[] pieces = new long[5];
+    private final long[] flags = new long[5];
+    private final byte[] beaten = new byte[SIZE * SIZE];
+
+    private long mines;
+    private long beatenMask;
+    private long opened;
+    private long flagged;
+
+    private final long seed;
+    private int numberOfMines;
+    private int flaggedCount;
+
+    public BitBoard() {
+        this(ThreadLocalRandom.current().nextLong());
+    }
+
+    public BitBoard(long seed) {
+        this.seed = seed;
+        this.generate();
+    }
+
+    @Override
+    public int getSize() {
+        return SIZE;
+    }
+
+    @Override
+    public long getSeed() {
+        return seed;
+    }
+
+    @Override
+    public int getNumberOfMines() {
+        return numberOfMines;
+    }
+
+    @Override
+    public int getFlaggedCount() {
+        return flaggedCount;
+    }
+
+    @Override
+    public Board.CellVisibility getVisibility(int x, int y) {
+        long bit = bit(x, y);
+        if ((opened & bit) != 0) {
+            return Board.CellVisibility.OPENED;
+        }
+        return (flagged & bit) != 0 ? Board.CellVisibility.FLAGGED : Board.CellVisibility.CLOSED;
+    }
+
+    @Override
+    public Board.CellStatus getStatus(int x, int y) {
+        long bit = bit(x, y);
+        if ((mines & bit) != 0) {
+            return Board.CellStatus.PIECED;
+        }
+        return (beatenMask & bit) != 0 ? Board.CellStatus.BEATEN : Board.CellStatus.EMPTY;
+    }
+
+    @Override
+    public int getBeaten(int x, int y) {
+        return beaten[x * SIZE + y];
+    }
+
+    @Override
+    public Piece getPiece(int x, int y) {
+        return pieceAt(pieces, bit(x, y));
+    }
+
+    @Override
+    public Piece getFlag(int x, int y) {
+        return pieceAt(flags, bit(x, y));
+    }
+
+    @Override
+    public ChangeSet openCell(int x, int y, boolean direct) {
+        if (x < 0 || y < 0 || x >= SIZE || y >= SIZE) {
+            return new ChangeSet();
+        }
+        long bit = bit(x, y);
+        if ((opened & bit) != 0) {
+            return new ChangeSet();
+        }
+        if ((mines & bit) != 0) {
+            return direct ? endGame() : new ChangeSet();
+        }
+        long reveal = bit;
+        long empty = ~(mines | beatenMask);
+        if ((bit & empty) != 0) {
+            long region = bit;
+            while (true) {
+                long grown = region | (kingSpread(region) & empty);
+                if (grown == region) break;
+                region = grown;
+            }
+            reveal = (region | kingSpread(region)) & ~mines;
+        }
+        reveal &= ~opened;
+        flaggedCount = Math.max(0, flaggedCount - Long.bitCount(reveal & flagged & anyFlag()));
+        opened |= reveal;
+        unflag(reveal);
+        return toChanges(reveal);
+    }
+
+    @Override
+    public ChangeSet endGame() {
+        long revealed = mines & ~opened;
+        opened |= mines;
+        return toChanges(revealed);
+    }
+
+    @Override
+    public void flagNext(int x, int y) {
+        long bit = bit(x, y);
+        if ((opened & bit) != 0) {
+            return;
+        }
+        if ((flagged & bit) == 0) {
+            unflag(bit);
+            flagged |= bit;
+            return;
+        }
+        Piece flag = pieceAt(flags, bit);
+        if (flag == null) {
+            flags[0] |= bit;
+            flaggedCount++;
+        } else if (flag.getId() == 4) {
+            unflag(bit);
+            flaggedCount = Math.max(0, flaggedCount - 1);
+        } else {
+            flags[flag.getId()] &= ~bit;
+            flags[flag.getId() + 1] |= bit;
+        }
+    }
+
+    @Override
+    public void restoreCell(int x, int y, Board.CellVisibility visibility, Piece flag) {
+        long bit = bit(x, y);
+        if ((anyFlag() & bit) != 0) {
+            flaggedCount--;
+        }
+        opened &= ~bit;
+        unflag(bit);
+        switch (visibility) {
+            case OPENED -> opened |= bit;
+            case FLAGGED -> flagged |= bit;
+            case CLOSED -> {}
+        }
+        if (flag != null) {
+            flags[flag.getId()] |= bit;
+            flaggedCount++;
+        }
+    }
+
+    @Override
+    public boolean checkWin() {
+        for (int i = 0; i < pieces.length; i++) {
+            if ((pieces[i] & ~flags[i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean checkAllFlagged() {
+        return (mines & ~anyFlag()) == 0;
+    }
+
+    @Serial
+    private Object writeReplace() {
+        return new BoardCodec.Snapshot(this);
+    }
+
+    private void generate() {
+        Random random = new Random(seed);
+        int numberOfPieces = random.nextInt(4, 8);
+        this.numberOfMines = numberOfPieces;
+        while (numberOfPieces > 0) {
+            long bit = bit(random.nextInt(SIZE), random.nextInt(SIZE));
+            if ((mines & bit) == 0) {
+                pieces[random.nextInt(5)] |= bit;
+                mines |= bit;
+                numberOfPieces--;
+            }
+        }
+        for (int id = 0; id < pieces.length; id++) {
+            for (long rest = pieces[id]; rest != 0; rest &= rest - 1) {
+                long attacks = BitAttacks.of(Piece.getById(id), Long.numberOfTrailingZeros(rest), mines);
+                for (long a = attacks; a != 0; a &= a - 1) {
+                    beaten[Long.numberOfTrailingZeros(a)]++;
+                }
+                beatenMask |= attacks;
+            }
+        }
+    }
+
+    private static long kingSpread(long b) {
+        long row = b | (b << 1 & ~Y0) | (b >>> 1 & ~Y7);
+        return row | row << 8 | row >>> 8;
+    }
+
+    private static ChangeSet toChanges(long mask) {
+        ChangeSet changes = new ChangeSet(Long.bitCount(mask));
+        for (long rest = mask; rest != 0; rest &= rest - 1) {
+            int sq = Long.numberOfTrailingZeros(rest);
+            changes.add(sq / SIZE, sq % SIZE);
+        }
+        return changes;
+    }
+
+    private void unflag(long mask) {
+        flagged &= ~mask;
+        for (int i = 0; i < flags.length; i++) {
+            flags[i] &= ~mask;
+        }
+    }
+
+    private long anyFlag() {
+        return flags[0] | flags[1] | flags[2] | flags[3] | flags[4];
+    }
+
+    private static Piece pieceAt(long[] planes, long bit) {
+        for (int i = 0; i < planes.length; i++) {
+            if ((planes[i] & bit) != 0) {
+                return Piece.getById(i);
+            }
+        }
+        return null;
+    }
+
+    private static long bit(int x, int y) {
+        return 1L << (x * SIZE + y);
+    }
+}
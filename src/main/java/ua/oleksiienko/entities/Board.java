@@ -1,322 +1,363 @@
 package ua.oleksiienko.entities;
 
-import java.util.*;
+import java.io.Serial;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Board engine for any size. Cell state lives in parallel primitive arrays indexed by
+ * {@code x * size + y}, a few bytes per cell, and pieces are numbered by their position in the
+ * mine list. {@link Cell} is only a view onto the arrays.
+ */
+public class Board implements GameBoard {
+
+    private static final byte EMPTY = (byte) CellStatus.EMPTY.ordinal();
+    private static final byte BEATEN = (byte) CellStatus.BEATEN.ordinal();
+    private static final byte PIECED = (byte) CellStatus.PIECED.ordinal();
+    private static final byte CLOSED = (byte) CellVisibility.CLOSED.ordinal();
+    private static final byte OPENED = (byte) CellVisibility.OPENED.ordinal();
+    private static final byte FLAGGED = (byte) CellVisibility.FLAGGED.ordinal();
+    private static final CellStatus[] STATUSES = CellStatus.values();
+    private static final CellVisibility[] VISIBILITIES = CellVisibility.values();
+    // ordered by id
+    private static final Piece[] PIECES = Piece.values();
 
-public class Board {
-
-    private final Cell[][] cells;
     private final int size;
-
-    private List<Cell> minedCells;
-    private int numberOfMines;
+    private final AttackTables attacks;
+    private final long seed;
+
+    private final byte[] status;
+    private final byte[] visibility;
+    // piece id + 1, 0 for none
+    private final byte[] pieces;
+    // piece id + 1, 0 for none or a question mark
+    private final byte[] flags;
+    private final short[] beaten;
+
+    private int[] mines;
+    // attackers of cell i are mines[attackers[attackerStart[i]..attackerStart[i + 1]]], built on demand
+    private int[] attackerStart;
+    private int[] attackers;
     private int flaggedCount;
 
     public Board(int size) {
-        this.size = size;
+        this(size, ThreadLocalRandom.current().nextLong());
+    }
 
-        cells = new Cell[size][size];
-        for (int i = 0; i < size; i++) {
-            for (int j = 0; j < size; j++) {
-                cells[i][j] = new Cell(i, j);
-            }
+    /**
+     * Boards built from the same size and seed have identical layouts.
+     */
+    public Board(int size, long seed) {
+        this(size, seed, new Random(seed));
+    }
+
+    /**
+     * Builds a board with exactly the given number of pieces instead of the usual four to seven,
+     * e.g. to measure the engine on dense boards.
+     */
+    public Board(int size, long seed, int numberOfPieces) {
+        this(size, seed, new Random(seed), numberOfPieces);
+    }
+
+    private Board(int size, long seed, Random random) {
+        this(size, seed, random, random.nextInt(4, 8));
+    }
+
+    private Board(int size, long seed, Random random, int numberOfPieces) {
+        if (numberOfPieces < 0 || numberOfPieces > size * size) {
+            throw new IllegalArgumentException("Can't place " + numberOfPieces + " pieces on " + size + "x" + size);
         }
-        this.generate();
+        this.size = size;
+        this.seed = seed;
+
+        this.attacks = AttackTables.forSize(size);
+
+        int cells = size * size;
+        status = new byte[cells];
+        visibility = new byte[cells];
+        pieces = new byte[cells];
+        flags = new byte[cells];
+        beaten = new short[cells];
+        this.generate(random, numberOfPieces);
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public long getSeed() {
+        return seed;
     }
 
+    @Override
     public int getNumberOfMines() {
-        return numberOfMines;
+        return mines.length;
     }
 
+    @Override
     public int getFlaggedCount() {
         return this.flaggedCount;
     }
 
     public Cell getCell(int x, int y) {
-        return cells[x][y];
+        return new Cell(x, y);
+    }
+
+    @Override
+    public CellVisibility getVisibility(int x, int y) {
+        return VISIBILITIES[visibility[x * size + y]];
+    }
+
+    @Override
+    public CellStatus getStatus(int x, int y) {
+        return STATUSES[status[x * size + y]];
+    }
+
+    @Override
+    public int getBeaten(int x, int y) {
+        return beaten[x * size + y];
     }
 
-    public void openCell(int x, int y, boolean direct) {
+    @Override
+    public Piece getPiece(int x, int y) {
+        return pieceOf(pieces[x * size + y]);
+    }
+
+    @Override
+    public Piece getFlag(int x, int y) {
+        return pieceOf(flags[x * size + y]);
+    }
+
+    @Override
+    public ChangeSet openCell(int x, int y, boolean direct) {
+        ChangeSet changes = new ChangeSet();
         if (x < 0 || y < 0 || x >= size || y >= size) {
-            return;
-        }
-        Cell cell = cells[x][y];
-        if (cell.getVisibility() == CellVisibility.OPENED) {
-            return;
-        }
-        if (cell.getStatus() == CellStatus.PIECED) {
-            if (direct) {
-                endGame();
+            return changes;
+        }
+        int index = x * size + y;
+        if (visibility[index] == OPENED) {
+            return changes;
+        }
+        if (status[index] == PIECED) {
+            return direct ? endGame() : changes;
+        }
+        reveal(index, changes);
+        // the change set doubles as the worklist: every cell is appended once, when it gets opened
+        for (int i = 0; i < changes.size(); i++) {
+            int cx = changes.getX(i);
+            int cy = changes.getY(i);
+            if (status[cx * size + cy] != EMPTY) {
+                continue;
+            }
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    int nx = cx + dx;
+                    int ny = cy + dy;
+                    if (nx < 0 || ny < 0 || nx >= size || ny >= size) {
+                        continue;
+                    }
+                    int next = nx * size + ny;
+                    if (visibility[next] != OPENED && status[next] != PIECED) {
+                        reveal(next, changes);
+                    }
+                }
             }
-            return;
         }
-        if (cell.getVisibility() == CellVisibility.FLAGGED) {
+        return changes;
+    }
+
+    private void reveal(int index, ChangeSet changes) {
+        if (visibility[index] == FLAGGED && flags[index] != 0) {
             flaggedCount = Math.max(0, flaggedCount-1);
         }
-        if (cell.getStatus() == CellStatus.EMPTY) {
-            cell.setVisibility(CellVisibility.OPENED);
-            openCell(x+1, y, false);
-            openCell(x-1, y, false);
-            openCell(x, y+1, false);
-            openCell(x, y-1, false);
-            openCell(x+1, y+1, false);
-            openCell(x-1, y-1, false);
-            openCell(x-1, y+1, false);
-            openCell(x+1, y-1, false);
-        }
-        cell.setVisibility(CellVisibility.OPENED);
+        visibility[index] = OPENED;
+        flags[index] = 0;
+        changes.add(index / size, index % size);
     }
 
-    public void endGame() {
-        for (Cell mine : minedCells) {
-            mine.setVisibility(CellVisibility.OPENED);
+    @Override
+    public ChangeSet endGame() {
+        ChangeSet changes = new ChangeSet(mines.length);
+        for (int mine : mines) {
+            if (visibility[mine] != OPENED) {
+                visibility[mine] = OPENED;
+                changes.add(mine / size, mine % size);
+            }
         }
+        return changes;
     }
 
+    @Override
     public void flagNext(int x, int y) {
-        Cell cell = cells[x][y];
-        if (cell.getVisibility() == CellVisibility.OPENED) {
+        int index = x * size + y;
+        if (visibility[index] == OPENED) {
             return;
         }
-        if (cell.getVisibility() == CellVisibility.CLOSED) {
-            cell.setFlag(null);
-            cell.setVisibility(CellVisibility.FLAGGED);
+        if (visibility[index] == CLOSED) {
+            flags[index] = 0;
+            visibility[index] = FLAGGED;
         } else {
-            if (cell.getFlag() == null) {
-                cell.setFlag(Piece.getById(0));
+            if (flags[index] == 0) {
+                flags[index] = 1;
                 flaggedCount++;
             }
-            else if (cell.getFlag().getId() == 4) {
-                cell.setVisibility(CellVisibility.CLOSED);
+            else if (flags[index] == PIECES.length) {
+                flags[index] = 0;
+                visibility[index] = CLOSED;
                 flaggedCount = Math.max(0, flaggedCount-1);
             }
             else {
-                Piece next = Piece.getById((cell.getFlag().getId() + 1) % 5);
-                cell.setFlag(next);
+                flags[index]++;
             }
         }
     }
 
-    public boolean checkWin() {
-        return minedCells.stream()
-                .allMatch(mine -> mine.getPiece() == mine.getFlag());
-    }
-
-    public boolean checkAllFlagged() {
-        return minedCells.stream()
-                .allMatch(mine -> mine.getFlag() != null);
-    }
-
-    private void generate() {
-        Random random = new Random();
-        int numberOfPieces = random.nextInt(4, 8);
-        this.numberOfMines = numberOfPieces;
-        List<Cell> mines = new LinkedList<>();
-        while (numberOfPieces > 0) {
-            int x = random.nextInt(size);
-            int y = random.nextInt(size);
-            if (cells[x][y].getStatus() != CellStatus.PIECED) {
-                Piece piece = Piece.getById(random.nextInt(5));
-                cells[x][y].setPiece(piece);
-                mines.add(cells[x][y]);
-                numberOfPieces--;
-            }
+    @Override
+    public void restoreCell(int x, int y, CellVisibility visibility, Piece flag) {
+        int index = x * size + y;
+        if (flags[index] != 0) {
+            flaggedCount--;
         }
-        for (var mine : mines) {
-            Piece piece = mine.getPiece();
-/*            if (mine.getStatus() == CellStatus.BEATEN) {
-                for (var aggressor : mine.getBeatenBy()) {
-                    unmarkFigure(aggressor, mine);
-                }
-            }*/
-            switch (piece) {
-                case BISHOP -> markBishop(mine);
-                case KNIGHT -> markKnight(mine);
-                case ROOK -> markRook(mine);
-                case QUEEN -> markQueen(mine);
-                case KING -> markKing(mine);
-            }
-        }
-        this.minedCells = mines;
-        for (int i = 0; i < size; i++) {
-            for (int j = 0; j < size; j++) {
-                if (cells[i][j].getStatus() == CellStatus.UNKNOWN) {
-                    cells[i][j].empty();
-                }
-            }
+        this.visibility[index] = (byte) visibility.ordinal();
+        flags[index] = (byte) (flag == null ? 0 : flag.getId() + 1);
+        if (flags[index] != 0) {
+            flaggedCount++;
         }
     }
 
-    private void markQueen(Cell mine) {
-        markBishop(mine);
-        markRook(mine);
-    }
-
-    private void markKing(Cell mine) {
-        safeBeat(mine.x+1, mine.y, mine);
-        safeBeat(mine.x+1, mine.y+1, mine);
-        safeBeat(mine.x-1, mine.y, mine);
-        safeBeat(mine.x-1, mine.y-1, mine);
-        safeBeat(mine.x, mine.y+1, mine);
-        safeBeat(mine.x-1, mine.y+1, mine);
-        safeBeat(mine.x, mine.y-1, mine);
-        safeBeat(mine.x+1, mine.y-1, mine);
+    @Override
+    public boolean checkWin() {
+        for (int mine : mines) {
+            if (flags[mine] != pieces[mine]) {
+                return false;
+            }
+        }
+        return true;
     }
 
-    private void markRook(Cell mine) {
-        for (int i = 1; i < size - mine.x; i++) {
-            cells[mine.x+i][mine.y].beat(mine);
-            if (cells[mine.x+i][mine.y].status == CellStatus.PIECED) break;
-        }
-        for (int i = 1; i <= mine.x; i++) {
-            cells[mine.x-i][mine.y].beat(mine);
-            if (cells[mine.x-i][mine.y].status == CellStatus.PIECED) break;
-        }
-        for (int i = 1; i < size - mine.y; i++) {
-            cells[mine.x][mine.y+i].beat(mine);
-            if (cells[mine.x][mine.y+i].status == CellStatus.PIECED) break;
-        }
-        for (int i = 1; i <= mine.y; i++) {
-            cells[mine.x][mine.y-i].beat(mine);
-            if (cells[mine.x][mine.y-i].status == CellStatus.PIECED) break;
+    @Override
+    public boolean checkAllFlagged() {
+        for (int mine : mines) {
+            if (flags[mine] == 0) {
+                return false;
+            }
         }
+        return true;
     }
 
-    private void markKnight(Cell mine) {
-        safeBeat(mine.x+2, mine.y+1, mine);
-        safeBeat(mine.x+1, mine.y+2, mine);
-
-        safeBeat(mine.x-2, mine.y+1, mine);
-        safeBeat(mine.x-1, mine.y+2, mine);
-
-        safeBeat(mine.x+2, mine.y-1, mine);
-        safeBeat(mine.x+1, mine.y-2, mine);
-
-        safeBeat(mine.x-2, mine.y-1, mine);
-        safeBeat(mine.x-1, mine.y-2, mine);
+    @Serial
+    private Object writeReplace() {
+        return new BoardCodec.Snapshot(this);
     }
 
-    private void safeBeat(int x, int y, Cell mine) {
-        if (x < 0 || x >= size || y < 0 || y >= size) {
-            return;
+    private void generate(Random random, int numberOfPieces) {
+        mines = new int[numberOfPieces];
+        int placed = 0;
+        while (placed < numberOfPieces) {
+            int index = random.nextInt(size) * size + random.nextInt(size);
+            if (status[index] != PIECED) {
+                pieces[index] = (byte) (random.nextInt(5) + 1);
+                status[index] = PIECED;
+                mines[placed++] = index;
+            }
+        }
+        for (int mine : mines) {
+            attacks.forEachAttack(pieceOf(pieces[mine]), mine / size, mine % size, target -> {
+                beaten[target]++;
+                if (status[target] != PIECED) {
+                    status[target] = BEATEN;
+                    return false;
+                }
+                return true;
+            });
         }
-        cells[x][y].beat(mine);
     }
 
-    private void markBishop(Cell mine) {
-        boolean moveNW = true;
-        boolean moveNE = true;
-        boolean moveSW = true;
-        boolean moveSE = true;
-        for (int i = 1; i < size; i++) {
-            if ((moveNW = moveNW && mine.x+i < size && mine.y+i < size)) {
-                cells[mine.x+i][mine.y+i].beat(mine);
-                moveNW = cells[mine.x+i][mine.y+i].status != CellStatus.PIECED;
-            }
-            if ((moveSW = moveSW && mine.x+i < size && mine.y-i >= 0)) {
-                cells[mine.x+i][mine.y-i].beat(mine);
-                moveSW = cells[mine.x+i][mine.y-i].status != CellStatus.PIECED;
-            }
-            if ((moveNE = moveNE && mine.x-i >= 0 && mine.y+i < size)) {
-                cells[mine.x-i][mine.y+i].beat(mine);
-                moveNE = cells[mine.x-i][mine.y+i].status != CellStatus.PIECED;
-            }
-            if ((moveSE = moveSE && mine.x-i >= 0 && mine.y - i >= 0)) {
-                cells[mine.x-i][mine.y-i].beat(mine);
-                moveSE = cells[mine.x-i][mine.y-i].status != CellStatus.PIECED;
-            }
-        }
+    /**
+     * Records which mine attacks which cell, the first time anybody asks. Counting comes first so
+     * every cell's attackers can be written into one shared array.
+     */
+    private void indexAttackers() {
+        int[] start = new int[size * size + 1];
+        for (int i = 0; i < beaten.length; i++) {
+            start[i + 1] = start[i] + beaten[i];
+        }
+        int[] next = start.clone();
+        int[] found = new int[start[beaten.length]];
+        for (int m = 0; m < mines.length; m++) {
+            int mine = m;
+            attacks.forEachAttack(pieceOf(pieces[mines[m]]), mines[m] / size, mines[m] % size, target -> {
+                found[next[target]++] = mine;
+                return status[target] == PIECED;
+            });
+        }
+        attackers = found;
+        attackerStart = start;
     }
 
-    private void unmarkFigure(Cell aggressor, Cell victim) {
-        for (int i = 0; i < size; i++){
-            int x = aggressor.x == victim.x ? victim.x : (aggressor.x < victim.x ? victim.x + i : victim.x - i);
-            int y = aggressor.y == victim.y ? victim.y : (aggressor.y < victim.y ? victim.y + i : victim.y - i);
-            if (x < 0 || x >= size || y < 0 || y >= size) {
-                break;
-            }
-            cells[x][y].unbeat(aggressor);
-        }
+    private static Piece pieceOf(byte value) {
+        return value == 0 ? null : PIECES[value - 1];
     }
 
-    public static class Cell {
+    /**
+     * A cell of this board. It holds no state of its own, so it always shows the current one.
+     */
+    public class Cell {
 
         private final int x;
-
         private final int y;
-        private CellStatus status;
-        private CellVisibility visibility;
-        private int beaten;
-        private Piece piece;
 
-        private Piece flag;
-
-        private final Set<Cell> beatenBy;
-
-        public Cell(int x, int y) {
+        private Cell(int x, int y) {
             this.x = x;
             this.y = y;
-            this.status = CellStatus.UNKNOWN;
-            this.visibility = CellVisibility.CLOSED;
-            this.piece = null;
-            this.beatenBy = new HashSet<>();
         }
 
-        public Piece getFlag() {
-            return flag;
+        public int getX() {
+            return x;
         }
 
-        public void setFlag(Piece flag) {
-            this.flag = flag;
-            this.visibility = CellVisibility.FLAGGED;
+        public int getY() {
+            return y;
+        }
+
+        public Piece getFlag() {
+            return Board.this.getFlag(x, y);
         }
 
         public int getBeaten() {
-            return beaten;
+            return Board.this.getBeaten(x, y);
         }
 
         public CellStatus getStatus() {
-            return status;
+            return Board.this.getStatus(x, y);
         }
 
         public CellVisibility getVisibility() {
-            return visibility;
-        }
-
-        public void setVisibility(CellVisibility visibility) {
-            this.visibility = visibility;
+            return Board.this.getVisibility(x, y);
         }
 
         public Piece getPiece() {
-            return piece;
-        }
-
-        public void setPiece(Piece piece) {
-            this.piece = piece;
-            this.status = CellStatus.PIECED;
-        }
-
-        public void empty() {
-            this.status = CellStatus.EMPTY;
-            this.piece = null;
-            this.beaten = 0;
-            this.beatenBy.clear();
+            return Board.this.getPiece(x, y);
         }
 
-        public void beat(Cell cell) {
-            if (this.status != CellStatus.PIECED) {
-                this.status = CellStatus.BEATEN;
+        /**
+         * The pieces attacking this cell.
+         */
+        public List<Cell> getBeatenBy() {
+            if (attackers == null) {
+                indexAttackers();
             }
-            this.beaten++;
-            this.beatenBy.add(cell);
-        }
-
-        public Set<Cell> getBeatenBy() {
-            return this.beatenBy;
-        }
-
-        public void unbeat(Cell aggressor) {
-            this.beatenBy.remove(aggressor);
-            this.beaten--;
+            int index = x * size + y;
+            List<Cell> result = new ArrayList<>(beaten[index]);
+            for (int i = attackerStart[index]; i < attackerStart[index + 1]; i++) {
+                int mine = mines[attackers[i]];
+                result.add(new Cell(mine / size, mine % size));
+            }
+            return result;
         }
     }
 
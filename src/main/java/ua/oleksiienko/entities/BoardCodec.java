@@ -0,0 +1,232 @@
+package ua.oleksiienko.entities;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Compact binary snapshots of a game. The layout is not stored, only the seed it is generated
+ * from; what the player did is stored as one opened bit per cell plus a list of flags.
+ * <p>
+ * Version 1, all multi-byte numbers big-endian:
+ * <pre>
+ * byte     version
+ * varint   board size
+ * long     seed
+ * varint   number of pieces, checked against the regenerated layout
+ * bits     opened flag per cell, in x * size + y order
+ * bits     flag count, then per flag its cell index and 0 for a question mark or piece id + 1;
+ *          opened pieces keep the flags they had when the game ended
+ * </pre>
+ * The bit fields are as wide as the board needs and padded to a whole byte at the end; an 8x8
+ * game with all its flags placed takes 28 bytes. Encoding into a buffer allocates nothing;
+ * decoding reads the buffer in place and rebuilds the board through its own moves.
+ * <p>
+ * Engines serialize through {@link Snapshot}, which keeps a game in a Java-serialized session as
+ * small as its encoding.
+ */
+public final class BoardCodec {
+
+    public static final int VERSION = 1;
+
+    private static final int FLAG_BITS = 3;
+
+    private BoardCodec() {
+    }
+
+    public static int encodedSize(GameBoard board) {
+        int size = board.getSize();
+        int cells = size * size;
+        long bits = cells + widthOf(cells) + (long) countFlags(board) * (widthOf(cells - 1) + FLAG_BITS);
+        return 1 + varintSize(size) + Long.BYTES + varintSize(board.getNumberOfMines()) + (int) ((bits + 7) / 8);
+    }
+
+    public static byte[] encode(GameBoard board) {
+        ByteBuffer out = ByteBuffer.allocate(encodedSize(board));
+        encode(board, out);
+        return out.array();
+    }
+
+    /**
+     * Writes the snapshot at the buffer's position and advances it past the snapshot.
+     */
+    public static void encode(GameBoard board, ByteBuffer out) {
+        if (out.remaining() < encodedSize(board)) {
+            throw new BufferOverflowException();
+        }
+        int size = board.getSize();
+        int cells = size * size;
+        out.put((byte) VERSION);
+        putVarint(out, size);
+        out.putLong(board.getSeed());
+        putVarint(out, board.getNumberOfMines());
+
+        int base = out.position();
+        long at = 0;
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                at = putBits(out, base, at, board.getVisibility(x, y) == Board.CellVisibility.OPENED ? 1 : 0, 1);
+            }
+        }
+        int indexBits = widthOf(cells - 1);
+        at = putBits(out, base, at, countFlags(board), widthOf(cells));
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                if (!isFlagged(board, x, y)) continue;
+                Piece flag = board.getFlag(x, y);
+                at = putBits(out, base, at, x * size + y, indexBits);
+                at = putBits(out, base, at, flag == null ? 0 : flag.getId() + 1, FLAG_BITS);
+            }
+        }
+        out.position(base + (int) ((at + 7) / 8));
+    }
+
+    public static GameBoard decode(byte[] bytes) {
+        return decode(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Rebuilds the game from a snapshot at the buffer's position by regenerating the layout and
+     * replaying the openings and flags, then advances the buffer past the snapshot.
+     */
+    public static GameBoard decode(ByteBuffer in) {
+        int version = in.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported snapshot version " + version);
+        }
+        int size = getVarint(in);
+        GameBoard board = GameBoard.of(size, in.getLong());
+        if (getVarint(in) != board.getNumberOfMines()) {
+            throw new IllegalArgumentException("Snapshot doesn't match the layout of its seed");
+        }
+        int cells = size * size;
+        int base = in.position();
+        boolean lost = false;
+        for (int index = 0; index < cells; index++) {
+            if (getBits(in, base, index, 1) == 0) continue;
+            int x = index / size;
+            int y = index % size;
+            // an opened empty cell opens its neighbours too, but those are marked opened anyway
+            if (board.getStatus(x, y) == Board.CellStatus.PIECED) {
+                lost = true;
+            } else {
+                board.openCell(x, y, false);
+            }
+        }
+        int indexBits = widthOf(cells - 1);
+        long at = cells;
+        int flags = (int) getBits(in, base, at, widthOf(cells));
+        at += widthOf(cells);
+        for (int i = 0; i < flags; i++) {
+            int index = (int) getBits(in, base, at, indexBits);
+            int flag = (int) getBits(in, base, at + indexBits, FLAG_BITS);
+            at += indexBits + FLAG_BITS;
+            // the first click flags with a question mark, each further one moves to the next piece
+            for (int click = 0; click <= flag; click++) {
+                board.flagNext(index / size, index % size);
+            }
+        }
+        // pieces are opened last, keeping the flags the player had put on them
+        if (lost) {
+            board.endGame();
+        }
+        in.position(base + (int) ((at + 7) / 8));
+        return board;
+    }
+
+    /**
+     * Stands in for a board in Java serialization, see the engines' {@code writeReplace}.
+     */
+    static final class Snapshot implements Serializable {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] data;
+
+        Snapshot(GameBoard board) {
+            this.data = encode(board);
+        }
+
+        @Serial
+        private Object readResolve() {
+            return decode(data);
+        }
+    }
+
+    private static int countFlags(GameBoard board) {
+        int flags = 0;
+        for (int x = 0; x < board.getSize(); x++) {
+            for (int y = 0; y < board.getSize(); y++) {
+                if (isFlagged(board, x, y)) flags++;
+            }
+        }
+        return flags;
+    }
+
+    /**
+     * Flagged cells and pieces that still show their flag after the game ended.
+     */
+    private static boolean isFlagged(GameBoard board, int x, int y) {
+        return switch (board.getVisibility(x, y)) {
+            case FLAGGED -> true;
+            case OPENED -> board.getStatus(x, y) == Board.CellStatus.PIECED && board.getFlag(x, y) != null;
+            case CLOSED -> false;
+        };
+    }
+
+    /**
+     * Bits needed to hold any number up to {@code max}.
+     */
+    private static int widthOf(int max) {
+        return Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(max));
+    }
+
+    /**
+     * Writes the low {@code width} bits of the value at bit {@code at} after {@code base}, lowest
+     * bit first, and returns the bit after them.
+     */
+    private static long putBits(ByteBuffer out, int base, long at, int value, int width) {
+        for (int i = 0; i < width; i++, at++) {
+            int index = base + (int) (at >>> 3);
+            int mask = 1 << (at & 7);
+            byte current = out.get(index);
+            out.put(index, (byte) ((value >>> i & 1) != 0 ? current | mask : current & ~mask));
+        }
+        return at;
+    }
+
+    private static long getBits(ByteBuffer in, int base, long at, int width) {
+        long value = 0;
+        for (int i = 0; i < width; i++, at++) {
+            if ((in.get(base + (int) (at >>> 3)) & 1 << (at & 7)) != 0) {
+                value |= 1L << i;
+            }
+        }
+        return value;
+    }
+
+    private static int varintSize(int value) {
+        int bytes = 1;
+        while ((value >>>= 7) != 0) bytes++;
+        return bytes;
+    }
+
+    private static void putVarint(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static int getVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+    }
+}
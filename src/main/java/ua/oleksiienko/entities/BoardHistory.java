@@ -0,0 +1,91 @@
+package ua.oleksiienko.entities;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Undo and redo for one board: a {@link BoardVersion} per move, version 0 being the board as it
+ * was handed over. Only moves that changed the board are recorded, such as opening a closed cell
+ * or flagging one, so every undo visibly takes one back; the journal records the same moves, so
+ * its jumps use the same version numbers. Recording after an undo drops the versions that could
+ * have been redone.
+ */
+public class BoardHistory {
+
+    private final GameBoard board;
+    private final List<BoardVersion> versions = new ArrayList<>();
+    private int current;
+
+    public BoardHistory(GameBoard board) {
+        this.board = board;
+        versions.add(BoardVersion.of(board));
+    }
+
+    public GameBoard getBoard() {
+        return board;
+    }
+
+    /**
+     * The version the board is at.
+     */
+    public int getCurrent() {
+        return current;
+    }
+
+    public int getLatest() {
+        return versions.size() - 1;
+    }
+
+    public boolean canUndo() {
+        return current > 0;
+    }
+
+    public boolean canRedo() {
+        return current < getLatest();
+    }
+
+    /**
+     * Records a move that changed the given cells of the board.
+     */
+    public void record(ChangeSet changed) {
+        versions.subList(current + 1, versions.size()).clear();
+        versions.add(versions.get(current).with(board, changed));
+        current++;
+    }
+
+    /**
+     * Records a move that changed one cell, such as a flag.
+     */
+    public void record(int x, int y) {
+        ChangeSet changed = new ChangeSet(1);
+        changed.add(x, y);
+        record(changed);
+    }
+
+    public ChangeSet undo() {
+        return canUndo() ? jumpTo(current - 1) : new ChangeSet();
+    }
+
+    public ChangeSet redo() {
+        return canRedo() ? jumpTo(current + 1) : new ChangeSet();
+    }
+
+    /**
+     * Puts the board back to the given version and returns the cells that changed on it.
+     */
+    public ChangeSet jumpTo(int version) {
+        if (version < 0 || version > getLatest()) {
+            throw new IllegalArgumentException("No version " + version + ", the latest is " + getLatest());
+        }
+        BoardVersion target = versions.get(version);
+        ChangeSet changes = new ChangeSet();
+        versions.get(current).diff(target, changes);
+        for (int i = 0; i < changes.size(); i++) {
+            int x = changes.getX(i);
+            int y = changes.getY(i);
+            board.restoreCell(x, y, target.getVisibility(x, y), target.getFlag(x, y));
+        }
+        current = version;
+        return changes;
+    }
+}
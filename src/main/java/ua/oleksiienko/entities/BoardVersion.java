@@ -0,0 +1,136 @@
+package ua.oleksiienko.entities;
+
+import java.util.Arrays;
+
+/**
+ * An immutable snapshot of what the player sees of a board: the visibility and flag of every cell,
+ * one byte each, in a trie of 32 cell leaves indexed by {@code x * size + y}. A new version only
+ * copies the leaves holding changed cells and the nodes above them, sharing everything else with
+ * the version it came from, so a move costs memory in proportion to the cells it changed and two
+ * versions are compared by skipping the subtrees they share.
+ */
+public final class BoardVersion {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+    private static final Board.CellVisibility[] VISIBILITIES = Board.CellVisibility.values();
+    private static final Piece[] PIECES = Piece.values();
+
+    private final int size;
+    // bits of the index below the root's children; 0 when the root is a leaf
+    private final int shift;
+    // Object[] inner nodes, byte[] leaves, null past the last cell
+    private final Object root;
+
+    private BoardVersion(int size, int shift, Object root) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+    }
+
+    public static BoardVersion of(GameBoard board) {
+        int size = board.getSize();
+        int cells = size * size;
+        int shift = 0;
+        while ((long) WIDTH << shift < cells) shift += BITS;
+        return new BoardVersion(size, shift, build(board, shift, 0, cells));
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public Board.CellVisibility getVisibility(int x, int y) {
+        return VISIBILITIES[get(x * size + y) >> 3];
+    }
+
+    public Piece getFlag(int x, int y) {
+        int flag = get(x * size + y) & 7;
+        return flag == 0 ? null : PIECES[flag - 1];
+    }
+
+    /**
+     * The version after the given cells of the board changed, sharing the rest with this one.
+     */
+    public BoardVersion with(GameBoard board, ChangeSet changed) {
+        if (changed.isEmpty()) return this;
+        int[] indices = new int[changed.size()];
+        for (int i = 0; i < indices.length; i++) indices[i] = changed.getX(i) * size + changed.getY(i);
+        Arrays.sort(indices);
+        return new BoardVersion(size, shift, update(root, shift, indices, 0, indices.length, board));
+    }
+
+    /**
+     * Adds the cells that look different in the other version of the same board.
+     */
+    public void diff(BoardVersion other, ChangeSet out) {
+        if (other.size != size) throw new IllegalArgumentException("Versions of different boards");
+        diff(root, other.root, shift, 0, out);
+    }
+
+    private byte get(int index) {
+        Object node = root;
+        for (int s = shift; s > 0; s -= BITS) node = ((Object[]) node)[index >>> s & MASK];
+        return ((byte[]) node)[index & MASK];
+    }
+
+    private static Object build(GameBoard board, int shift, int first, int cells) {
+        if (first >= cells) return null;
+        if (shift == 0) {
+            byte[] leaf = new byte[WIDTH];
+            for (int i = 0; i < WIDTH && first + i < cells; i++) leaf[i] = encode(board, first + i);
+            return leaf;
+        }
+        Object[] inner = new Object[WIDTH];
+        for (int i = 0; i < WIDTH; i++) inner[i] = build(board, shift - BITS, first + (i << shift), cells);
+        return inner;
+    }
+
+    /**
+     * Copies the node with the sorted {@code indices[from..to)} read again from the board; they all
+     * lie under this node.
+     */
+    private static Object update(Object node, int shift, int[] indices, int from, int to, GameBoard board) {
+        if (shift == 0) {
+            byte[] leaf = ((byte[]) node).clone();
+            for (int i = from; i < to; i++) leaf[indices[i] & MASK] = encode(board, indices[i]);
+            return leaf;
+        }
+        Object[] inner = ((Object[]) node).clone();
+        for (int i = from; i < to; ) {
+            int slot = indices[i] >>> shift & MASK;
+            int end = i + 1;
+            while (end < to && (indices[end] >>> shift & MASK) == slot) end++;
+            inner[slot] = update(inner[slot], shift - BITS, indices, i, end, board);
+            i = end;
+        }
+        return inner;
+    }
+
+    private void diff(Object mine, Object theirs, int shift, int first, ChangeSet out) {
+        if (mine == theirs) return;
+        if (shift == 0) {
+            byte[] a = (byte[]) mine;
+            byte[] b = (byte[]) theirs;
+            for (int i = 0; i < WIDTH; i++) {
+                if (a[i] != b[i]) out.add((first + i) / size, (first + i) % size);
+            }
+            return;
+        }
+        Object[] a = (Object[]) mine;
+        Object[] b = (Object[]) theirs;
+        for (int i = 0; i < WIDTH; i++) diff(a[i], b[i], shift - BITS, first + (i << shift), out);
+    }
+
+    /**
+     * Visibility ordinal in the high bits, piece id + 1 of the flag in the low three.
+     */
+    private static byte encode(GameBoard board, int index) {
+        int size = board.getSize();
+        int x = index / size;
+        int y = index % size;
+        Piece flag = board.getFlag(x, y);
+        return (byte) (board.getVisibility(x, y).ordinal() << 3 | (flag == null ? 0 : flag.getId() + 1));
+    }
+}
@@ -0,0 +1,54 @@
+package ua.oleksiienko.entities;
+
+import java.util.Arrays;
+
+/**
+ * Compact, append-only list of cell coordinates. Board operations return one to report which cells
+ * they changed, so callers don't have to scan the whole board afterwards.
+ */
+public class ChangeSet {
+
+    private long[] cells;
+    private int size;
+
+    public ChangeSet() {
+        this(16);
+    }
+
+    public ChangeSet(int capacity) {
+        this.cells = new long[Math.max(1, capacity)];
+    }
+
+    public void add(int x, int y) {
+        if (size == cells.length) {
+            cells = Arrays.copyOf(cells, size * 2);
+        }
+        cells[size++] = (long) x << 32 | (y & 0xFFFFFFFFL);
+    }
+
+    public void addAll(ChangeSet other) {
+        for (int i = 0; i < other.size; i++) {
+            add(other.getX(i), other.getY(i));
+        }
+    }
+
+    public int getX(int i) {
+        return (int) (cells[i] >> 32);
+    }
+
+    public int getY(int i) {
+        return (int) cells[i];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+}
@@ -0,0 +1,64 @@
+package ua.oleksiienko.entities;
+
+import java.io.Serializable;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Operations shared by every board engine. The painter and views only talk to boards through this
+ * interface, so the storage behind a game can be swapped without touching the rendering code.
+ * Boards serialize as their {@link BoardCodec} snapshot.
+ */
+public interface GameBoard extends Serializable {
+
+    static GameBoard of(int size) {
+        return of(size, ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Creates the board for the given size and seed; the same arguments always produce the same game.
+     */
+    static GameBoard of(int size, long seed) {
+        if (size == BitBoard.SIZE) {
+            return new BitBoard(seed);
+        }
+        return new Board(size, seed);
+    }
+
+    int getSize();
+
+    long getSeed();
+
+    int getNumberOfMines();
+
+    int getFlaggedCount();
+
+    Board.CellVisibility getVisibility(int x, int y);
+
+    Board.CellStatus getStatus(int x, int y);
+
+    int getBeaten(int x, int y);
+
+    Piece getPiece(int x, int y);
+
+    Piece getFlag(int x, int y);
+
+    /**
+     * Opens a cell and, if it is empty, everything reachable from it. Returns the cells whose
+     * visibility changed, including the revealed mines when a piece is opened directly.
+     */
+    ChangeSet openCell(int x, int y, boolean direct);
+
+    void flagNext(int x, int y);
+
+    /**
+     * Puts a cell back to a visibility and flag it had earlier, e.g. when a move is undone. The
+     * flag is {@code null} for none or a question mark.
+     */
+    void restoreCell(int x, int y, Board.CellVisibility visibility, Piece flag);
+
+    boolean checkWin();
+
+    boolean checkAllFlagged();
+
+    ChangeSet endGame();
+}
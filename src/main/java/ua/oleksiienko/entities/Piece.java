@@ -1,7 +1,5 @@
 package ua.oleksiienko.entities;
 
-import java.util.Arrays;
-
 public enum Piece {
     BISHOP(0),
     KNIGHT(1),
@@ -9,6 +7,8 @@ public enum Piece {
     QUEEN(3),
     KING(4);
 
+    private static final Piece[] BY_ID = values();
+
     private final int id;
 
     public int getId() {
@@ -19,10 +19,12 @@ public enum Piece {
         this.id = id;
     }
 
+    /**
+     * Ids are the declaration order, so this is an array lookup; {@link BitBoard} calls it for
+     * every flag and piece it reads.
+     */
     public static Piece getById(int id) {
-        return Arrays.stream(Piece.values())
-                .filter(it -> it.getId() == id)
-                .findAny()
-                .orElseThrow(IllegalArgumentException::new);
+        if (id < 0 || id >= BY_ID.length) throw new IllegalArgumentException();
+        return BY_ID[id];
     }
 }
@@ -0,0 +1,286 @@
+package ua.oleksiienko.entities;
+
+import java.io.Serial;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Board engine that many players change at once, without locks. The layout comes from a
+ * {@link Board} and never changes; what players see of a cell is one int, its visibility ordinal
+ * shifted by three and piece id + 1 of its flag, which every move changes with compare-and-set.
+ * Concurrent reveals cooperate: a cell is opened by whichever reveal gets there first, and only
+ * that one reports it and spreads from it.
+ * <p>
+ * Every change also sets the cell's bit in a dirty map, so {@link #drainChanges} hands out the
+ * cells changed since it was last called, each once however often it changed.
+ */
+public class SharedBoard implements GameBoard {
+
+    private static final int CLOSED = Board.CellVisibility.CLOSED.ordinal() << 3;
+    private static final int OPENED = Board.CellVisibility.OPENED.ordinal() << 3;
+    private static final int FLAGGED = Board.CellVisibility.FLAGGED.ordinal() << 3;
+    private static final int FLAG = 7;
+    private static final Board.CellVisibility[] VISIBILITIES = Board.CellVisibility.values();
+    private static final Piece[] PIECES = Piece.values();
+
+    private final Board layout;
+    private final int size;
+    private final int[] mines;
+    private final AtomicIntegerArray cells;
+    private final AtomicLongArray dirty;
+    private final AtomicInteger flaggedCount = new AtomicInteger();
+
+    public SharedBoard(int size, long seed) {
+        this(new Board(size, seed));
+    }
+
+    /**
+     * Builds a board with exactly the given number of pieces, as {@link Board#Board(int, long, int)}.
+     */
+    public SharedBoard(int size, long seed, int numberOfPieces) {
+        this(new Board(size, seed, numberOfPieces));
+    }
+
+    private SharedBoard(Board layout) {
+        this.layout = layout;
+        this.size = layout.getSize();
+        this.cells = new AtomicIntegerArray(size * size);
+        this.dirty = new AtomicLongArray((size * size + 63) / 64);
+        this.mines = new int[layout.getNumberOfMines()];
+        int found = 0;
+        for (int index = 0; index < size * size; index++) {
+            if (layout.getStatus(index / size, index % size) == Board.CellStatus.PIECED) mines[found++] = index;
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public long getSeed() {
+        return layout.getSeed();
+    }
+
+    @Override
+    public int getNumberOfMines() {
+        return mines.length;
+    }
+
+    @Override
+    public int getFlaggedCount() {
+        return Math.max(0, flaggedCount.get());
+    }
+
+    @Override
+    public Board.CellVisibility getVisibility(int x, int y) {
+        return VISIBILITIES[cells.get(x * size + y) >> 3];
+    }
+
+    @Override
+    public Board.CellStatus getStatus(int x, int y) {
+        return layout.getStatus(x, y);
+    }
+
+    @Override
+    public int getBeaten(int x, int y) {
+        return layout.getBeaten(x, y);
+    }
+
+    @Override
+    public Piece getPiece(int x, int y) {
+        return layout.getPiece(x, y);
+    }
+
+    @Override
+    public Piece getFlag(int x, int y) {
+        int flag = cells.get(x * size + y) & FLAG;
+        return flag == 0 ? null : PIECES[flag - 1];
+    }
+
+    /**
+     * Reports only the cells this call opened; cells another player's reveal reached first are
+     * theirs to report and spread from.
+     */
+    @Override
+    public ChangeSet openCell(int x, int y, boolean direct) {
+        ChangeSet changes = new ChangeSet();
+        if (x < 0 || y < 0 || x >= size || y >= size) {
+            return changes;
+        }
+        int index = x * size + y;
+        if (layout.getStatus(x, y) == Board.CellStatus.PIECED) {
+            return direct ? endGame() : changes;
+        }
+        if (!reveal(index, changes)) {
+            return changes;
+        }
+        // the change set doubles as the worklist, as in Board
+        for (int i = 0; i < changes.size(); i++) {
+            int cx = changes.getX(i);
+            int cy = changes.getY(i);
+            if (layout.getStatus(cx, cy) != Board.CellStatus.EMPTY) {
+                continue;
+            }
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    int nx = cx + dx;
+                    int ny = cy + dy;
+                    if (nx < 0 || ny < 0 || nx >= size || ny >= size) {
+                        continue;
+                    }
+                    if (layout.getStatus(nx, ny) != Board.CellStatus.PIECED) {
+                        reveal(nx * size + ny, changes);
+                    }
+                }
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Opens the cell unless it already is, dropping its flag.
+     *
+     * @return whether this call opened it
+     */
+    private boolean reveal(int index, ChangeSet changes) {
+        int state;
+        do {
+            state = cells.get(index);
+            if ((state & ~FLAG) == OPENED) return false;
+        } while (!cells.compareAndSet(index, state, OPENED));
+        if ((state & FLAG) != 0) {
+            flaggedCount.decrementAndGet();
+        }
+        markDirty(index);
+        changes.add(index / size, index % size);
+        return true;
+    }
+
+    /**
+     * Opens the pieces, keeping their flags. Each piece is reported by the call that opened it.
+     */
+    @Override
+    public ChangeSet endGame() {
+        ChangeSet changes = new ChangeSet(mines.length);
+        for (int mine : mines) {
+            int state;
+            do {
+                state = cells.get(mine);
+                if ((state & ~FLAG) == OPENED) break;
+            } while (!cells.compareAndSet(mine, state, OPENED | state & FLAG));
+            if ((state & ~FLAG) != OPENED) {
+                markDirty(mine);
+                changes.add(mine / size, mine % size);
+            }
+        }
+        return changes;
+    }
+
+    @Override
+    public void flagNext(int x, int y) {
+        int index = x * size + y;
+        int state;
+        int next;
+        int counted;
+        do {
+            state = cells.get(index);
+            int flag = state & FLAG;
+            counted = 0;
+            if ((state & ~FLAG) == OPENED) {
+                return;
+            } else if ((state & ~FLAG) == CLOSED) {
+                next = FLAGGED;
+            } else if (flag == 0) {
+                next = FLAGGED | 1;
+                counted = 1;
+            } else if (flag == PIECES.length) {
+                next = CLOSED;
+                counted = -1;
+            } else {
+                next = state + 1;
+            }
+        } while (!cells.compareAndSet(index, state, next));
+        if (counted != 0) {
+            flaggedCount.addAndGet(counted);
+        }
+        markDirty(index);
+    }
+
+    @Override
+    public void restoreCell(int x, int y, Board.CellVisibility visibility, Piece flag) {
+        int index = x * size + y;
+        int next = visibility.ordinal() << 3 | (flag == null ? 0 : flag.getId() + 1);
+        int state = cells.getAndSet(index, next);
+        flaggedCount.addAndGet(((next & FLAG) != 0 ? 1 : 0) - ((state & FLAG) != 0 ? 1 : 0));
+        markDirty(index);
+    }
+
+    @Override
+    public boolean checkWin() {
+        for (int mine : mines) {
+            if ((cells.get(mine) & FLAG) != layout.getPiece(mine / size, mine % size).getId() + 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean checkAllFlagged() {
+        for (int mine : mines) {
+            if ((cells.get(mine) & FLAG) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether a piece has been opened, which opens them all.
+     */
+    public boolean isLost() {
+        for (int mine : mines) {
+            if (isOpened(mine)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * The cells changed since the last call, each once, in index order.
+     */
+    public ChangeSet drainChanges() {
+        ChangeSet changes = new ChangeSet();
+        for (int word = 0; word < dirty.length(); word++) {
+            if (dirty.get(word) == 0) continue;
+            for (long bits = dirty.getAndSet(word, 0); bits != 0; bits &= bits - 1) {
+                int index = word * 64 + Long.numberOfTrailingZeros(bits);
+                changes.add(index / size, index % size);
+            }
+        }
+        return changes;
+    }
+
+    @Serial
+    private Object writeReplace() {
+        return new BoardCodec.Snapshot(this);
+    }
+
+    private boolean isOpened(int index) {
+        return (cells.get(index) & ~FLAG) == OPENED;
+    }
+
+    /**
+     * Called after the cell's new state is set, so whoever drains the bit reads that state or a
+     * later one.
+     */
+    private void markDirty(int index) {
+        long bit = 1L << index;
+        int word = index >>> 6;
+        if ((dirty.get(word) & bit) == 0) {
+            dirty.getAndAccumulate(word, bit, (bits, added) -> bits | added);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package ua.oleksiienko.journal;
+
+/**
+ * What a journal record stands for. Codes start at 1, so a zeroed slot marks the end of a segment.
+ */
+public enum Action {
+    START,
+    OPEN,
+    FLAG,
+    END,
+    // back or forward to a version of the game's BoardHistory, carried in x
+    JUMP,
+    // a start whose board came with its start area opened, as no-guess boards do
+    START_OPENED;
+
+    private static final Action[] VALUES = values();
+
+    boolean isStart() {
+        return this == START || this == START_OPENED;
+    }
+
+    int code() {
+        return ordinal() + 1;
+    }
+
+    static Action of(int code) {
+        return code < 1 || code > VALUES.length ? null : VALUES[code - 1];
+    }
+}
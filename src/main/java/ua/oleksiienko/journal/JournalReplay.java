@@ -0,0 +1,110 @@
+package ua.oleksiienko.journal;
+
+import ua.oleksiienko.entities.Board;
+import ua.oleksiienko.entities.BoardHistory;
+import ua.oleksiienko.entities.ChangeSet;
+import ua.oleksiienko.entities.GameBoard;
+import ua.oleksiienko.services.NoGuessGenerator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Rebuilds games from a {@link MoveJournal}: the board is regenerated from its size and seed, with
+ * its start area opened again if it started that way, and the recorded moves are played on it
+ * again, exactly as the painter played them, through a {@link BoardHistory} so that jumps land on
+ * the same versions.
+ */
+public final class JournalReplay {
+
+    private JournalReplay() {
+    }
+
+    /**
+     * Receives each game once its state is rebuilt.
+     */
+    public interface GameVisitor {
+        void game(long game, GameBoard board);
+    }
+
+    /**
+     * Returns the state of one game after its last recorded move, or {@code null} if the journal
+     * doesn't know it.
+     */
+    public static GameBoard rebuild(Path directory, long game) throws IOException {
+        BoardHistory[] history = new BoardHistory[1];
+        MoveJournal.read(directory, new MoveVisitor() {
+            @Override
+            public void start(long id, long time, int size, long seed, boolean startOpened) {
+                if (id == game) history[0] = new BoardHistory(board(size, seed, startOpened));
+            }
+
+            @Override
+            public void move(long id, long time, Action action, int x, int y) {
+                if (id == game && history[0] != null) apply(history[0], action, x, y);
+            }
+        });
+        return history[0] == null ? null : history[0].getBoard();
+    }
+
+    /**
+     * Rebuilds every game in one pass over the journal. A game is handed over at its
+     * {@link Action#END} record, so only the games still running at that point of the journal are
+     * held in memory; the rest follow once the whole journal is read.
+     */
+    public static void replayAll(Path directory, GameVisitor visitor) throws IOException {
+        Map<Long, BoardHistory> running = new HashMap<>();
+        MoveJournal.read(directory, new MoveVisitor() {
+            @Override
+            public void start(long game, long time, int size, long seed, boolean startOpened) {
+                running.put(game, new BoardHistory(board(size, seed, startOpened)));
+            }
+
+            @Override
+            public void move(long game, long time, Action action, int x, int y) {
+                BoardHistory history = running.get(game);
+                if (history == null) return;
+                apply(history, action, x, y);
+                if (action == Action.END) {
+                    visitor.game(game, running.remove(game).getBoard());
+                }
+            }
+        });
+        running.forEach((game, history) -> visitor.game(game, history.getBoard()));
+    }
+
+    /**
+     * Plays one move on the history's board and records it, as {@code GameSession} does.
+     */
+    public static void apply(BoardHistory history, Action action, int x, int y) {
+        GameBoard board = history.getBoard();
+        switch (action) {
+            case OPEN -> {
+                ChangeSet changes = board.openCell(x, y, true);
+                if (!changes.isEmpty()) history.record(changes);
+            }
+            case FLAG -> {
+                // a move that changed nothing is no version, as in GameSession
+                if (board.getVisibility(x, y) == Board.CellVisibility.OPENED) return;
+                board.flagNext(x, y);
+                history.record(x, y);
+            }
+            case END -> history.record(board.endGame());
+            case JUMP -> history.jumpTo(x);
+            case START, START_OPENED -> throw new IllegalArgumentException("A start is not a move");
+        }
+    }
+
+    /**
+     * The board as the game started on it, as {@code BoardPool.replay} builds it.
+     */
+    private static GameBoard board(int size, long seed, boolean startOpened) {
+        GameBoard board = GameBoard.of(size, seed);
+        if (startOpened) {
+            NoGuessGenerator.openStart(board);
+        }
+        return board;
+    }
+}
@@ -0,0 +1,267 @@
+package ua.oleksiienko.journal;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ua.oleksiienko.entities.Board;
+import ua.oleksiienko.entities.GameBoard;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log of every game's moves, written to memory-mapped segment files that are forced
+ * to disk periodically. A game is its size and seed plus the moves made on it, so
+ * {@link JournalReplay} can rebuild any state without boards ever being stored. A board that
+ * starts with cells already open is recorded as a {@link Action#START_OPENED} start, and replay
+ * opens its start area again the way {@code NoGuessGenerator.openStart} did.
+ * <p>
+ * Segments are {@code moves-NNNNNN.journal}: a 32 byte header (magic, version and the first game
+ * id the segment may hold), then fixed 32 byte records
+ * <pre>
+ * long   game id
+ * long   time, epoch milliseconds
+ * int    {@link Action} code
+ * int    x, the board size for a start or the version for a jump
+ * int    y, or for a start a long seed spanning both remaining ints
+ * </pre>
+ * A segment ends at its first zeroed record; once full, writing continues in the next one.
+ * With no directory configured the journal is off and every call is a no-op.
+ */
+@Service
+public class MoveJournal {
+
+    static final int RECORD = 32;
+    static final int HEADER = 32;
+    static final int MAGIC = 0x43534a31;
+    static final int VERSION = 1;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final ScheduledExecutorService syncer;
+
+    private FileChannel channel;
+    private volatile MappedByteBuffer segment;
+    private int segmentNumber;
+    private long nextGame = 1;
+
+    /**
+     * @param directory    where segments are kept; blank switches the journal off
+     * @param segmentBytes size of one segment file
+     * @param syncMillis   interval between forcing the current segment to disk
+     */
+    public MoveJournal(@Value("${chess-sweeper.journal.directory:}") String directory,
+                       @Value("${chess-sweeper.journal.segment-bytes:67108864}") int segmentBytes,
+                       @Value("${chess-sweeper.journal.sync-ms:1000}") long syncMillis) {
+        this.segmentBytes = HEADER + (segmentBytes - HEADER) / RECORD * RECORD;
+        if (directory.isBlank()) {
+            this.directory = null;
+            this.syncer = null;
+            return;
+        }
+        this.directory = Path.of(directory);
+        try {
+            Files.createDirectories(this.directory);
+            List<Path> segments = segments(this.directory);
+            segmentNumber = segments.isEmpty() ? 0 : number(segments.get(segments.size() - 1));
+            map(segmentNumber);
+            // game ids grow, so the last segment holds the largest one
+            while (segment.remaining() >= RECORD && segment.getInt(segment.position() + 16) != 0) {
+                nextGame = Math.max(nextGame, segment.getLong(segment.position()) + 1);
+                segment.position(segment.position() + RECORD);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "move-journal-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        syncer.scheduleWithFixedDelay(this::sync, syncMillis, syncMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * Records a new game and returns the id its moves are recorded under, {@code -1} if the
+     * journal is off.
+     */
+    public long start(GameBoard board) {
+        if (directory == null) return -1;
+        Action action = hasOpenedCells(board) ? Action.START_OPENED : Action.START;
+        synchronized (this) {
+            long game = nextGame++;
+            ByteBuffer record = reserve();
+            record.putLong(game).putLong(System.currentTimeMillis())
+                    .putInt(action.code()).putInt(board.getSize()).putLong(board.getSeed());
+            return game;
+        }
+    }
+
+    public void open(long game, int x, int y) {
+        append(game, Action.OPEN, x, y);
+    }
+
+    public void flag(long game, int x, int y) {
+        append(game, Action.FLAG, x, y);
+    }
+
+    public void end(long game) {
+        append(game, Action.END, -1, -1);
+    }
+
+    /**
+     * Applies a move and records it in one step. Sessions sharing a board race each other, and
+     * moves that don't commute, such as a flag on a piece and the end of the game, have to be
+     * recorded in the order the board took them for replay to agree with it.
+     *
+     * @return what the move returned
+     */
+    public <T> T record(long game, Action action, int x, int y, Supplier<T> move) {
+        if (game < 0) return move.get();
+        synchronized (this) {
+            T result = move.get();
+            append(game, action, x, y);
+            return result;
+        }
+    }
+
+    public void record(long game, Action action, int x, int y, Runnable move) {
+        record(game, action, x, y, () -> {
+            move.run();
+            return null;
+        });
+    }
+
+    /**
+     * Records an undo or redo that took the game to the given version of its history.
+     */
+    public void jump(long game, int version) {
+        append(game, Action.JUMP, version, -1);
+    }
+
+    /**
+     * Forces everything written so far to disk.
+     */
+    public void sync() {
+        MappedByteBuffer current = segment;
+        if (current != null) current.force();
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (directory == null) return;
+        syncer.shutdownNow();
+        sync();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Feeds every record in the directory's segments to the visitor, oldest first.
+     */
+    public static void read(Path directory, MoveVisitor visitor) throws IOException {
+        for (Path path : segments(directory)) {
+            try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer data = file.map(FileChannel.MapMode.READ_ONLY, 0, file.size());
+                checkHeader(data, path);
+                for (int at = HEADER; at + RECORD <= data.limit(); at += RECORD) {
+                    Action action = Action.of(data.getInt(at + 16));
+                    if (action == null) break;
+                    long game = data.getLong(at);
+                    long time = data.getLong(at + 8);
+                    if (action.isStart()) {
+                        visitor.start(game, time, data.getInt(at + 20), data.getLong(at + 24),
+                                action == Action.START_OPENED);
+                    } else {
+                        visitor.move(game, time, action, data.getInt(at + 20), data.getInt(at + 24));
+                    }
+                }
+            }
+        }
+    }
+
+    private void append(long game, Action action, int x, int y) {
+        if (game < 0) return;
+        synchronized (this) {
+            reserve().putLong(game).putLong(System.currentTimeMillis())
+                    .putInt(action.code()).putInt(x).putInt(y).putInt(0);
+        }
+    }
+
+    /**
+     * Returns the current segment positioned at a free record, moving to a new segment if needed.
+     */
+    private ByteBuffer reserve() {
+        if (segment.remaining() < RECORD) {
+            segment.force();
+            try {
+                channel.close();
+                map(++segmentNumber);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return segment;
+    }
+
+    private void map(int number) throws IOException {
+        Path path = directory.resolve(String.format("moves-%06d.journal", number));
+        boolean fresh = Files.notExists(path);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, fresh ? segmentBytes : channel.size());
+        if (fresh) {
+            segment.putInt(MAGIC).putInt(VERSION).putLong(nextGame);
+        } else {
+            checkHeader(segment, path);
+            nextGame = Math.max(nextGame, segment.getLong(8));
+        }
+        segment.position(HEADER);
+    }
+
+    private static boolean hasOpenedCells(GameBoard board) {
+        for (int x = 0; x < board.getSize(); x++) {
+            for (int y = 0; y < board.getSize(); y++) {
+                if (board.getVisibility(x, y) == Board.CellVisibility.OPENED) return true;
+            }
+        }
+        return false;
+    }
+
+    private static void checkHeader(ByteBuffer data, Path path) throws IOException {
+        if (data.limit() < HEADER || data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+            throw new IOException("Not a version " + VERSION + " move journal: " + path);
+        }
+    }
+
+    private static List<Path> segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().matches("moves-\\d{6}\\.journal"))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static int number(Path segment) {
+        String name = segment.getFileName().toString();
+        return Integer.parseInt(name.substring("moves-".length(), name.length() - ".journal".length()));
+    }
+}
@@ -0,0 +1,20 @@
+package ua.oleksiienko.journal;
+
+/**
+ * Receives journal records in the order they were written, without an object per record.
+ */
+public interface MoveVisitor {
+
+    /**
+     * @param startOpened whether the board's start area was opened before the first move, see
+     *                    {@link Action#START_OPENED}
+     */
+    void start(long game, long time, int size, long seed, boolean startOpened);
+
+    /**
+     * An {@link Action#OPEN}, {@link Action#FLAG}, {@link Action#END} or {@link Action#JUMP}; the
+     * coordinates of an end are {@code -1}, a jump has its version in {@code x} and {@code -1} in
+     * {@code y}.
+     */
+    void move(long game, long time, Action action, int x, int y);
+}
@@ -0,0 +1,13 @@
+package ua.oleksiienko.results;
+
+import ua.oleksiienko.services.GameSession;
+
+/**
+ * How one game ended.
+ *
+ * @param durationMillis from the first paint to the outcome
+ * @param finishedAt     epoch milliseconds
+ */
+public record GameResult(String player, int size, long seed, GameSession.Outcome outcome,
+                         long durationMillis, long finishedAt) {
+}
@@ -0,0 +1,70 @@
+package ua.oleksiienko.results;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-player totals and the top of the ranking, kept in memory and updated from every batch the
+ * {@link ResultsStore} writes, so pages never query the database.
+ * <p>
+ * Results only move a player up the {@link PlayerStats#RANKING}, so nobody outside the top list
+ * can enter it except the players of the new batch: merging those into the current list and
+ * cutting it back to size keeps it exact without ever sorting every player.
+ */
+@Service
+public class Leaderboard {
+
+    private final int size;
+    private final Map<String, PlayerStats> players = new ConcurrentHashMap<>();
+    private volatile List<PlayerStats> top = List.of();
+
+    public Leaderboard(@Value("${chess-sweeper.leaderboard.size:100}") int size) {
+        this.size = size;
+    }
+
+    public List<PlayerStats> top() {
+        return top;
+    }
+
+    public PlayerStats stats(String player) {
+        return players.getOrDefault(player, PlayerStats.empty(player));
+    }
+
+    /**
+     * Replaces everything with totals read from the store, e.g. at startup.
+     */
+    public synchronized void load(Collection<PlayerStats> totals) {
+        players.clear();
+        totals.forEach(stats -> players.put(stats.player(), stats));
+        top = rank(totals);
+    }
+
+    /**
+     * Adds results that were just written.
+     */
+    public synchronized void apply(List<GameResult> results) {
+        Set<String> changed = new HashSet<>();
+        for (GameResult result : results) {
+            players.compute(result.player(), (player, stats) -> (stats == null ? PlayerStats.empty(player) : stats).with(result));
+            changed.add(result.player());
+        }
+        List<PlayerStats> candidates = new ArrayList<>(top.size() + changed.size());
+        for (PlayerStats stats : top) {
+            if (!changed.contains(stats.player())) candidates.add(stats);
+        }
+        changed.forEach(player -> candidates.add(players.get(player)));
+        top = rank(candidates);
+    }
+
+    private List<PlayerStats> rank(Collection<PlayerStats> candidates) {
+        return candidates.stream().sorted(PlayerStats.RANKING).limit(size).toList();
+    }
+}
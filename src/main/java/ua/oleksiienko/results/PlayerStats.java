@@ -0,0 +1,43 @@
+package ua.oleksiienko.results;
+
+import java.util.Comparator;
+
+/**
+ * A player's totals. Immutable, so the cached copies can be handed to any number of pages.
+ *
+ * @param bestWinMillis the fastest win, {@code 0} before the first one
+ */
+public record PlayerStats(String player, int wins, int nearly, int losses, long bestWinMillis) {
+
+    /**
+     * Leaderboard order: more wins first, then the faster best win.
+     */
+    public static final Comparator<PlayerStats> RANKING = Comparator.comparingInt(PlayerStats::wins).reversed()
+            .thenComparingLong(PlayerStats::bestWinMillis)
+            .thenComparing(PlayerStats::player);
+
+    public static PlayerStats empty(String player) {
+        return new PlayerStats(player, 0, 0, 0, 0);
+    }
+
+    public int games() {
+        return wins + nearly + losses;
+    }
+
+    public double winRate() {
+        return games() == 0 ? 0 : (double) wins / games();
+    }
+
+    /**
+     * These totals with one more game. A result only ever moves a player up the {@link #RANKING}
+     * or leaves them where they were.
+     */
+    public PlayerStats with(GameResult result) {
+        return switch (result.outcome()) {
+            case WIN -> new PlayerStats(player, wins + 1, nearly, losses,
+                    wins == 0 ? result.durationMillis() : Math.min(bestWinMillis, result.durationMillis()));
+            case NEARLY -> new PlayerStats(player, wins, nearly + 1, losses, bestWinMillis);
+            case LOST -> new PlayerStats(player, wins, nearly, losses + 1, bestWinMillis);
+        };
+    }
+}
@@ -0,0 +1,128 @@
+package ua.oleksiienko.results;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import ua.oleksiienko.services.GameExecutors;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Game outcomes in the embedded database, written behind: {@link #record} only queues a result,
+ * a background writer inserts whatever has queued up in batches and then hands the batch to the
+ * {@link Leaderboard}. The queue is bounded and never waits; when a burst fills it, further
+ * results are dropped and counted instead of holding up a page.
+ */
+@Service
+public class ResultsStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ResultsStore.class);
+
+    private static final String INSERT = "INSERT INTO game_result (player, board_size, seed, outcome, duration_ms, finished_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbc;
+    private final Leaderboard leaderboard;
+    private final int batchSize;
+    private final BlockingQueue<GameResult> queue;
+    private final AtomicLong dropped = new AtomicLong();
+    private final ScheduledExecutorService writer;
+    private List<GameResult> pending = new ArrayList<>();
+    private long droppedReported;
+
+    /**
+     * @param capacity    results queued at most before new ones are dropped
+     * @param batchSize   rows per insert batch
+     * @param flushMillis pause between writes
+     */
+    public ResultsStore(JdbcTemplate jdbc, Leaderboard leaderboard, GameExecutors executors,
+                        @Value("${chess-sweeper.results.queue-capacity:65536}") int capacity,
+                        @Value("${chess-sweeper.results.batch-size:500}") int batchSize,
+                        @Value("${chess-sweeper.results.flush-ms:250}") long flushMillis) {
+        this.jdbc = jdbc;
+        this.leaderboard = leaderboard;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        jdbc.execute("CREATE TABLE IF NOT EXISTS game_result ("
+                + "id BIGINT AUTO_INCREMENT PRIMARY KEY, player VARCHAR(64) NOT NULL, board_size INT NOT NULL, "
+                + "seed BIGINT NOT NULL, outcome VARCHAR(8) NOT NULL, duration_ms BIGINT NOT NULL, "
+                + "finished_at TIMESTAMP NOT NULL)");
+        jdbc.execute("CREATE INDEX IF NOT EXISTS game_result_player ON game_result (player)");
+        leaderboard.load(jdbc.query("SELECT player, "
+                + "SUM(CASE WHEN outcome = 'WIN' THEN 1 ELSE 0 END), "
+                + "SUM(CASE WHEN outcome = 'NEARLY' THEN 1 ELSE 0 END), "
+                + "SUM(CASE WHEN outcome = 'LOST' THEN 1 ELSE 0 END), "
+                + "MIN(CASE WHEN outcome = 'WIN' THEN duration_ms END) "
+                + "FROM game_result GROUP BY player",
+                (row, number) -> new PlayerStats(row.getString(1), row.getInt(2), row.getInt(3), row.getInt(4), row.getLong(5))));
+        this.writer = Executors.newSingleThreadScheduledExecutor(executors.threadFactory("results-writer"));
+        writer.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues a result for writing.
+     *
+     * @return {@code false} if the queue was full and the result dropped
+     */
+    public boolean record(GameResult result) {
+        if (queue.offer(result)) return true;
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Writes everything queued so far. A batch that fails is kept and tried again on the next
+     * flush, ahead of newer results.
+     */
+    public synchronized void flush() {
+        while (true) {
+            if (pending.isEmpty()) {
+                queue.drainTo(pending, batchSize);
+                if (pending.isEmpty()) break;
+            }
+            try {
+                jdbc.batchUpdate(INSERT, pending, batchSize, (statement, result) -> {
+                    statement.setString(1, result.player());
+                    statement.setInt(2, result.size());
+                    statement.setLong(3, result.seed());
+                    statement.setString(4, result.outcome().name());
+                    statement.setLong(5, result.durationMillis());
+                    statement.setTimestamp(6, new Timestamp(result.finishedAt()));
+                });
+            } catch (DataAccessException e) {
+                LOG.warn("Could not write {} game results, retrying", pending.size(), e);
+                break;
+            }
+            leaderboard.apply(pending);
+            pending = new ArrayList<>();
+        }
+        long lost = dropped.get();
+        if (lost > droppedReported) {
+            LOG.warn("Results queue full, {} game results dropped so far", lost);
+            droppedReported = lost;
+        }
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        writer.shutdown();
+        writer.awaitTermination(10, TimeUnit.SECONDS);
+        flush();
+    }
+}
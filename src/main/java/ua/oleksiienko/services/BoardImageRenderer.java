@@ -0,0 +1,83 @@
+package ua.oleksiienko.services;
+
+import ua.oleksiienko.entities.ChangeSet;
+import ua.oleksiienko.entities.GameBoard;
+import ua.oleksiienko.utils.BoardRenderer;
+import ua.oleksiienko.utils.Viewport;
+
+import java.util.function.Consumer;
+
+/**
+ * Shows the window as one image from {@link BoardImages}: painting only marks it stale, and a
+ * flush hands the new image's ETag to the page unless it is the one already shown. The image last
+ * rendered stays pinned in the cache until the next one or {@link #close}.
+ */
+public class BoardImageRenderer implements BoardRenderer {
+
+    private final GameBoard board;
+    private final Viewport viewport;
+    private final BoardImages images;
+    private final Consumer<String> target;
+    private boolean stale;
+    private String shown;
+    private String pinned;
+    private long sent;
+
+    /**
+     * @param target receives the ETag of each new image
+     */
+    public BoardImageRenderer(GameBoard board, Viewport viewport, BoardImages images, Consumer<String> target) {
+        this.board = board;
+        this.viewport = viewport;
+        this.images = images;
+        this.target = target;
+    }
+
+    @Override
+    public void paintBoard() {
+        stale = true;
+    }
+
+    @Override
+    public void paintChanges(ChangeSet changes) {
+        for (int i = 0; i < changes.size() && !stale; i++) {
+            paintTile(changes.getX(i), changes.getY(i));
+        }
+    }
+
+    @Override
+    public void paintTile(int x, int y) {
+        if (viewport.isVisible(x, y)) stale = true;
+    }
+
+    @Override
+    public void flush() {
+        if (!stale) return;
+        stale = false;
+        String etag = images.pin(board, viewport, pinned);
+        pinned = etag;
+        if (etag.equals(shown)) return;
+        shown = etag;
+        sent++;
+        target.accept(etag);
+    }
+
+    @Override
+    public void resetState() {
+        shown = null;
+    }
+
+    @Override
+    public void close() {
+        images.release(pinned);
+        pinned = null;
+    }
+
+    /**
+     * Images sent so far.
+     */
+    @Override
+    public long getSentCount() {
+        return sent;
+    }
+}
@@ -0,0 +1,312 @@
+package ua.oleksiienko.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ua.oleksiienko.entities.GameBoard;
+import ua.oleksiienko.utils.BoardDeltas;
+import ua.oleksiienko.utils.SpriteAtlas;
+import ua.oleksiienko.utils.Viewport;
+
+import javax.imageio.ImageIO;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Renders board windows with Java2D for clients that are slow at executing canvas commands.
+ * <p>
+ * Every tile appearance (closed light or dark, opened with its beat count, each flag and each
+ * opened piece) is drawn once per tile size and kept as a bitmap; a window is composited from
+ * those and encoded as a PNG. The PNG is stored under a hash of what the window shows, which
+ * doubles as its ETag, so every session looking at the same state (each fresh board, to begin
+ * with) gets the same image, from the cache here and from the browser's.
+ * <p>
+ * Images a page is showing are pinned by its renderer and never evicted, so the page can always
+ * fetch what it was sent; the cache may grow past its limit by one image per page.
+ */
+@Service
+public class BoardImages {
+
+    private static final String ATLAS = "/META-INF/resources/" + SpriteAtlas.URL;
+    private static final byte[] PNG_SIGNATURE = {(byte) 137, 'P', 'N', 'G', '\r', '\n', 26, '\n'};
+
+    private static final Color LIGHT = new Color(0x076271);
+    private static final Color DARK = new Color(0x20457D);
+    private static final Color OPENED = new Color(0xADB9C9);
+
+    private final long maxBytes;
+    private final BufferedImage atlas;
+    private final Map<Long, BufferedImage> tiles = new ConcurrentHashMap<>();
+    private final LinkedHashMap<String, byte[]> images = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<String, Integer> pinned = new HashMap<>();
+    private long cachedBytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param maxBytes encoded images kept at most, least recently used ones are dropped first
+     */
+    public BoardImages(@Value("${chess-sweeper.render.image-cache-bytes:67108864}") long maxBytes) {
+        this.maxBytes = maxBytes;
+        try (InputStream in = BoardImages.class.getResourceAsStream(ATLAS)) {
+            if (in == null) throw new IOException("Missing " + ATLAS);
+            this.atlas = ImageIO.read(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the ETag of the image showing the viewport's window, compositing and encoding it
+     * only if no session asked for the same picture recently.
+     */
+    public String render(GameBoard board, Viewport viewport) {
+        return render(board, viewport, false);
+    }
+
+    /**
+     * Same as {@link #render(GameBoard, Viewport)}, but pins the image until it is
+     * {@link #release released}, and releases the one it replaces.
+     *
+     * @param replaced the ETag pinned so far, or {@code null}
+     */
+    public String pin(GameBoard board, Viewport viewport, String replaced) {
+        String etag = render(board, viewport, true);
+        release(replaced);
+        return etag;
+    }
+
+    /**
+     * Lets an image pinned by {@link #pin} be evicted again; {@code null} is ignored.
+     */
+    public void release(String etag) {
+        if (etag == null) return;
+        synchronized (images) {
+            pinned.computeIfPresent(etag, (key, count) -> count == 1 ? null : count - 1);
+        }
+    }
+
+    private String render(GameBoard board, Viewport viewport, boolean pin) {
+        int tile = tilePixels(viewport);
+        int count = viewport.getTiles();
+        ByteBuffer key = ByteBuffer.allocate(8 + count * count);
+        key.putInt(tile).putInt(count);
+        for (int y = viewport.getOriginY(); y < viewport.getOriginY() + count; y++) {
+            for (int x = viewport.getOriginX(); x < viewport.getOriginX() + count; x++) {
+                key.put((byte) appearance(board, x, y));
+            }
+        }
+        String etag = hash(key.array());
+        synchronized (images) {
+            if (images.get(etag) != null) {
+                hits.incrementAndGet();
+                if (pin) pinned.merge(etag, 1, Integer::sum);
+                return etag;
+            }
+        }
+        misses.incrementAndGet();
+        byte[] png = encode(composite(key.array(), tile, count));
+        synchronized (images) {
+            if (images.put(etag, png) == null) cachedBytes += png.length;
+            if (pin) pinned.merge(etag, 1, Integer::sum);
+            Iterator<Map.Entry<String, byte[]>> eldest = images.entrySet().iterator();
+            while (cachedBytes > maxBytes && eldest.hasNext()) {
+                Map.Entry<String, byte[]> entry = eldest.next();
+                if (entry.getKey().equals(etag) || pinned.containsKey(entry.getKey())) continue;
+                cachedBytes -= entry.getValue().length;
+                eldest.remove();
+            }
+        }
+        return etag;
+    }
+
+    /**
+     * The PNG stored under an ETag returned by {@link #render}, {@code null} once it was evicted.
+     */
+    public byte[] get(String etag) {
+        synchronized (images) {
+            return images.get(etag);
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Side of the image in pixels; the page shows it at {@link Viewport#getCanvasSize()}.
+     */
+    public static int imageSize(Viewport viewport) {
+        return tilePixels(viewport) * viewport.getTiles() + 2 * (int) Viewport.MARGIN;
+    }
+
+    private static int tilePixels(Viewport viewport) {
+        return Math.max(1, (int) Math.round(viewport.getTileSize()));
+    }
+
+    /**
+     * The cell's {@link BoardDeltas#state state}, and for tiles that show the checkered
+     * background which of the two colors it is.
+     */
+    private static int appearance(GameBoard board, int x, int y) {
+        int state = BoardDeltas.state(board, x, y);
+        int kind = state & 3;
+        boolean checkered = kind == 0 || kind == 1;
+        return state << 1 | (checkered ? (x % 2 + y % 2) % 2 : 0);
+    }
+
+    private BufferedImage composite(byte[] key, int tile, int count) {
+        int margin = (int) Viewport.MARGIN;
+        int size = tile * count + 2 * margin;
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        for (int i = 0; i < count * count; i++) {
+            int appearance = key[8 + i] & 0xFF;
+            graphics.drawImage(tile(appearance, tile), margin + i % count * tile, margin + i / count * tile, null);
+        }
+        graphics.dispose();
+        return image;
+    }
+
+    private BufferedImage tile(int appearance, int tile) {
+        return tiles.computeIfAbsent((long) tile << 32 | appearance, key -> drawTile(appearance, tile));
+    }
+
+    /**
+     * Draws one tile the way {@link ua.oleksiienko.utils.BoardPainter} does on the canvas.
+     */
+    private BufferedImage drawTile(int appearance, int tile) {
+        int state = appearance >> 1;
+        int kind = state & 3;
+        int value = state >> 2;
+        BufferedImage image = new BufferedImage(tile, tile, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        if (kind == 0 || kind == 1) {
+            graphics.setColor((appearance & 1) == 0 ? LIGHT : DARK);
+            graphics.fillRect(0, 0, tile, tile);
+            if (kind == 1) drawSprite(graphics, value, SpriteAtlas.Shade.WHITE, tile);
+        } else {
+            graphics.setColor(OPENED);
+            graphics.fillRect(0, 0, tile, tile);
+            graphics.setColor(Color.BLACK);
+            graphics.setStroke(new BasicStroke(4));
+            graphics.drawRect(2, 2, tile - 4, tile - 4);
+            if (kind == 2) {
+                drawSprite(graphics, value, SpriteAtlas.Shade.BLACK, tile);
+            } else if (value > 0) {
+                graphics.setFont(new Font(Font.SERIF, Font.PLAIN, Math.max(1, tile / 2)));
+                graphics.drawString(String.valueOf(value), (float) (tile / 2.6087), (float) (tile / 1.5));
+            }
+        }
+        graphics.dispose();
+        return image;
+    }
+
+    private void drawSprite(Graphics2D graphics, int column, SpriteAtlas.Shade shade, int tile) {
+        int sx = column * SpriteAtlas.CELL;
+        int sy = SpriteAtlas.getSourceY(shade);
+        int from = (int) Math.round(tile * 0.03);
+        int to = (int) Math.round(tile * 0.97);
+        graphics.drawImage(atlas, from, from, to, to, sx, sy, sx + SpriteAtlas.CELL, sy + SpriteAtlas.CELL, null);
+    }
+
+    /**
+     * Writes an RGBA PNG with the fastest deflate level and the Up filter, which suits rows of
+     * repeated tiles. ImageIO's writer makes files about half the size but takes four times as long,
+     * and encoding is nearly all the cost of a new image.
+     */
+    static byte[] encode(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        int stride = 1 + width * 4;
+        byte[] raw = new byte[height * stride];
+        for (int y = 0, at = 0; y < height; y++) {
+            raw[at++] = 2;
+            for (int x = 0; x < width; x++) {
+                int pixel = pixels[y * width + x];
+                raw[at++] = (byte) (pixel >> 16);
+                raw[at++] = (byte) (pixel >> 8);
+                raw[at++] = (byte) pixel;
+                raw[at++] = (byte) (pixel >>> 24);
+            }
+        }
+        // bottom up, so every row is filtered against the unfiltered one above it
+        for (int at = raw.length - 1; at >= stride; at--) {
+            if (at % stride != 0) raw[at] -= raw[at - stride];
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 16);
+        try {
+            DataOutputStream data = new DataOutputStream(out);
+            data.write(PNG_SIGNATURE);
+            ByteBuffer header = ByteBuffer.allocate(13).putInt(width).putInt(height)
+                    .put((byte) 8).put((byte) 6).put((byte) 0).put((byte) 0).put((byte) 0);
+            chunk(data, "IHDR", header.array(), header.capacity());
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            deflater.setInput(raw);
+            deflater.finish();
+            byte[] compressed = new byte[raw.length / 8 + 64];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == compressed.length) compressed = Arrays.copyOf(compressed, length * 2);
+                length += deflater.deflate(compressed, length, compressed.length - length);
+            }
+            deflater.end();
+            chunk(data, "IDAT", compressed, length);
+            chunk(data, "IEND", compressed, 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static void chunk(DataOutputStream out, String type, byte[] body, int length) throws IOException {
+        byte[] name = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(name);
+        crc.update(body, 0, length);
+        out.writeInt(length);
+        out.write(name);
+        out.write(body, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    private static String hash(byte[] key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key);
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
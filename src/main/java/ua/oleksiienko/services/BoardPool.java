@@ -0,0 +1,144 @@
+package ua.oleksiienko.services;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ua.oleksiienko.entities.GameBoard;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps a number of ready boards per size so views don't pay the generation cost while the page
+ * loads. Taking a board is a queue poll; the pool is topped up again in the background.
+ */
+@Service
+public class BoardPool {
+
+    private final int capacity;
+    private final NoGuessGenerator noGuess;
+    private final GameMetrics metrics;
+    private final Map<Integer, Shelf> shelves = new ConcurrentHashMap<>();
+    private final Executor offload;
+    private final ExecutorService refiller;
+
+    /**
+     * @param noGuess whether boards come from the {@link NoGuessGenerator}, with their start opened
+     */
+    public BoardPool(@Value("${chess-sweeper.pool.capacity:32}") int capacity,
+                     @Value("${chess-sweeper.pool.sizes:8}") List<Integer> sizes,
+                     @Value("${chess-sweeper.pool.no-guess:false}") boolean noGuess,
+                     NoGuessGenerator generator,
+                     GameMetrics metrics,
+                     GameExecutors executors) {
+        this.capacity = capacity;
+        this.noGuess = noGuess ? generator : null;
+        this.metrics = metrics;
+        this.offload = executors.offload();
+        this.refiller = Executors.newSingleThreadExecutor(executors.threadFactory("board-pool"));
+        for (int size : sizes) {
+            Shelf shelf = new Shelf();
+            shelves.put(size, shelf);
+            refill(shelf, size);
+        }
+    }
+
+    /**
+     * Returns a fresh board of the given size, generating it inline only if the pool has run dry.
+     * Sizes that aren't pooled are always generated inline; large boards are too big to keep around.
+     */
+    public GameBoard take(int size) {
+        Shelf shelf = shelves.get(size);
+        if (shelf == null) {
+            return create(size);
+        }
+        GameBoard board = shelf.boards.poll();
+        if (board == null) {
+            board = create(size);
+        } else {
+            shelf.count.decrementAndGet();
+        }
+        refill(shelf, size);
+        return board;
+    }
+
+    /**
+     * Same as {@link #take(int)}, but a board that has to be generated first is generated on the
+     * {@link GameExecutors#offload() offload executor}. A pooled board completes at once.
+     */
+    public CompletableFuture<GameBoard> takeAsync(int size) {
+        Shelf shelf = shelves.get(size);
+        GameBoard board = shelf == null ? null : shelf.boards.poll();
+        if (board == null) {
+            if (shelf != null) refill(shelf, size);
+            return CompletableFuture.supplyAsync(() -> create(size), offload);
+        }
+        shelf.count.decrementAndGet();
+        refill(shelf, size);
+        return CompletableFuture.completedFuture(board);
+    }
+
+    public CompletableFuture<GameBoard> replayAsync(int size, long seed) {
+        return CompletableFuture.supplyAsync(() -> replay(size, seed), offload);
+    }
+
+    /**
+     * Rebuilds the board of a previous game, e.g. to reproduce a reported problem.
+     */
+    public GameBoard replay(int size, long seed) {
+        GameBoard board = GameBoard.of(size, seed);
+        if (noGuess != null) {
+            NoGuessGenerator.openStart(board);
+        }
+        return board;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refiller.shutdownNow();
+    }
+
+    private GameBoard create(int size) {
+        long start = System.nanoTime();
+        GameBoard board = noGuess != null
+                ? noGuess.generate(size)
+                : GameBoard.of(size, ThreadLocalRandom.current().nextLong());
+        metrics.generated(System.nanoTime() - start, noGuess != null);
+        return board;
+    }
+
+    private void refill(Shelf shelf, int size) {
+        if (capacity <= 0 || !shelf.refilling.compareAndSet(false, true)) {
+            return;
+        }
+        refiller.execute(() -> {
+            try {
+                while (shelf.count.get() < capacity) {
+                    shelf.boards.add(create(size));
+                    shelf.count.incrementAndGet();
+                }
+            } finally {
+                shelf.refilling.set(false);
+            }
+            if (shelf.count.get() < capacity) {
+                refill(shelf, size);
+            }
+        });
+    }
+
+    private static class Shelf {
+        private final Queue<GameBoard> boards = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger count = new AtomicInteger();
+        private final AtomicBoolean refilling = new AtomicBoolean();
+    }
+}
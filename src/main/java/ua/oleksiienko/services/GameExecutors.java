@@ -0,0 +1,82 @@
+package ua.oleksiienko.services;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ua.oleksiienko.utils.VirtualThreads;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Where game work that may block runs. With {@code chess-sweeper.threads.virtual} on (and a
+ * Java 21 runtime) requests and background work get virtual threads and slow board generation
+ * leaves the request thread; otherwise everything runs as it always did, inline or on platform
+ * threads.
+ */
+@Service
+public class GameExecutors {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GameExecutors.class);
+
+    private final boolean virtual;
+    private final ExecutorService offload;
+
+    public GameExecutors(@Value("${chess-sweeper.threads.virtual:false}") boolean virtual) {
+        if (virtual && !VirtualThreads.isAvailable()) {
+            LOG.warn("chess-sweeper.threads.virtual is on, but Java {} has no virtual threads; using platform threads",
+                    Runtime.version().feature());
+            virtual = false;
+        }
+        this.virtual = virtual;
+        this.offload = virtual ? VirtualThreads.newPerTaskExecutor("game-") : null;
+    }
+
+    /**
+     * Platform threads only, as without the setting.
+     */
+    public static GameExecutors platform() {
+        return new GameExecutors(false);
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Runs board generation and similar work: a new virtual thread per task, or the calling thread
+     * when virtual threads are off.
+     */
+    public Executor offload() {
+        return virtual ? offload : Runnable::run;
+    }
+
+    /**
+     * Threads for a long-running background worker.
+     */
+    public ThreadFactory threadFactory(String name) {
+        if (virtual) {
+            return VirtualThreads.factory(name + "-");
+        }
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * An executor for servlet requests, one virtual thread each; {@code null} when off.
+     */
+    public ExecutorService newRequestExecutor() {
+        return virtual ? VirtualThreads.newPerTaskExecutor("http-") : null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (offload != null) offload.shutdownNow();
+    }
+}
@@ -0,0 +1,165 @@
+package ua.oleksiienko.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Micrometer meters for the game, published through Actuator under {@code chess-sweeper.*}.
+ * Every meter is registered up front, so recording is a few atomic updates and never a registry
+ * lookup. Interactions that arrive in bursts, viewport moves and the shared board's ticks, are
+ * only measured for a sample of them, with the event counter scaled back up, so their cost stays
+ * the same however busy the players are.
+ */
+@Service
+public class GameMetrics {
+
+    public enum Interaction {
+        OPEN,
+        FLAG,
+        VIEWPORT(true),
+        FINISH,
+        HINT,
+        HISTORY,
+        SHARED(true);
+
+        private final boolean frequent;
+
+        Interaction() {
+            this(false);
+        }
+
+        Interaction(boolean frequent) {
+            this.frequent = frequent;
+        }
+
+        /**
+         * Only sampled, see {@link #sample}.
+         */
+        public boolean isFrequent() {
+            return frequent;
+        }
+    }
+
+    private final boolean enabled;
+    private final double sampleRate;
+
+    private final AtomicInteger activeBoards = new AtomicInteger();
+    private final Timer generation;
+    private final Timer noGuessGeneration;
+    private final DistributionSummary revealed;
+    private final Timer repaint;
+    private final DistributionSummary repaintCommands;
+    private final Map<Interaction, Timer> interactions = new EnumMap<>(Interaction.class);
+    private final Map<Interaction, DistributionSummary> commands = new EnumMap<>(Interaction.class);
+    private final Map<Interaction, Counter> events = new EnumMap<>(Interaction.class);
+    private final Map<GameSession.Outcome, Counter> games = new EnumMap<>(GameSession.Outcome.class);
+
+    /**
+     * @param enabled    records nothing when off
+     * @param sampleRate share of the frequent interactions that are measured, 0 for none
+     */
+    public GameMetrics(MeterRegistry registry,
+                       @Value("${chess-sweeper.metrics.enabled:true}") boolean enabled,
+                       @Value("${chess-sweeper.metrics.sample-rate:0.01}") double sampleRate) {
+        this.enabled = enabled;
+        this.sampleRate = enabled ? sampleRate : 0;
+        Gauge.builder("chess-sweeper.boards.active", activeBoards, AtomicInteger::get)
+                .description("Games currently shown to a player")
+                .register(registry);
+        generation = Timer.builder("chess-sweeper.board.generation")
+                .tag("mode", "plain")
+                .register(registry);
+        noGuessGeneration = Timer.builder("chess-sweeper.board.generation")
+                .tag("mode", "no-guess")
+                .register(registry);
+        revealed = DistributionSummary.builder("chess-sweeper.reveal.cells")
+                .description("Cells opened by one click")
+                .register(registry);
+        repaint = Timer.builder("chess-sweeper.repaint")
+                .description("Painting the whole viewport")
+                .register(registry);
+        repaintCommands = DistributionSummary.builder("chess-sweeper.repaint.commands")
+                .register(registry);
+        for (Interaction interaction : Interaction.values()) {
+            String tag = interaction.name().toLowerCase();
+            interactions.put(interaction, Timer.builder("chess-sweeper.interaction")
+                    .tag("action", tag)
+                    .register(registry));
+            commands.put(interaction, DistributionSummary.builder("chess-sweeper.interaction.commands")
+                    .description("Canvas commands sent for one interaction")
+                    .tag("action", tag)
+                    .register(registry));
+            events.put(interaction, Counter.builder("chess-sweeper.interaction.events")
+                    .description("Interactions handled, estimated from the sample for the frequent ones")
+                    .tag("action", tag)
+                    .register(registry));
+        }
+        for (GameSession.Outcome outcome : GameSession.Outcome.values()) {
+            games.put(outcome, Counter.builder("chess-sweeper.games")
+                    .tag("outcome", outcome.name().toLowerCase())
+                    .register(registry));
+        }
+    }
+
+    /**
+     * Metrics that go nowhere, for code running outside the application context.
+     */
+    public static GameMetrics disabled() {
+        return new GameMetrics(new SimpleMeterRegistry(), false, 0);
+    }
+
+    public void generated(long nanos, boolean noGuess) {
+        if (!enabled) return;
+        (noGuess ? noGuessGeneration : generation).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void sessionStarted() {
+        if (enabled) activeBoards.incrementAndGet();
+    }
+
+    public void sessionClosed() {
+        if (enabled) activeBoards.decrementAndGet();
+    }
+
+    /**
+     * Whether to measure this interaction: every one of the others, a sample of the frequent ones.
+     * Only measured interactions are passed to {@link #interaction}.
+     */
+    public boolean sample(Interaction interaction) {
+        if (!interaction.isFrequent()) return enabled;
+        return sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    public void interaction(Interaction interaction, long nanos, long sentCommands) {
+        if (!enabled) return;
+        interactions.get(interaction).record(nanos, TimeUnit.NANOSECONDS);
+        commands.get(interaction).record(sentCommands);
+        events.get(interaction).increment(interaction.isFrequent() ? 1 / sampleRate : 1);
+    }
+
+    public void revealed(int cells) {
+        if (enabled) revealed.record(cells);
+    }
+
+    public void repainted(long nanos, long sentCommands) {
+        if (!enabled) return;
+        repaint.record(nanos, TimeUnit.NANOSECONDS);
+        repaintCommands.record(sentCommands);
+    }
+
+    public void gameEnded(GameSession.Outcome outcome) {
+        if (enabled) games.get(outcome).increment();
+    }
+}
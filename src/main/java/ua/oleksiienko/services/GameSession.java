@@ -0,0 +1,382 @@
+package ua.oleksiienko.services;
+
+import ua.oleksiienko.entities.Board;
+import ua.oleksiienko.entities.BoardHistory;
+import ua.oleksiienko.entities.ChangeSet;
+import ua.oleksiienko.entities.GameBoard;
+import ua.oleksiienko.journal.Action;
+import ua.oleksiienko.journal.MoveJournal;
+import ua.oleksiienko.solver.HintEngine;
+import ua.oleksiienko.solver.Probabilities;
+import ua.oleksiienko.utils.BoardDeltas;
+import ua.oleksiienko.utils.BoardPainter;
+import ua.oleksiienko.utils.BoardRenderer;
+import ua.oleksiienko.utils.CanvasCommandBuffer;
+import ua.oleksiienko.utils.Viewport;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One player's game without any components: turns canvas offsets into moves, records them in the
+ * journal and paints what changed. {@link PainterService} feeds it browser events, the load test
+ * feeds it simulated ones.
+ */
+public class GameSession {
+
+    public enum Outcome {
+        WIN,
+        NEARLY,
+        LOST
+    }
+
+    private final GameBoard board;
+    private final BoardHistory history;
+    private final Viewport viewport;
+    private final BoardRenderer painter;
+    private final MoveJournal journal;
+    private final GameMetrics metrics;
+    private final Runnable onLost;
+    private final long game;
+    /**
+     * Visible cells a joined game painted for its own moves, with the state painted, until the
+     * shared board hands them back; {@code null} for a game of its own.
+     */
+    private final Map<Integer, Integer> painted;
+    private boolean over;
+    private boolean counted;
+    private boolean closed;
+    private HintEngine hints;
+
+    /**
+     * Draws with canvas commands.
+     *
+     * @param onLost called once, when a piece is opened or the game is ended unsolved
+     */
+    public GameSession(GameBoard board, Viewport viewport, CanvasCommandBuffer commands, MoveJournal journal,
+                       GameMetrics metrics, Runnable onLost) {
+        this(board, viewport, new BoardPainter(board, commands, viewport, () -> {}), journal, metrics, onLost);
+    }
+
+    /**
+     * @param painter draws the viewport of {@code board}
+     * @param onLost  called once, when a piece is opened or the game is ended unsolved
+     */
+    public GameSession(GameBoard board, Viewport viewport, BoardRenderer painter, MoveJournal journal,
+                       GameMetrics metrics, Runnable onLost) {
+        this(board, journal.start(board), new BoardHistory(board), viewport, painter, journal, metrics, onLost);
+    }
+
+    /**
+     * Joins a game other sessions play too, such as a shared board; its moves are recorded under
+     * the game's journal id, in the order the board took them, and can't be undone.
+     *
+     * @param game the id the game was started under in the journal
+     */
+    public GameSession(GameBoard board, long game, Viewport viewport, BoardRenderer painter, MoveJournal journal,
+                       GameMetrics metrics, Runnable onLost) {
+        this(board, game, null, viewport, painter, journal, metrics, onLost);
+    }
+
+    private GameSession(GameBoard board, long game, BoardHistory history, Viewport viewport, BoardRenderer painter,
+                        MoveJournal journal, GameMetrics metrics, Runnable onLost) {
+        this.board = board;
+        this.game = game;
+        this.history = history;
+        this.viewport = viewport;
+        this.painter = painter;
+        this.journal = journal;
+        this.metrics = metrics;
+        this.onLost = onLost;
+        this.painted = history == null ? new HashMap<>() : null;
+        metrics.sessionStarted();
+    }
+
+    public GameBoard getBoard() {
+        return board;
+    }
+
+    public Viewport getViewport() {
+        return viewport;
+    }
+
+    public boolean isOver() {
+        return over;
+    }
+
+    /**
+     * Paints the whole viewport, e.g. after the canvas was created or cleared.
+     */
+    public void paint() {
+        long start = System.nanoTime();
+        long sent = painter.getSentCount();
+        painter.paintBoard();
+        painter.flush();
+        metrics.repainted(System.nanoTime() - start, painter.getSentCount() - sent);
+    }
+
+    /**
+     * Marks the game as no longer shown, e.g. once its page is gone.
+     */
+    public void close() {
+        if (closed) return;
+        closed = true;
+        painter.close();
+        metrics.sessionClosed();
+    }
+
+    /**
+     * Opens the tile under the offset. Opening an open tile changes nothing and is neither
+     * journalled nor recorded in the history.
+     *
+     * @return whether the offset hit a tile of a running game
+     */
+    public boolean open(int offsetX, int offsetY) {
+        int x = viewport.tileX(offsetX);
+        int y = viewport.tileY(offsetY);
+        if (over || x < 0 || y < 0) return false;
+        if (board.getVisibility(x, y) == Board.CellVisibility.OPENED) return true;
+        long start = System.nanoTime();
+        long sent = painter.getSentCount();
+        ChangeSet changes;
+        if (board.getPiece(x, y) != null) {
+            // ends the game, keeping the flags other players put on the pieces until then
+            changes = journal.record(game, Action.OPEN, x, y, () -> board.openCell(x, y, true));
+        } else {
+            // a safe open commutes with every other move
+            changes = board.openCell(x, y, true);
+            // empty if another player of a shared board opened it first
+            if (!changes.isEmpty()) journal.open(game, x, y);
+        }
+        if (history != null && !changes.isEmpty()) history.record(changes);
+        remember(changes);
+        if (hints != null) hints.update(changes);
+        painter.paintChanges(changes);
+        painter.flush();
+        metrics.revealed(changes.size());
+        metrics.interaction(GameMetrics.Interaction.OPEN, System.nanoTime() - start, painter.getSentCount() - sent);
+        if (board.getVisibility(x, y) == Board.CellVisibility.OPENED && board.getStatus(x, y) == Board.CellStatus.PIECED) {
+            lose();
+        }
+        return true;
+    }
+
+    /**
+     * Moves the flag on the tile under the offset to its next state. An open tile takes no flag,
+     * so flagging it is neither journalled nor recorded in the history.
+     *
+     * @return whether the offset hit a tile of a running game
+     */
+    public boolean flag(int offsetX, int offsetY) {
+        int x = viewport.tileX(offsetX);
+        int y = viewport.tileY(offsetY);
+        if (over || x < 0 || y < 0) return false;
+        if (board.getVisibility(x, y) == Board.CellVisibility.OPENED) return true;
+        long start = System.nanoTime();
+        long sent = painter.getSentCount();
+        journal.record(game, Action.FLAG, x, y, () -> board.flagNext(x, y));
+        if (history != null) history.record(x, y);
+        remember(x, y);
+        painter.paintTile(x, y);
+        painter.flush();
+        metrics.interaction(GameMetrics.Interaction.FLAG, System.nanoTime() - start, painter.getSentCount() - sent);
+        return true;
+    }
+
+    /**
+     * {@code null} for a joined game.
+     */
+    public BoardHistory getHistory() {
+        return history;
+    }
+
+    public boolean undo() {
+        return history != null && !over && history.canUndo() && jumpTo(history.getCurrent() - 1);
+    }
+
+    public boolean redo() {
+        return history != null && !over && history.canRedo() && jumpTo(history.getCurrent() + 1);
+    }
+
+    /**
+     * Takes the running game back or forward to a version of its history, repainting only the
+     * cells that differ.
+     *
+     * @return whether the game is running and has the version
+     */
+    public boolean jumpTo(int version) {
+        if (history == null || over || version < 0 || version > history.getLatest()) return false;
+        long start = System.nanoTime();
+        long sent = painter.getSentCount();
+        journal.jump(game, version);
+        ChangeSet changes = history.jumpTo(version);
+        painter.paintChanges(changes);
+        painter.flush();
+        if (hints != null) hints.update(changes);
+        metrics.interaction(GameMetrics.Interaction.HISTORY, System.nanoTime() - start, painter.getSentCount() - sent);
+        return true;
+    }
+
+    /**
+     * Paints cells other players changed on a shared board, skipping the ones this session already
+     * painted as they are now. Opening a piece loses the game for everyone on it.
+     */
+    public void paintShared(ChangeSet changes) {
+        boolean sampled = metrics.sample(GameMetrics.Interaction.SHARED);
+        long start = sampled ? System.nanoTime() : 0;
+        long sent = painter.getSentCount();
+        painter.paintChanges(painted == null || painted.isEmpty() ? changes : unpainted(changes));
+        painter.flush();
+        if (hints != null) hints.update(changes);
+        if (sampled) metrics.interaction(GameMetrics.Interaction.SHARED, System.nanoTime() - start, painter.getSentCount() - sent);
+        for (int i = 0; i < changes.size() && !over; i++) {
+            int x = changes.getX(i);
+            int y = changes.getY(i);
+            if (board.getVisibility(x, y) == Board.CellVisibility.OPENED && board.getStatus(x, y) == Board.CellStatus.PIECED) {
+                lose();
+            }
+        }
+    }
+
+    /**
+     * The closed cell least likely to hold a piece, with the viewport panned to show it. The chances
+     * are worked out on the first hint and only updated by later moves.
+     *
+     * @return {@code null} once the game is over, if no closed cell is left or if the numbers were
+     * too tangled to tell the cells apart
+     */
+    public HintEngine.Hint hint() {
+        if (over) return null;
+        long start = System.nanoTime();
+        long sent = painter.getSentCount();
+        if (hints == null) hints = new HintEngine(board);
+        HintEngine.Hint hint = hints.best();
+        if (hint != null && !viewport.isVisible(hint.x(), hint.y())) {
+            int half = viewport.getTiles() / 2;
+            if (viewport.pan(hint.x() - half - viewport.getOriginX(), hint.y() - half - viewport.getOriginY())) paint();
+        }
+        metrics.interaction(GameMetrics.Interaction.HINT, System.nanoTime() - start, painter.getSentCount() - sent);
+        return hint;
+    }
+
+    /**
+     * Chances that the tiles in the viewport hold a piece, row by row, as worked out for the last
+     * {@link #hint()}; -1 for cells that aren't closed.
+     *
+     * @return {@code null} if there was no hint to go with them
+     */
+    public double[] visibleChances() {
+        if (hints == null) return null;
+        Probabilities probabilities = hints.probabilities();
+        if (!probabilities.isConsistent() || !probabilities.isInformed()) return null;
+        int tiles = viewport.getTiles();
+        double[] chances = new double[tiles * tiles];
+        for (int y = 0; y < tiles; y++) {
+            for (int x = 0; x < tiles; x++) {
+                int boardX = viewport.getOriginX() + x;
+                int boardY = viewport.getOriginY() + y;
+                chances[y * tiles + x] = board.getVisibility(boardX, boardY) == Board.CellVisibility.CLOSED
+                        ? probabilities.getPieceChance(boardX, boardY)
+                        : -1;
+            }
+        }
+        return chances;
+    }
+
+    /**
+     * Pans and zooms the viewport, repainting the new window if it changed.
+     *
+     * @return whether the tile size changed
+     */
+    public boolean moveViewport(int panX, int panY, int zoom, int offsetX, int offsetY) {
+        boolean sampled = metrics.sample(GameMetrics.Interaction.VIEWPORT);
+        long start = sampled ? System.nanoTime() : 0;
+        long sent = painter.getSentCount();
+        boolean zoomed = zoom != 0 && viewport.zoom(zoom, offsetX, offsetY);
+        boolean panned = viewport.pan(panX, panY);
+        if (zoomed || panned) {
+            paint();
+        }
+        if (sampled) metrics.interaction(GameMetrics.Interaction.VIEWPORT, System.nanoTime() - start, painter.getSentCount() - sent);
+        return zoomed;
+    }
+
+    /**
+     * Changing the canvas size clears it, so a resize always falls back to a full repaint.
+     */
+    public void resize(double tileSize) {
+        viewport.setTileSize(tileSize);
+        painter.resetState();
+        paint();
+    }
+
+    /**
+     * Checks the flags once they are all placed. A game that isn't at least nearly won is ended,
+     * revealing its pieces.
+     */
+    public Outcome finish() {
+        long start = System.nanoTime();
+        long sent = painter.getSentCount();
+        Outcome outcome;
+        if (board.checkWin()) {
+            outcome = Outcome.WIN;
+        } else if (board.checkAllFlagged()) {
+            outcome = Outcome.NEARLY;
+        } else {
+            ChangeSet changes = journal.record(game, Action.END, -1, -1, board::endGame);
+            if (history != null) history.record(changes);
+            remember(changes);
+            painter.paintChanges(changes);
+            painter.flush();
+            outcome = Outcome.LOST;
+        }
+        metrics.interaction(GameMetrics.Interaction.FINISH, System.nanoTime() - start, painter.getSentCount() - sent);
+        if (outcome == Outcome.LOST) {
+            // the pieces may all be outside the viewport
+            lose();
+        } else {
+            countOutcome(outcome);
+        }
+        return outcome;
+    }
+
+    private void remember(ChangeSet changes) {
+        for (int i = 0; i < changes.size(); i++) {
+            remember(changes.getX(i), changes.getY(i));
+        }
+    }
+
+    private void remember(int x, int y) {
+        if (painted != null && viewport.isVisible(x, y)) {
+            painted.put(x * board.getSize() + y, BoardDeltas.state(board, x, y));
+        }
+    }
+
+    private ChangeSet unpainted(ChangeSet changes) {
+        ChangeSet rest = new ChangeSet(changes.size());
+        for (int i = 0; i < changes.size(); i++) {
+            int x = changes.getX(i);
+            int y = changes.getY(i);
+            Integer state = painted.remove(x * board.getSize() + y);
+            if (state == null || state != BoardDeltas.state(board, x, y)) rest.add(x, y);
+        }
+        return rest;
+    }
+
+    private void lose() {
+        if (over) return;
+        over = true;
+        countOutcome(Outcome.LOST);
+        onLost.run();
+    }
+
+    /**
+     * Counts the first outcome of the game; finishing again after a near win doesn't count, as
+     * with the recorded results.
+     */
+    private void countOutcome(Outcome outcome) {
+        if (counted) return;
+        counted = true;
+        metrics.gameEnded(outcome);
+    }
+}
@@ -0,0 +1,190 @@
+package ua.oleksiienko.services;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ua.oleksiienko.entities.Board;
+import ua.oleksiienko.entities.GameBoard;
+import ua.oleksiienko.solver.Deduction;
+import ua.oleksiienko.solver.Solver;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Generates boards that can be finished without guessing. Candidate layouts are tried in parallel;
+ * each one is played from its start cell by the {@link Solver}, opening only cells it proves safe,
+ * and the first one it fully deduces wins. Boards come back with the start already opened.
+ */
+@Service
+public class NoGuessGenerator {
+
+    // generation can give up on a hard position and try another layout: on 8x8 a budget of 100
+    // accepts fewer layouts than 5000 (23% against 52%) but checks them almost 20 times as fast
+    private static final long SOLVER_BUDGET = 100;
+
+    private static final ThreadMXBean CPU = ManagementFactory.getThreadMXBean();
+
+    private final ForkJoinPool workers;
+    private final Solver solver;
+    private final long timeBudgetNanos;
+
+    private final LongAdder candidates = new LongAdder();
+    private final LongAdder generated = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private final LongAdder cpuNanos = new LongAdder();
+
+    /**
+     * @param timeBudgetMs how long {@link #generate} searches before settling for an ordinary board
+     * @param threads      candidates checked at once, {@code 0} for one per core
+     */
+    public NoGuessGenerator(@Value("${chess-sweeper.no-guess.time-budget-ms:250}") long timeBudgetMs,
+                            @Value("${chess-sweeper.no-guess.threads:0}") int threads) {
+        this.workers = new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+        this.solver = new Solver(workers, SOLVER_BUDGET);
+        this.timeBudgetNanos = TimeUnit.MILLISECONDS.toNanos(timeBudgetMs);
+    }
+
+    /**
+     * Returns a board with its start opened that logic alone can finish, or an ordinary board with
+     * its start opened if none turns up within the time budget.
+     */
+    public GameBoard generate(int size) {
+        long deadline = System.nanoTime() + timeBudgetNanos;
+        CompletableFuture<GameBoard> found = new CompletableFuture<>();
+        for (int i = 0; i < workers.getParallelism(); i++) {
+            workers.execute(() -> search(size, deadline, found));
+        }
+        GameBoard board;
+        try {
+            board = found.get(timeBudgetNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // a worker may still have finished in the meantime
+            board = found.complete(null) ? null : found.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            found.complete(null);
+            board = null;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        if (board == null) {
+            fallbacks.increment();
+            board = GameBoard.of(size);
+            openStart(board);
+        }
+        return board;
+    }
+
+    /**
+     * Boards fully deduced per second of worker CPU time, the rate one core sustains.
+     */
+    public double getBoardsPerCoreSecond() {
+        long nanos = cpuNanos.sum();
+        return nanos == 0 ? 0 : generated.sum() * 1e9 / nanos;
+    }
+
+    public long getCandidates() {
+        return candidates.sum();
+    }
+
+    public long getGenerated() {
+        return generated.sum();
+    }
+
+    public long getFallbacks() {
+        return fallbacks.sum();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private void search(int size, long deadline, CompletableFuture<GameBoard> found) {
+        long started = CPU.getCurrentThreadCpuTime();
+        try {
+            while (!found.isDone() && System.nanoTime() < deadline) {
+                long seed = ThreadLocalRandom.current().nextLong();
+                candidates.increment();
+                if (!isSolvable(GameBoard.of(size, seed), solver)) {
+                    continue;
+                }
+                generated.increment();
+                // the played board has everything open, hand out a fresh copy
+                GameBoard board = GameBoard.of(size, seed);
+                openStart(board);
+                found.complete(board);
+            }
+        } catch (RuntimeException e) {
+            found.completeExceptionally(e);
+        } finally {
+            cpuNanos.add(CPU.getCurrentThreadCpuTime() - started);
+        }
+    }
+
+    /**
+     * Plays the board from its start, opening every cell the solver proves safe, until either all
+     * cells are deduced or no safe cell is left. Opens cells of the given board.
+     */
+    public static boolean isSolvable(GameBoard board, Solver solver) {
+        if (!openStart(board)) {
+            return false;
+        }
+        int size = board.getSize();
+        while (true) {
+            Deduction deduction = solver.solve(board);
+            if (deduction.isSolved()) {
+                return true;
+            }
+            boolean progress = false;
+            for (int x = 0; x < size; x++) {
+                for (int y = 0; y < size; y++) {
+                    if (board.getVisibility(x, y) != Board.CellVisibility.OPENED && deduction.isSafe(x, y)) {
+                        board.openCell(x, y, false);
+                        progress = true;
+                    }
+                }
+            }
+            if (!progress) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Opens the start of the board: the unattacked empty cell closest to the centre. The choice
+     * only depends on the layout, so a replayed seed gets the same start. Returns {@code false}
+     * if the board has no such cell.
+     */
+    public static boolean openStart(GameBoard board) {
+        int size = board.getSize();
+        int best = -1;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                if (board.getStatus(x, y) != Board.CellStatus.EMPTY) {
+                    continue;
+                }
+                // doubled coordinates keep the centre of an even board on the grid
+                int distance = Math.abs(2 * x + 1 - size) + Math.abs(2 * y + 1 - size);
+                if (distance < bestDistance) {
+                    best = x * size + y;
+                    bestDistance = distance;
+                }
+            }
+        }
+        if (best < 0) {
+            return false;
+        }
+        board.openCell(best / size, best % size, false);
+        return true;
+    }
+}
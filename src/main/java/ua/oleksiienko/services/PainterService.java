@@ -6,65 +6,223 @@ import com.vaadin.flow.component.button.Button;
 import com.vaadin.flow.component.button.ButtonVariant;
 import com.vaadin.flow.component.dialog.Dialog;
 import com.vaadin.flow.component.html.Paragraph;
+import com.vaadin.flow.component.notification.Notification;
 import com.vaadin.flow.component.textfield.TextField;
+import com.vaadin.flow.shared.Registration;
+import com.vaadin.flow.shared.communication.PushMode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Service;
-import org.vaadin.pekkam.CanvasRenderingContext2D;
-import org.apache.commons.lang3.tuple.Pair;
-import ua.oleksiienko.entities.Board;
-import ua.oleksiienko.entities.Piece;
+import ua.oleksiienko.entities.GameBoard;
+import ua.oleksiienko.journal.MoveJournal;
+import ua.oleksiienko.results.GameResult;
+import ua.oleksiienko.results.ResultsStore;
+import ua.oleksiienko.solver.HintEngine;
+import ua.oleksiienko.utils.BoardClickEvent;
+import ua.oleksiienko.utils.BoardDeltas;
+import ua.oleksiienko.utils.BoardPainter;
+import ua.oleksiienko.utils.BoardPicture;
+import ua.oleksiienko.utils.BoardRenderer;
 import ua.oleksiienko.utils.Canvas;
+import ua.oleksiienko.utils.CanvasCommandBuffer;
+import ua.oleksiienko.utils.ClientBoard;
+import ua.oleksiienko.utils.SpriteAtlas;
+import ua.oleksiienko.utils.Viewport;
 
-import java.util.Locale;
+import java.util.function.Supplier;
 
 @Service
 @Scope("prototype")
 public class PainterService {
-    private static double C_SIZE = 0;
-    private final static int C_COUNT = 8;
+    private final static String HOVER_COLOR = "#39547D";
+
+    /**
+     * Where the board is drawn: by the browser following canvas commands from the server, by the
+     * browser from cell states, or by the server as one image.
+     */
+    public enum Rendering {
+        CANVAS,
+        CLIENT,
+        IMAGE
+    }
+
     private Canvas canvas;
+    private ClientBoard clientBoard;
+    private BoardPicture picture;
+    private Viewport viewport;
+    private GameSession session;
+    private SharedGames.Room room;
+    private SharedGames.Participant participant;
+    private Registration resizeRegistration;
 
-    private Board board;
-    private boolean over = false;
+    private GameBoard board;
 
     private TextField score;
 
     private Button finishButton;
 
-    private Pair<Integer, Integer> lastCursorPosition = Pair.of(0, 0);
+    private Supplier<String> player;
+    private long startedAt;
+    private boolean recorded;
+
+    @Value("${chess-sweeper.viewport.tiles:16}")
+    private int viewportTiles;
+
+    @Value("${chess-sweeper.viewport.max-tiles:32}")
+    private int viewportMaxTiles;
+
+    @Value("${chess-sweeper.viewport.interval-ms:50}")
+    private int viewportInterval;
+
+    @Value("${chess-sweeper.render:canvas}")
+    private Rendering rendering;
+
+    @Autowired
+    private MoveJournal journal;
+
+    @Autowired
+    private GameMetrics metrics;
+
+    @Autowired
+    private ResultsStore results;
+
+    @Autowired
+    private BoardImages images;
+
+    @Autowired
+    private SharedGames sharedGames;
+
+    /**
+     * @param player the name the outcome is recorded under, read when the game ends
+     */
+    public void init(HasComponents component, GameBoard board, TextField score, Button finishButton,
+                     Supplier<String> player, double maxSize) {
+        BoardRenderer renderer = createRenderer(component, board, maxSize);
+        start(new GameSession(board, viewport, renderer, journal, metrics, this::gameOver), score, finishButton, player);
+    }
 
+    /**
+     * Joins the co-op game of the room, see {@link SharedGames}. What the other players change
+     * is pushed to the page once per tick.
+     *
+     * @param player the name the outcome is recorded under, read when the game ends
+     */
+    public void initShared(HasComponents component, String roomName, TextField score, Button finishButton,
+                           Supplier<String> player, double maxSize) {
+        UI ui = UI.getCurrent();
+        ui.getPushConfiguration().setPushMode(PushMode.AUTOMATIC);
+        this.participant = changes -> ui.access(() -> {
+            session.paintShared(changes);
+            updateScore();
+        });
+        this.room = sharedGames.join(roomName, participant);
+        GameBoard board = room.getBoard();
+        BoardRenderer renderer = createRenderer(component, board, maxSize);
+        start(new GameSession(board, room.getGame(), viewport, renderer, journal, metrics, this::gameOver),
+                score, finishButton, player);
+    }
 
+    private BoardRenderer createRenderer(HasComponents component, GameBoard board, double maxSize) {
+        int tiles = Math.min(board.getSize(), viewportTiles);
+        this.viewport = new Viewport(board.getSize(), tiles, viewportMaxTiles, Math.min(60, maxSize / tiles));
+        BoardRenderer renderer;
+        switch (rendering) {
+            case CLIENT -> {
+                this.clientBoard = new ClientBoard(SpriteAtlas.URL, HOVER_COLOR);
+                renderer = new BoardDeltas(board, viewport, clientBoard);
+                clientBoard.addDetachListener(event -> close());
+                component.add(clientBoard);
+            }
+            case IMAGE -> {
+                this.picture = new BoardPicture();
+                renderer = new BoardImageRenderer(board, viewport, images, etag -> picture.show(etag, viewport.getCanvasSize()));
+                picture.addDetachListener(event -> close());
+                component.add(picture);
+            }
+            default -> {
+                this.canvas = new Canvas(viewport.getCanvasSize(), viewport.getCanvasSize());
+                renderer = new BoardPainter(board, new CanvasCommandBuffer(canvas), viewport, () -> {});
+                canvas.addDetachListener(event -> close());
+                component.add(canvas);
+                canvas.preloadAtlas(SpriteAtlas.URL);
+            }
+        }
+        return renderer;
+    }
 
-    public void init(HasComponents component, Board board, TextField score, Button finishButton, double maxSize) {
-        C_SIZE = Math.min(60, maxSize / C_COUNT);
-        this.canvas = new Canvas((int) (C_SIZE * C_COUNT + 10), (int) (C_SIZE * C_COUNT + 10));
-        this.board = board;
+    private void start(GameSession session, TextField score, Button finishButton, Supplier<String> player) {
+        this.session = session;
+        this.board = session.getBoard();
+        // the page outlives the view, so the listener is removed again in close()
+        resizeRegistration = UI.getCurrent().getPage().addBrowserWindowResizeListener(event -> resize(event.getWidth() * 0.9));
         this.score = score;
         this.finishButton = finishButton;
-        component.add(this.canvas);
-        paintBoard();
-        addMoveListener();
+        this.player = player;
+        this.startedAt = System.currentTimeMillis();
+        session.paint();
+        setHoverGrid();
         addClickListener();
+        addViewportListener();
         addFinishHandler();
-        score.setValue("0/" + board.getNumberOfMines());
+        updateScore();
+    }
+
+    /**
+     * Tells the player which closed cell is safest to open next, and shades the visible ones by
+     * their chance of holding a piece.
+     */
+    public void showHint() {
+        if (session == null) return;
+        HintEngine.Hint hint = session.hint();
+        if (hint == null) {
+            Notification.show("Підказки немає", 3000, Notification.Position.BOTTOM_CENTER);
+            return;
+        }
+        String chance = String.format("%.0f%%", hint.pieceChance() * 100);
+        Notification.show("Клітинка (" + (hint.x() + 1) + ", " + (hint.y() + 1) + "), шанс міни " + chance,
+                3000, Notification.Position.BOTTOM_CENTER);
+        double[] chances = session.visibleChances();
+        if (chances == null) return;
+        if (canvas != null) {
+            canvas.showChances(viewport.getTileSize(), Viewport.MARGIN, viewport.getTiles(), chances);
+        } else if (picture != null) {
+            picture.showChances(viewport.getTileSize(), Viewport.MARGIN, viewport.getTiles(), chances);
+        } else {
+            clientBoard.showChances(viewport.getTileSize(), Viewport.MARGIN, viewport.getTiles(), chances);
+        }
+    }
+
+    public void undo() {
+        if (session != null && session.undo()) updateScore();
+    }
+
+    public void redo() {
+        if (session != null && session.redo()) updateScore();
+    }
+
+    /**
+     * Shows the game as it was after the given number of moves, repainting only what differs.
+     */
+    public void jumpTo(int version) {
+        if (session != null && session.jumpTo(version)) updateScore();
     }
 
     private void addFinishHandler() {
         Dialog win = createWin();
         Dialog nearlyWin = createNearly();
         this.finishButton.addSingleClickListener(event -> {
-            if (over) {
+            if (session.isOver()) {
                 UI.getCurrent().getPage().reload();
                 return;
             }
-            if (board.checkWin()) {
-                win.open();
-            } else if (board.checkAllFlagged()) {
-                nearlyWin.open();
-            } else {
-                board.endGame();
-                paintBoard();
+            GameSession.Outcome outcome = session.finish();
+            switch (outcome) {
+                case WIN -> win.open();
+                case NEARLY -> nearlyWin.open();
+                case LOST -> {}
             }
+            record(outcome);
         });
     }
 
@@ -114,137 +272,111 @@ public class PainterService {
     }
 
     private void addClickListener() {
+        if (clientBoard != null) {
+            clientBoard.addClickListener(this::onBoardClick);
+            return;
+        }
+        if (picture != null) {
+            picture.addClickListener(this::onBoardClick);
+            return;
+        }
         this.canvas.addRightClickListener(it -> {
-            if (over) return;
-            int x = it.getOffsetX();
-            int y = it.getOffsetY();
-            if (x > 5 && x < C_SIZE * C_COUNT - 5 && y > 5 && y < C_SIZE * C_COUNT - 5) {
-                x = (x - 5) / (int) C_SIZE;
-                y = (y - 5) / (int) C_SIZE;
-                board.flagNext(x, y);
-                updateScore();
-                paintBoard();
-            }
+            if (session.flag(it.getOffsetX(), it.getOffsetY())) updateScore();
         });
         this.canvas.addMouseClickListener(it -> {
-            if (over) return;
-            int x = it.getOffsetX();
-            int y = it.getOffsetY();
-            if (x > 5 && x < C_SIZE * C_COUNT - 5 && y > 5 && y < C_SIZE * C_COUNT - 5) {
-                x = (x - 5) / (int) C_SIZE;
-                y = (y - 5) / (int) C_SIZE;
-                board.  openCell(x, y, true);
-                updateScore();
-                paintBoard();
-            }
+            if (session.open(it.getOffsetX(), it.getOffsetY())) updateScore();
         });
     }
 
+    private void onBoardClick(BoardClickEvent event) {
+        boolean hit = event.getButton() == 2
+                ? session.flag(event.getOffsetX(), event.getOffsetY())
+                : session.open(event.getOffsetX(), event.getOffsetY());
+        if (hit) updateScore();
+    }
+
     private void updateScore() {
         score.setValue(board.getFlaggedCount() + "/" + board.getNumberOfMines());
         score.setInvalid(board.getFlaggedCount() > board.getNumberOfMines());
-        finishButton.setEnabled(board.getFlaggedCount() == board.getNumberOfMines());
-    }
-
-    private void addMoveListener() {
-        this.canvas.addMouseMoveListener(it -> {
-            if (over) return;
-            int x = it.getOffsetX();
-            int y = it.getOffsetY();
-            if (x > 5 && x < C_SIZE * C_COUNT - 5 && y > 5 && y < C_SIZE * C_COUNT - 5) {
-                x = (x - 5) / (int) C_SIZE;
-                y = (y - 5) / (int) C_SIZE;
-                int oldX = lastCursorPosition.getLeft();
-                int oldY = lastCursorPosition.getRight();
-                if (x != oldX || y != oldY) {
-                    paintTile(oldX, oldY);
-                    paintHollowRect(x, y, "#39547D");
-                    lastCursorPosition = Pair.of(x, y);
-                }
-            }
-        });
+        finishButton.setEnabled(session.isOver() || board.getFlaggedCount() == board.getNumberOfMines());
     }
 
-    private void paintBoard() {
-        CanvasRenderingContext2D ctx = canvas.getContext();
-        for (int i = 0; i < C_COUNT; i++) {
-            for (int j = 0; j < C_COUNT; j++) {
-                paintTile(i, j);
-            }
+    /**
+     * Boards larger than the viewport pan with the wheel and zoom with ctrl + wheel. Either way
+     * only the tiles of the new window are repainted.
+     */
+    private void addViewportListener() {
+        if (board.getSize() <= viewport.getTiles()) return;
+        if (clientBoard != null) {
+            clientBoard.enableViewportControls(viewportInterval);
+            clientBoard.addViewportListener(it -> session.moveViewport(it.getPanX(), it.getPanY(), it.getZoom(), it.getOffsetX(), it.getOffsetY()));
+            return;
         }
-    }
-
-    private void paintTile(int x, int y) {
-        var cell = board.getCell(x, y);
-        switch (cell.getVisibility()) {
-            case CLOSED -> paintRect(x, y, getClosedColor(x, y));
-            case OPENED -> paintOpenTile(x, y);
-            case FLAGGED -> paintFlaggedTile(x, y);
-        }
-    }
-
-    private void paintFlaggedTile(int x, int y) {
-        paintRect(x, y, getClosedColor(x, y));
-        var cell = board.getCell(x, y);
-        var flag = cell.getFlag();
-        paintPiece(x, y, flag, "white");
-    }
-
-    private void paintOpenTile(int x, int y) {
-        paintRect(x, y, "#ADB9C9");
-        paintHollowRect(x, y, "black");
-        var cell = board.getCell(x, y);
-        switch (cell.getStatus()) {
-            case PIECED -> {
-                if (cell.getVisibility() == Board.CellVisibility.FLAGGED && cell.getFlag() == cell.getPiece()) {
-                    paintPiece(x, y, cell.getPiece(), "white");
+        if (picture != null) {
+            picture.enableViewportControls(viewportInterval);
+            picture.addViewportListener(it -> {
+                if (session.moveViewport(it.getPanX(), it.getPanY(), it.getZoom(), it.getOffsetX(), it.getOffsetY())) {
+                    setHoverGrid();
                 }
-                paintPiece(x, y, cell.getPiece(), "black");
-                gameOver();
-            }
-            case BEATEN -> paintBeats(x, y, cell.getBeaten());
-            default -> {}
+            });
+            return;
         }
+        canvas.enableViewportControls(viewportInterval);
+        canvas.addViewportListener(it -> {
+            if (session.moveViewport(it.getPanX(), it.getPanY(), it.getZoom(), it.getOffsetX(), it.getOffsetY())) {
+                setHoverGrid();
+            }
+        });
     }
 
-
-    private String getClosedColor(int x, int y) {
-        return (x % 2 + y % 2) % 2 == 0 ? "#076271" : "#20457D";
-    }
-    private void paintRect(int x, int y, String color) {
-        var ctx = canvas.getContext();
-        ctx.setFillStyle(color);
-        ctx.fillRect(x * C_SIZE + 5, y * C_SIZE + 5, C_SIZE, C_SIZE);
+    /**
+     * Tells the browser where the tiles are, for hover highlighting and wheel panning. The
+     * client-side board keeps its grid to itself.
+     */
+    private void setHoverGrid() {
+        if (canvas != null) {
+            canvas.setHoverGrid(viewport.getTileSize(), Viewport.MARGIN, viewport.getTiles(), HOVER_COLOR);
+        } else if (picture != null) {
+            picture.setHoverGrid(viewport.getTileSize(), Viewport.MARGIN, viewport.getTiles(), HOVER_COLOR);
+        }
     }
 
-    private void paintHollowRect(int x, int y, String color) {
-        var ctx = canvas.getContext();
-        ctx.setStrokeStyle(color);
-        ctx.setLineWidth(4);
-        ctx.strokeRect(x * C_SIZE + 7, y * C_SIZE + 7, C_SIZE-4, C_SIZE-4);
+    private void resize(double maxSize) {
+        double size = Math.min(60, maxSize / viewport.getTiles());
+        if (size == viewport.getTileSize()) return;
+        if (canvas == null) {
+            session.resize(size);
+            setHoverGrid();
+            return;
+        }
+        viewport.setTileSize(size);
+        canvas.getElement().setAttribute("width", String.valueOf(viewport.getCanvasSize()));
+        canvas.getElement().setAttribute("height", String.valueOf(viewport.getCanvasSize()));
+        setHoverGrid();
+        session.resize(size);
     }
 
-    private void paintBeats(int x, int y, int beaten) {
-        var ctx = canvas.getContext();
-        ctx.setFillStyle("black");
-        ctx.setFont(C_SIZE / 2 + "px serif");
-        ctx.fillText(String.valueOf(beaten), x * C_SIZE + 5 + C_SIZE / 2.6087, y * C_SIZE + 5 + C_SIZE / 1.5);
+    /**
+     * Records the first outcome of the game; finishing again after a near win doesn't count.
+     */
+    private void record(GameSession.Outcome outcome) {
+        if (recorded) return;
+        recorded = true;
+        long now = System.currentTimeMillis();
+        results.record(new GameResult(player.get(), board.getSize(), board.getSeed(), outcome, now - startedAt, now));
     }
 
-    private void paintPiece(int x, int y, Piece piece, String color) {
-        var ctx = canvas.getContext();
-        String name = "question";
-        if (piece != null) {
-            name = piece.name().toLowerCase(Locale.ENGLISH);
+    private void close() {
+        if (resizeRegistration != null) {
+            resizeRegistration.remove();
+            resizeRegistration = null;
         }
-        ctx.drawImage("resources/pieces/"
-                + name
-                + "_" + color + ".png", x * C_SIZE + 5 + C_SIZE * 0.03, y * C_SIZE + 5 + C_SIZE * 0.03, C_SIZE * 0.94, C_SIZE * 0.94);
+        session.close();
+        if (room != null) sharedGames.leave(room, participant);
     }
 
     private void gameOver() {
-        if (this.over) return;
-        this.over = true;
+        record(GameSession.Outcome.LOST);
         finishButton.setText("Почати заново");
         finishButton.setEnabled(true);
         createLose().open();
@@ -0,0 +1,139 @@
+package ua.oleksiienko.services;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ua.oleksiienko.entities.ChangeSet;
+import ua.oleksiienko.entities.SharedBoard;
+import ua.oleksiienko.journal.MoveJournal;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Co-op games: every room is one {@link SharedBoard} that all its participants play at once.
+ * Moves go straight to the board from the players' own request threads. Once per tick a
+ * background ticker takes the cells each board changed since the last tick and hands that batch
+ * to every participant of the room. A cell that changed several times in a tick is sent once.
+ * A room is dropped when its last participant leaves, and started afresh when someone joins
+ * after its game was lost.
+ */
+@Service
+public class SharedGames {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SharedGames.class);
+
+    /**
+     * Receives the cells changed on the room's board, on the ticker thread; it should hand them
+     * to its own thread rather than paint there. The batch includes the participant's own moves,
+     * {@link GameSession#paintShared} skips those it already painted.
+     */
+    public interface Participant {
+        void changed(ChangeSet changes);
+    }
+
+    public static final class Room {
+
+        private final String name;
+        private final SharedBoard board;
+        private final long game;
+        private final Set<Participant> participants = ConcurrentHashMap.newKeySet();
+
+        private Room(String name, SharedBoard board, long game) {
+            this.name = name;
+            this.board = board;
+            this.game = game;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public SharedBoard getBoard() {
+            return board;
+        }
+
+        /**
+         * The id the room's moves are journalled under.
+         */
+        public long getGame() {
+            return game;
+        }
+
+        public int getParticipants() {
+            return participants.size();
+        }
+    }
+
+    private final int size;
+    private final MoveJournal journal;
+    private final Map<String, Room> rooms = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService ticker;
+
+    /**
+     * @param size       side of the boards rooms start with
+     * @param tickMillis interval between broadcasts
+     */
+    public SharedGames(@Value("${chess-sweeper.shared.size:512}") int size,
+                       @Value("${chess-sweeper.shared.tick-ms:50}") long tickMillis,
+                       MoveJournal journal, GameExecutors executors) {
+        this.size = size;
+        this.journal = journal;
+        this.ticker = Executors.newSingleThreadScheduledExecutor(executors.threadFactory("shared-games"));
+        ticker.scheduleWithFixedDelay(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Adds the participant to the room, starting a new board if the room doesn't exist yet or
+     * its game was lost. The players of a lost game keep their room until they leave, but it no
+     * longer gets ticks.
+     */
+    public Room join(String name, Participant participant) {
+        return rooms.compute(name, (key, room) -> {
+            if (room == null || room.board.isLost()) {
+                SharedBoard board = new SharedBoard(size, ThreadLocalRandom.current().nextLong());
+                room = new Room(key, board, journal.start(board));
+            }
+            room.participants.add(participant);
+            return room;
+        });
+    }
+
+    public void leave(Room room, Participant participant) {
+        room.participants.remove(participant);
+        rooms.computeIfPresent(room.name, (key, current) -> current == room && current.participants.isEmpty() ? null : current);
+    }
+
+    public Room getRoom(String name) {
+        return rooms.get(name);
+    }
+
+    /**
+     * Broadcasts what changed since the last tick; the ticker calls it every tick.
+     */
+    public void tick() {
+        for (Room room : rooms.values()) {
+            ChangeSet changes = room.board.drainChanges();
+            if (changes.isEmpty()) continue;
+            for (Participant participant : room.participants) {
+                try {
+                    participant.changed(changes);
+                } catch (RuntimeException e) {
+                    LOG.warn("A participant of room {} failed to take its changes", room.name, e);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        ticker.shutdownNow();
+    }
+}
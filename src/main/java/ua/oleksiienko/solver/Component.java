@@ -0,0 +1,1285 @@
+package ua.oleksiienko.solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * A set of cells whose contents are tied together by beat counts, solved independently of the rest
+ * of the board. Cells are local variables {@code 0..n-1}, each with a domain: the mask of contents
+ * it may still hold.
+ * <p>
+ * A constraint is an open cell with its beat count, plus the rays along which it can be attacked.
+ * A ray lists variables from the constraint outwards, each with the mask of contents that would
+ * attack the constraint from there; an entry only attacks if every earlier entry on the ray is
+ * empty. Knight jumps are rays of length one.
+ * <p>
+ * The search runs on states: the domains, followed by whether each ray attacks its constraint
+ * for sure, possibly or never, and by how many rays of each constraint do so for sure and
+ * possibly. Narrowing a domain rescans only the rays through that variable, so checking a
+ * constraint whose counts leave it room costs nothing.
+ * <p>
+ * Not thread-safe: a component keeps scratch state and is solved by one task.
+ */
+final class Component {
+
+    private static final int NONE_MASK = Position.NONE_MASK;
+    private static final int PIECE_MASK = Position.ALL_MASK & ~NONE_MASK;
+    private static final byte[] OUT_OF_BUDGET = new byte[0];
+    private static final byte[] DEAD_END = new byte[0];
+    private static final long PROBE_NODES = 2_000;
+    // branches that count within this many nodes aren't sampled
+    private static final long SMALL_BRANCH = 100;
+    // share of a sampled branch's chance spread evenly, so no branch is drawn too rarely
+    private static final double EVEN_SHARE = 0.1;
+    private static final int KEPT_SOLUTIONS = 8;
+    // long-range pieces first: they satisfy the most counts each
+    private static final int[] ORDER = {NONE_MASK, 1 << 4, 1 << 3, 1 << 1, 1 << 5, 1 << 2};
+    private static final int NEVER = 0;
+    private static final int MAYBE = 1;
+    private static final int CERTAIN = 2;
+
+    final int[] cells;
+    private final byte[] initial;
+    private final int[] targets;
+    private final int[][][] rayVars;
+    private final byte[][][] rayMasks;
+    // for each variable, the rays through it and the mask that attacks from there
+    private final int[][] watchRays;
+    private final byte[][] watchMasks;
+    // each constraint's rays back to back, a variable and its mask per entry
+    private final int[][] entries;
+    // rays are numbered over all constraints; a constraint's rays are firstRay[c]..firstRay[c + 1] - 1
+    private final int[] firstRay;
+    private final int[] rayOwner;
+    private final int[] rayFrom;
+    private final int[] rayTo;
+    // where the certain and possible attacker counts start in a state
+    private final int loBase;
+    private final int hiBase;
+    private final byte[] start;
+    private final int[] settleOrder;
+    private final boolean[] front;
+    private final long budget;
+
+    private final int[] queue;
+    private final boolean[] queued;
+    private int head;
+    private int length;
+
+    private int minPieces;
+    private int maxPieces;
+    private long counts;
+    private long nodes;
+    private long limit;
+    private long spent;
+    private final List<byte[]> solutions = new ArrayList<>();
+    private final Set<Large> large = new HashSet<>();
+    private final int[] marks;
+    private int stamp;
+    // constraints short of attackers by options, then the packing of them a search node made
+    private final int[] shortOf;
+    private final int[] optionsOf;
+    private final int[] deficitOf;
+    // what the first change of a move did to each constraint on its rays
+    private final int[] moveStamp;
+    private final int[] moveRay;
+    private final int[] moveDelta;
+    private int moves;
+    private boolean exhausted;
+
+    Component(int[] cells, byte[] initial, int[] targets, int[][][] rayVars, byte[][][] rayMasks, long budget) {
+        this.cells = cells;
+        this.initial = initial;
+        this.targets = targets;
+        this.rayVars = rayVars;
+        this.rayMasks = rayMasks;
+        this.budget = budget;
+        this.queue = new int[targets.length];
+        this.queued = new boolean[targets.length];
+        this.marks = new int[cells.length];
+        this.shortOf = new int[targets.length];
+        this.optionsOf = new int[targets.length];
+        this.deficitOf = new int[targets.length];
+        this.moveStamp = new int[targets.length];
+        this.moveRay = new int[targets.length];
+        this.moveDelta = new int[targets.length];
+        firstRay = new int[targets.length + 1];
+        for (int c = 0; c < targets.length; c++) firstRay[c + 1] = firstRay[c] + rayVars[c].length;
+        int rays = firstRay[targets.length];
+        rayOwner = new int[rays];
+        rayFrom = new int[rays];
+        rayTo = new int[rays];
+        entries = new int[targets.length][];
+        int[] counts = new int[cells.length];
+        for (int c = 0; c < targets.length; c++) {
+            int at = 0;
+            for (int r = 0; r < rayVars[c].length; r++) {
+                int ray = firstRay[c] + r;
+                rayOwner[ray] = c;
+                rayFrom[ray] = at;
+                at += rayVars[c][r].length;
+                rayTo[ray] = at;
+                for (int v : rayVars[c][r]) counts[v]++;
+            }
+            entries[c] = new int[at];
+        }
+        watchRays = new int[cells.length][];
+        watchMasks = new byte[cells.length][];
+        for (int v = 0; v < cells.length; v++) {
+            watchRays[v] = new int[counts[v]];
+            watchMasks[v] = new byte[counts[v]];
+            counts[v] = 0;
+        }
+        int[] depth = new int[cells.length];
+        Arrays.fill(depth, Integer.MAX_VALUE);
+        for (int c = 0; c < targets.length; c++) {
+            for (int r = 0; r < rayVars[c].length; r++) {
+                int[] ray = rayVars[c][r];
+                for (int j = 0; j < ray.length; j++) {
+                    int v = ray[j];
+                    int mask = rayMasks[c][r][j];
+                    watchRays[v][counts[v]] = firstRay[c] + r;
+                    watchMasks[v][counts[v]++] = (byte) mask;
+                    entries[c][rayFrom[firstRay[c] + r] + j] = v << 8 | mask & 0xff;
+                    depth[v] = Math.min(depth[v], j);
+                }
+            }
+        }
+        loBase = cells.length + rays;
+        hiBase = loBase + targets.length;
+        start = Arrays.copyOf(initial, hiBase + targets.length);
+        restate(start);
+        front = new boolean[cells.length];
+        for (int v = 0; v < cells.length; v++) {
+            front[v] = depth[v] == 0;
+        }
+        // cells close to the open ones first, so what blocks a ray is settled before what it hides
+        settleOrder = IntStream.range(0, cells.length).boxed()
+                .sorted(Comparator.comparingInt(v -> depth[v]))
+                .mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Works out the contents each variable can hold in some solution with between {@code minPieces}
+     * and {@code maxPieces} pieces, or returns {@code null} if there is no such solution.
+     * <p>
+     * Variables first on some ray are probed for being empty and for holding a piece; each solution
+     * found is recorded for every variable at once, so most probes are answered by earlier ones,
+     * changed in one cell or with one piece moved. A probe that fails narrows the domains the
+     * later ones start from. The exact piece is only searched for where the cell can't be empty. Deeper variables and the
+     * remaining piece kinds report what propagation leaves them, and a probe that runs out of nodes
+     * counts as possible, so the result may be too permissive but never misses a solution.
+     */
+    byte[] solve(int minPieces, int maxPieces) {
+        this.minPieces = minPieces;
+        this.maxPieces = maxPieces;
+        spent = 0;
+        solutions.clear();
+        byte[] root = start.clone();
+        if (!propagateAll(root)) return null;
+        int n = cells.length;
+        int definite = 0;
+        int possiblePieces = 0;
+        for (int v = 0; v < n; v++) {
+            if ((root[v] & NONE_MASK) == 0) definite++;
+            if ((root[v] & PIECE_MASK) != 0) possiblePieces++;
+        }
+        counts = range(Math.max(definite, minPieces), Math.min(possiblePieces, maxPieces));
+        byte[] possible = new byte[n];
+        for (int v = 0; v < n; v++) {
+            if (front[v] && !probe(root, possible, v, root[v] & NONE_MASK)) return null;
+        }
+        for (int v = 0; v < n; v++) {
+            if (front[v] && !probe(root, possible, v, root[v] & PIECE_MASK)) return null;
+            if (front[v] && possible[v] == 0) return null;
+        }
+        for (int v = 0; v < n; v++) {
+            if (!front[v]) {
+                possible[v] = root[v];
+            } else if ((possible[v] & NONE_MASK) == 0) {
+                for (int rest = root[v] & PIECE_MASK; rest != 0; rest &= rest - 1) {
+                    if (!probe(root, possible, v, rest & -rest)) return null;
+                }
+            } else if ((possible[v] & PIECE_MASK) != 0) {
+                possible[v] |= (byte) (root[v] & PIECE_MASK);
+            }
+        }
+        return possible;
+    }
+
+    /**
+     * Searches for a solution with the variable restricted to {@code domain}, unless one is known.
+     * A domain that has none is ruled out of {@code root}, so later probes start from what this
+     * one proved; returns {@code false} if that leaves no solution at all.
+     */
+    private boolean probe(byte[] root, byte[] possible, int v, int domain) {
+        if (domain == 0 || (possible[v] & domain) != 0) return true;
+        for (byte[] known : solutions) {
+            // most probes are answered by changing a single cell of an earlier solution
+            for (int rest = domain & root[v]; rest != 0; rest &= rest - 1) {
+                if (!stillSolves(known, v, rest & -rest)) continue;
+                byte[] changed = known.clone();
+                if (narrow(changed, v, rest & -rest) && propagate(changed)) {
+                    record(possible, changed);
+                    return true;
+                }
+            }
+        }
+        for (int k = solutions.size() - 1; k >= 0; k--) {
+            // with the piece count fixed, emptying or filling a cell takes a piece moved elsewhere
+            for (int rest = domain & root[v]; rest != 0; rest &= rest - 1) {
+                byte[] moved = move(root, solutions.get(k), v, rest & -rest);
+                if (moved != null) {
+                    record(possible, moved);
+                    return true;
+                }
+            }
+        }
+        byte[] domains = root.clone();
+        narrow(domains, v, domain);
+        int placed = 0;
+        for (int u = 0; u < cells.length; u++) {
+            if ((domains[u] & NONE_MASK) == 0) placed++;
+        }
+        nodes = 0;
+        limit = Math.min(PROBE_NODES, budget - spent);
+        byte[] solution = limit > 0 ? descend(domains, placed) : OUT_OF_BUDGET;
+        spent += nodes;
+        if (solution == OUT_OF_BUDGET) {
+            exhausted = true;
+            possible[v] |= (byte) domain;
+        } else if (solution != null) {
+            record(possible, solution);
+        } else {
+            return narrow(root, v, root[v] & ~domain) && propagate(root);
+        }
+        return true;
+    }
+
+    /**
+     * Whether a solution stays one with the variable changed to {@code value}: only the rays through
+     * it and the piece count can change, so those are all it checks.
+     */
+    private boolean stillSolves(byte[] solution, int v, int value) {
+        int pieces = (value & NONE_MASK) == 0 ? 1 : 0;
+        for (int u = 0; u < cells.length; u++) {
+            if (u != v && (solution[u] & NONE_MASK) == 0) pieces++;
+        }
+        if (pieces < minPieces || pieces > maxPieces) return false;
+        byte old = solution[v];
+        solution[v] = (byte) value;
+        boolean fits = true;
+        int[] rays = watchRays[v];
+        for (int i = 0; i < rays.length && fits; i++) {
+            int ray = rays[i];
+            int c = rayOwner[ray];
+            int after = scan(entries[c], rayFrom[ray], rayTo[ray], solution);
+            int before = solution[cells.length + ray];
+            // rays of a constraint share no variable, so each constraint is reached once
+            fits = solution[loBase + c] + (after == CERTAIN ? 1 : 0) - (before == CERTAIN ? 1 : 0) == targets[c];
+        }
+        solution[v] = old;
+        return fits;
+    }
+
+    /**
+     * Looks for a solution two cells away from a known one: the variable changed to {@code value},
+     * and a cell on a ray of a constraint that this breaks changed to make up for it.
+     */
+    private byte[] move(byte[] root, byte[] solution, int v, int value) {
+        int pieces = 0;
+        for (int u = 0; u < cells.length; u++) {
+            if ((solution[u] & NONE_MASK) == 0) pieces++;
+        }
+        int old = solution[v];
+        pieces += ((value & NONE_MASK) == 0 ? 1 : 0) - ((old & NONE_MASK) == 0 ? 1 : 0);
+        solution[v] = (byte) value;
+        moves++;
+        int broken = 0;
+        int first = -1;
+        for (int ray : watchRays[v]) {
+            int c = rayOwner[ray];
+            moveStamp[c] = moves;
+            moveRay[c] = ray;
+            moveDelta[c] = (scan(entries[c], rayFrom[ray], rayTo[ray], solution) == CERTAIN ? 1 : 0)
+                    - (solution[cells.length + ray] == CERTAIN ? 1 : 0);
+            if (solution[loBase + c] + moveDelta[c] != targets[c]) {
+                broken++;
+                first = c;
+            }
+        }
+        byte[] found = null;
+        int[] entry = first >= 0 ? entries[first] : null;
+        for (int j = 0; entry != null && j < entry.length && found == null; j++) {
+            int u = entry[j] >>> 8;
+            int was = solution[u];
+            if (u == v) continue;
+            for (int rest = root[u] & ~was; rest != 0 && found == null; rest &= rest - 1) {
+                int now = rest & -rest;
+                int total = pieces + ((now & NONE_MASK) == 0 ? 1 : 0) - ((was & NONE_MASK) == 0 ? 1 : 0);
+                if (total < minPieces || total > maxPieces) continue;
+                solution[u] = (byte) now;
+                if (fixes(solution, u, broken)) {
+                    found = solution.clone();
+                    restate(found);
+                }
+                solution[u] = (byte) was;
+            }
+        }
+        solution[v] = (byte) old;
+        return found;
+    }
+
+    /**
+     * Whether the cell changed by {@link #move} brings every constraint on its rays to its count,
+     * among them all {@code broken} ones the first change left off it.
+     */
+    private boolean fixes(byte[] solution, int u, int broken) {
+        int fixed = 0;
+        for (int ray : watchRays[u]) {
+            int c = rayOwner[ray];
+            int lo = solution[loBase + c] + (scan(entries[c], rayFrom[ray], rayTo[ray], solution) == CERTAIN ? 1 : 0)
+                    - (solution[cells.length + ray] == CERTAIN ? 1 : 0);
+            if (moveStamp[c] == moves) {
+                // the scan covers both changes if they share the ray
+                if (moveRay[c] != ray) lo += moveDelta[c];
+                if (solution[loBase + c] + moveDelta[c] != targets[c]) fixed++;
+            }
+            if (lo != targets[c]) return false;
+        }
+        return fixed == broken;
+    }
+
+    private void record(byte[] possible, byte[] solution) {
+        for (int u = 0; u < possible.length; u++) possible[u] |= solution[u];
+        if (solutions.size() == KEPT_SOLUTIONS) solutions.remove(0);
+        solutions.add(solution);
+    }
+
+    /**
+     * Mask of piece counts this component may hold; a superset of the counts its solutions have.
+     * Only valid after {@link #solve}.
+     */
+    long counts() {
+        return counts;
+    }
+
+    boolean isExhausted() {
+        return exhausted;
+    }
+
+    int size() {
+        return cells.length;
+    }
+
+    /**
+     * Mask of the counts {@code from..to}, empty if {@code to < from}.
+     */
+    static long range(int from, int to) {
+        if (to < from) return 0;
+        long upTo = to >= Long.SIZE - 1 ? -1L : (1L << (to + 1)) - 1;
+        return upTo & -(1L << Math.min(from, Long.SIZE - 1));
+    }
+
+    /**
+     * Counts the solutions with at most {@code maxPieces} pieces, by piece count and by what each
+     * variable holds in them.
+     * <p>
+     * The search only branches where a count is still in doubt: on the first undecided variable of
+     * a ray that may or may not attack, split into empty, attacking along that ray and blocking it.
+     * After each branch the constraints still in doubt are split into groups that share no variable
+     * they depend on; groups are counted separately and multiplied, and each group's count is
+     * remembered by its domains, since the same group turns up under many branches of the others.
+     * Variables no constraint depends on any more are counted as free choices.
+     * <p>
+     * If that takes more than {@code limit} search nodes, the count is estimated instead from up to
+     * {@code samples} descents, within another {@code limit} nodes, that follow one random branch
+     * per group, weighted by the number of branches it stood for, which keeps the estimate
+     * unbiased. Branches small enough to count in a few nodes, and groups already counted, are
+     * counted rather than sampled, which is what keeps its spread down.
+     */
+    Tally count(int maxPieces, long limit, int samples, Random random) {
+        this.minPieces = 0;
+        // the counts cap the pieces; propagation has to stay within the group it was called for
+        this.maxPieces = cells.length;
+        int max = Math.min(maxPieces, cells.length);
+        int[] all = IntStream.range(0, cells.length).toArray();
+        int[] constraints = IntStream.range(0, targets.length).toArray();
+        Tally.Builder builder = new Tally.Builder(cells.length, max);
+        byte[] root = start.clone();
+        if (!propagateAll(root)) return builder.build(builder.none(), true);
+        Map<Key, Counted> counted = new HashMap<>();
+        nodes = 0;
+        this.limit = limit;
+        Tally.Node whole = split(root, constraints, all, max, counted, builder, null);
+        if (whole != null) return builder.build(whole, true);
+        large.clear();
+        List<Tally.Node> descents = new ArrayList<>();
+        boolean found = false;
+        nodes = 0;
+        // a descent into a dead end says little, so sampling goes on until one finds solutions
+        do {
+            Tally.Node descent = split(root, constraints, all, max, counted, builder, random);
+            descents.add(descent);
+            found |= descent.hasSolutions();
+        } while (nodes <= limit && (descents.size() < samples || !found));
+        double[] factors = new double[descents.size()];
+        Arrays.fill(factors, 1.0 / descents.size());
+        return builder.build(builder.sum(descents.toArray(Tally.Node[]::new), factors), false);
+    }
+
+    /**
+     * Counts the variables of {@code scope} under the given constraints with at most {@code budget}
+     * pieces, or returns {@code null} once out of nodes. Samples instead of counting if
+     * {@code random} is given.
+     */
+    private Tally.Node split(byte[] domains, int[] constraints, int[] scope, int budget,
+                             Map<Key, Counted> counted, Tally.Builder builder, Random random) {
+        int[] owner = new int[cells.length];
+        Arrays.fill(owner, -1);
+        int[] group = new int[targets.length];
+        int[] missing = new int[targets.length];
+        for (int c : constraints) {
+            group[c] = -1;
+            int attackers = 0;
+            int joined = c;
+            for (int r = 0; r < rayVars[c].length; r++) {
+                int state = scan(rayVars[c][r], rayMasks[c][r], domains);
+                if (state == CERTAIN) attackers++;
+                if (state != MAYBE) continue;
+                if (group[c] < 0) group[c] = c;
+                for (int v : rayVars[c][r]) {
+                    if (owner[v] < 0) {
+                        owner[v] = c;
+                    } else if (owner[v] != joined) {
+                        joined = owner[v];
+                        union(group, c, joined);
+                    }
+                    if ((domains[v] & NONE_MASK) == 0) break;
+                }
+            }
+            missing[c] = targets[c] - attackers;
+        }
+        // group number of each root constraint, then how many constraints and variables each group has
+        int[] slot = new int[targets.length];
+        int groups = 0;
+        for (int c : constraints) {
+            if (group[c] >= 0 && find(group, c) == c) slot[c] = groups++;
+        }
+        int[] memberCounts = new int[groups];
+        int[] varCounts = new int[groups + 1];
+        for (int c : constraints) {
+            if (group[c] >= 0) memberCounts[slot[find(group, c)]]++;
+        }
+        int[] varGroup = new int[scope.length];
+        int needed = 0;
+        for (int i = 0; i < scope.length; i++) {
+            int v = scope[i];
+            varGroup[i] = owner[v] < 0 ? groups : slot[find(group, owner[v])];
+            varCounts[varGroup[i]]++;
+            if (owner[v] < 0 && (domains[v] & NONE_MASK) == 0) needed++;
+        }
+        int[][] members = new int[groups][];
+        int[][] vars = new int[groups + 1][];
+        for (int g = 0; g < groups; g++) members[g] = new int[memberCounts[g]];
+        for (int g = 0; g <= groups; g++) vars[g] = new int[varCounts[g]];
+        Arrays.fill(memberCounts, 0);
+        Arrays.fill(varCounts, 0);
+        for (int c : constraints) {
+            if (group[c] < 0) continue;
+            int g = slot[find(group, c)];
+            members[g][memberCounts[g]++] = c;
+        }
+        for (int i = 0; i < scope.length; i++) {
+            int g = varGroup[i];
+            vars[g][varCounts[g]++] = scope[i];
+        }
+        int[] least = new int[groups];
+        for (int g = 0; g < groups; g++) {
+            least[g] = leastPieces(domains, members[g], vars[g], missing);
+            needed += least[g];
+        }
+        if (needed > budget) return builder.none();
+        Tally.Node[] parts = new Tally.Node[groups + 1];
+        parts[0] = builder.free(vars[groups], domains);
+        for (int g = 0; g < groups; g++) {
+            parts[g + 1] = countGroup(domains, members[g], vars[g], missing, budget - needed + least[g], counted, builder, random);
+            if (parts[g + 1] == null) return null;
+        }
+        return builder.product(parts);
+    }
+
+    /**
+     * A lower bound on the pieces a group holds: the attackers its constraints are short of, over
+     * constraints that share no variable they depend on, plus the other variables that can't be empty.
+     */
+    private int leastPieces(byte[] domains, int[] constraints, int[] scope, int[] missing) {
+        return Math.max(disjointPieces(domains, constraints, scope, missing), coveringPieces(domains, constraints, scope, missing));
+    }
+
+    /**
+     * As many pieces as it takes to make up the missing attacks, each piece on the variable that
+     * could attack the most of the constraints short of attackers.
+     */
+    private int coveringPieces(byte[] domains, int[] constraints, int[] scope, int[] missing) {
+        int[] cover = new int[cells.length];
+        int total = 0;
+        for (int c : constraints) {
+            if (missing[c] <= 0) continue;
+            total += missing[c];
+            for (int r = 0; r < rayVars[c].length; r++) {
+                if (scan(rayVars[c][r], rayMasks[c][r], domains) != MAYBE) continue;
+                int[] ray = rayVars[c][r];
+                for (int j = 0; j < ray.length; j++) {
+                    int d = domains[ray[j]];
+                    if ((d & rayMasks[c][r][j]) != 0) cover[ray[j]]++;
+                    if ((d & NONE_MASK) == 0) break;
+                }
+            }
+        }
+        if (total == 0) return 0;
+        // variables by how many constraints they cover, taken from the most
+        int[] covering = new int[constraints.length + 1];
+        for (int v : scope) covering[cover[v]]++;
+        int pieces = 0;
+        for (int most = constraints.length; most > 0 && total > 0; most--) {
+            int taken = Math.min(covering[most], (total + most - 1) / most);
+            pieces += taken;
+            total -= taken * most;
+        }
+        return total > 0 ? Integer.MAX_VALUE / 4 : pieces;
+    }
+
+    private int disjointPieces(byte[] domains, int[] constraints, int[] scope, int[] missing) {
+        int[] order = constraints.clone();
+        // most missing first
+        for (int i = 1; i < order.length; i++) {
+            for (int j = i; j > 0 && missing[order[j]] > missing[order[j - 1]]; j--) {
+                int c = order[j];
+                order[j] = order[j - 1];
+                order[j - 1] = c;
+            }
+        }
+        boolean[] taken = new boolean[cells.length];
+        int least = 0;
+        for (int c : order) {
+            if (missing[c] <= 0) break;
+            boolean disjoint = true;
+            for (int r = 0; r < rayVars[c].length && disjoint; r++) {
+                if (scan(rayVars[c][r], rayMasks[c][r], domains) != MAYBE) continue;
+                for (int v : rayVars[c][r]) {
+                    if (taken[v]) disjoint = false;
+                    if (!disjoint || (domains[v] & NONE_MASK) == 0) break;
+                }
+            }
+            if (!disjoint) continue;
+            for (int r = 0; r < rayVars[c].length; r++) {
+                if (scan(rayVars[c][r], rayMasks[c][r], domains) != MAYBE) continue;
+                for (int v : rayVars[c][r]) {
+                    taken[v] = true;
+                    if ((domains[v] & NONE_MASK) == 0) break;
+                }
+            }
+            least += missing[c];
+        }
+        for (int v : scope) {
+            if (!taken[v] && (domains[v] & NONE_MASK) == 0) least++;
+        }
+        return least;
+    }
+
+    private Tally.Node countGroup(byte[] domains, int[] constraints, int[] scope, int[] missing, int budget,
+                                  Map<Key, Counted> counted, Tally.Builder builder, Random random) {
+        Key key = Key.of(constraints, missing, scope, domains);
+        Counted known = counted.get(key);
+        // counts beyond the budget can't fit with the other groups, so a larger budget does as well
+        if (known != null && known.budget() >= budget) return known.node();
+        byte[] parts = new byte[Position.VALUES];
+        int[] chosen = new int[1];
+        int options = branch(domains, constraints, parts, chosen);
+        int v = chosen[0];
+        if (random != null) return sampleGroup(domains, constraints, scope, budget, counted, builder, random, key, parts, options, v);
+        Tally.Node[] branches = new Tally.Node[options];
+        int count = 0;
+        for (int i = 0; i < options; i++) {
+            if (++nodes > limit) return null;
+            byte[] next = domains.clone();
+            if (!narrow(next, v, parts[i]) || !propagate(next)) continue;
+            Tally.Node branch = split(next, constraints, scope, budget, counted, builder, null);
+            if (branch == null) return null;
+            branches[count++] = branch;
+        }
+        double[] ones = new double[count];
+        Arrays.fill(ones, 1);
+        Tally.Node sum = builder.sum(Arrays.copyOf(branches, count), ones);
+        counted.put(key, new Counted(sum, budget));
+        return sum;
+    }
+
+    private Tally.Node sampleGroup(byte[] domains, int[] constraints, int[] scope, int budget,
+                                   Map<Key, Counted> counted, Tally.Builder builder, Random random,
+                                   Key key, byte[] parts, int options, int v) {
+        Tally.Node[] branches = new Tally.Node[options];
+        double[] factors = new double[options];
+        byte[][] open = new byte[options][];
+        int count = 0;
+        int unknown = 0;
+        for (int i = 0; i < options; i++) {
+            nodes++;
+            byte[] next = domains.clone();
+            if (!narrow(next, v, parts[i]) || !propagate(next)) continue;
+            Tally.Node branch = null;
+            if (!large.contains(new Large(key, i))) {
+                long saved = limit;
+                limit = nodes + SMALL_BRANCH;
+                branch = split(next, constraints, scope, budget, counted, builder, null);
+                limit = saved;
+                if (branch == null) large.add(new Large(key, i));
+            }
+            if (branch != null) {
+                factors[count] = 1;
+                branches[count++] = branch;
+            } else {
+                open[unknown++] = next;
+            }
+        }
+        if (unknown > 0) {
+            // drawn by how many layouts each branch would allow if the constraints were dropped
+            double[] chances = new double[unknown];
+            double total = 0;
+            int alive = 0;
+            for (int i = 0; i < unknown; i++) {
+                chances[i] = looseLayouts(open[i], scope, budget);
+                total += chances[i];
+                if (chances[i] > 0) alive++;
+            }
+            if (alive > 0) {
+                double pick = random.nextDouble();
+                int chosen = -1;
+                for (int i = 0; i < unknown; i++) {
+                    if (chances[i] == 0) continue;
+                    chosen = i;
+                    chances[i] = (1 - EVEN_SHARE) * chances[i] / total + EVEN_SHARE / alive;
+                    if (pick < chances[i]) break;
+                    pick -= chances[i];
+                }
+                factors[count] = 1 / chances[chosen];
+                branches[count++] = split(open[chosen], constraints, scope, budget, counted, builder, random);
+            }
+        }
+        Tally.Node sum = builder.sum(Arrays.copyOf(branches, count), Arrays.copyOf(factors, count));
+        if (unknown == 0) counted.put(key, new Counted(sum, budget));
+        return sum;
+    }
+
+    /**
+     * Ways the scope can hold what is left in its domains with at most {@code budget} pieces,
+     * ignoring the constraints; zero means the branch has no solutions at all.
+     */
+    private static double looseLayouts(byte[] domains, int[] scope, int budget) {
+        double[] ways = new double[budget + 1];
+        ways[0] = 1;
+        for (int v : scope) {
+            int empty = domains[v] & NONE_MASK;
+            int pieces = Integer.bitCount(domains[v] & PIECE_MASK);
+            for (int k = budget; k > 0; k--) ways[k] = ways[k] * empty + ways[k - 1] * pieces;
+            ways[0] *= empty;
+        }
+        double sum = 0;
+        for (double way : ways) sum += way;
+        return sum;
+    }
+
+    /**
+     * Picks the variable to branch on among the constraints' rays that may or may not attack: the
+     * first one that isn't certainly empty on such a ray of the constraint with the fewest of
+     * them. Its domain is split into {@code parts}: empty, attacking along the ray and blocking it.
+     * Returns the number of non-empty parts, at least two.
+     */
+    private int branch(byte[] domains, int[] constraints, byte[] parts, int[] chosen) {
+        int best = -1;
+        int bestRay = -1;
+        int fewest = Integer.MAX_VALUE;
+        for (int c : constraints) {
+            int open = 0;
+            int first = -1;
+            for (int r = 0; r < rayVars[c].length; r++) {
+                if (scan(rayVars[c][r], rayMasks[c][r], domains) != MAYBE) continue;
+                open++;
+                if (first < 0) first = r;
+            }
+            if (open > 0 && open < fewest) {
+                fewest = open;
+                best = c;
+                bestRay = first;
+            }
+        }
+        int[] ray = rayVars[best][bestRay];
+        byte[] mask = rayMasks[best][bestRay];
+        int j = 0;
+        while (domains[ray[j]] == NONE_MASK) j++;
+        int d = domains[ray[j]];
+        int count = 0;
+        for (int part : new int[]{d & NONE_MASK, d & mask[j] & PIECE_MASK, d & ~mask[j] & PIECE_MASK}) {
+            if (part != 0) parts[count++] = (byte) part;
+        }
+        chosen[0] = ray[j];
+        return count;
+    }
+
+    private static int find(int[] parent, int c) {
+        while (parent[c] != c) {
+            parent[c] = parent[parent[c]];
+            c = parent[c];
+        }
+        return c;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        parent[find(parent, a)] = find(parent, b);
+    }
+
+    /**
+     * Everything the solutions depend on, so an unchanged component can be recognised in a later
+     * position. Variables are numbered in the order the constraints reach them, which doesn't
+     * change while the component doesn't.
+     */
+    int[] signature() {
+        int length = 2 + cells.length * 2 + targets.length;
+        for (int[][] rays : rayVars) {
+            length++;
+            for (int[] ray : rays) length += 1 + ray.length * 2;
+        }
+        int[] signature = new int[length];
+        int at = 0;
+        signature[at++] = cells.length;
+        signature[at++] = targets.length;
+        for (int v = 0; v < cells.length; v++) {
+            signature[at++] = cells[v];
+            signature[at++] = initial[v];
+        }
+        for (int c = 0; c < targets.length; c++) {
+            signature[at++] = targets[c];
+            signature[at++] = rayVars[c].length;
+            for (int r = 0; r < rayVars[c].length; r++) {
+                signature[at++] = rayVars[c][r].length;
+                for (int j = 0; j < rayVars[c][r].length; j++) {
+                    signature[at++] = rayVars[c][r][j];
+                    signature[at++] = rayMasks[c][r][j];
+                }
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * Looks for a solution by placing pieces one at a time; a variable that still allows
+     * {@link Position#NONE} counts as empty. A constraint short of attackers branches over the
+     * pieces that would attack it, one over its count over the cells that would block an attacker.
+     * Every solution contains one of the branches, so once a branch fails its piece is ruled out
+     * for the remaining ones. Ruling pieces out can decide cells the branches then skip, so the
+     * branches are picked again until the domains stop changing. Constraints short of attackers
+     * that need every piece still allowed between them leave the other undecided cells empty.
+     */
+    private byte[] descend(byte[] domains, int placed) {
+        if (++nodes > limit) return OUT_OF_BUDGET;
+        if (placed > maxPieces || !propagate(domains)) return null;
+        int n = cells.length;
+        while (true) {
+            byte[] before = Arrays.copyOf(domains, n);
+            byte[] found = expand(domains);
+            if (found != null) return found == DEAD_END ? null : found;
+            if (Arrays.equals(before, 0, n, domains, 0, n)) return null;
+        }
+    }
+
+    /**
+     * One round of {@link #descend} on propagated domains: a solution, {@link #DEAD_END} if the
+     * domains turn out contradictory, or {@code null} once every branch failed.
+     */
+    private byte[] expand(byte[] domains) {
+        int placed = 0;
+        for (int v = 0; v < cells.length; v++) {
+            if ((domains[v] & NONE_MASK) == 0) placed++;
+        }
+        for (int v = 0; v < cells.length; v++) {
+            int d = domains[v];
+            if ((d & NONE_MASK) == 0 && (d & d - 1) != 0) {
+                for (int value : ORDER) {
+                    if ((d & value) == 0) continue;
+                    byte[] found = place(domains, v, value, placed);
+                    if (found != null) return found;
+                }
+                return null;
+            }
+        }
+        // pieces still to add: constraints with disjoint candidates need separate ones
+        int disjointSum = 0;
+        int largest = 0;
+        int shortest = -1;
+        int fewest = Integer.MAX_VALUE;
+        int over = -1;
+        int shorts = 0;
+        boolean blocking = false;
+        int neediest = -1;
+        stamp++;
+        for (int c = 0; c < targets.length; c++) {
+            // every ray decided: the count is met and nothing on it can be chosen
+            if (domains[loBase + c] == domains[hiBase + c]) continue;
+            int[][] vars = rayVars[c];
+            byte[][] masks = rayMasks[c];
+            int[] entry = entries[c];
+            int attackers = 0;
+            int options = 0;
+            int open = 0;
+            for (int ray = firstRay[c]; ray < firstRay[c + 1]; ray++) {
+                // a ray that surely attacks ends in a piece past empty cells, one that never does
+                // has nothing to choose
+                int state = domains[cells.length + ray];
+                if (state != MAYBE) {
+                    if (state == CERTAIN) attackers++;
+                    continue;
+                }
+                boolean any = false;
+                for (int j = rayFrom[ray]; j < rayTo[ray]; j++) {
+                    int v = entry[j] >>> 8;
+                    int d = domains[v];
+                    int m = entry[j] & 0xff;
+                    if ((d & NONE_MASK) == 0) {
+                        if ((d & m) != 0) attackers++;
+                        break;
+                    }
+                    if ((d & m) != 0) {
+                        options += Integer.bitCount(d & m);
+                        any = true;
+                    }
+                }
+                if (any) open++;
+            }
+            int deficit = targets[c] - attackers;
+            if (deficit < 0) {
+                over = c;
+                // every excess attacker needs a blocker of its own
+                largest = Math.max(largest, -deficit);
+                if (markBlockers(vars, masks, domains, false)) {
+                    disjointSum -= deficit;
+                    blocking = true;
+                    markBlockers(vars, masks, domains, true);
+                }
+            } else if (deficit > 0) {
+                if (open < deficit) return null;
+                if (deficit > largest) {
+                    largest = deficit;
+                    neediest = c;
+                }
+                // insert by options, so the packing below tries the most constrained first
+                int i = shorts++;
+                while (i > 0 && optionsOf[i - 1] > options) {
+                    shortOf[i] = shortOf[i - 1];
+                    optionsOf[i] = optionsOf[i - 1];
+                    i--;
+                }
+                shortOf[i] = c;
+                optionsOf[i] = options;
+                deficitOf[c] = deficit;
+                if (options < fewest) {
+                    shortest = c;
+                    fewest = options;
+                }
+            }
+        }
+        int packed = 0;
+        for (int i = 0; i < shorts; i++) {
+            int c = shortOf[i];
+            if (markCandidates(c, domains, false)) {
+                disjointSum += deficitOf[c];
+                markCandidates(c, domains, true);
+                shortOf[packed++] = c;
+            }
+        }
+        if (placed + Math.max(disjointSum, largest) > maxPieces) return null;
+        int neediestDeficit = neediest >= 0 ? deficitOf[neediest] : 0;
+        if (placed + disjointSum == maxPieces && !blocking && packed > 0
+                || placed + neediestDeficit == maxPieces && neediestDeficit > disjointSum) {
+            if (neediestDeficit > disjointSum) {
+                // the one constraint alone takes every piece still to come
+                stamp++;
+                markCandidates(neediest, domains, true);
+                shortOf[0] = neediest;
+                packed = 1;
+            }
+            byte[] before = domains.clone();
+            if (!confine(domains, packed)) return DEAD_END;
+            if (!Arrays.equals(before, 0, cells.length, domains, 0, cells.length)) return null;
+        }
+        if (shortest >= 0) {
+            int[][] vars = rayVars[shortest];
+            byte[][] masks = rayMasks[shortest];
+            // pieces of the last solution first, then the rest
+            for (int pass = 0; pass < 2; pass++) {
+                for (int r = 0; r < vars.length; r++) {
+                    for (int j = 0; j < vars[r].length; j++) {
+                        int v = vars[r][j];
+                        if ((domains[v] & NONE_MASK) == 0) break;
+                        int known = solutions.isEmpty() ? 0 : solutions.get(solutions.size() - 1)[v];
+                        for (int value : ORDER) {
+                            if ((domains[v] & masks[r][j] & value) == 0 || (value == known) != (pass == 0)) continue;
+                            byte[] found = place(domains, v, value, placed);
+                            if (found != null) return found;
+                        }
+                    }
+                }
+            }
+            return null;
+        }
+        if (over >= 0) {
+            int[][] vars = rayVars[over];
+            byte[][] masks = rayMasks[over];
+            for (int r = 0; r < vars.length; r++) {
+                int end = 0;
+                while (end < vars[r].length && (domains[vars[r][end]] & NONE_MASK) != 0) end++;
+                if (end == vars[r].length || (domains[vars[r][end]] & masks[r][end]) == 0) continue;
+                for (int j = 0; j < end; j++) {
+                    byte[] found = placeAny(domains, vars[r][j], placed);
+                    if (found != null) return found;
+                }
+            }
+            return null;
+        }
+        if (placed < minPieces) {
+            for (int v : settleOrder) {
+                if ((domains[v] & NONE_MASK) == 0) continue;
+                byte[] found = placeAny(domains, v, placed);
+                if (found != null) return found;
+            }
+            return null;
+        }
+        byte[] solution = domains.clone();
+        for (int v = 0; v < cells.length; v++) {
+            if ((domains[v] & NONE_MASK) != 0) solution[v] = NONE_MASK;
+        }
+        restate(solution);
+        return solution;
+    }
+
+    private byte[] placeAny(byte[] domains, int v, int placed) {
+        for (int value : ORDER) {
+            if (value == NONE_MASK || (domains[v] & value) == 0) continue;
+            byte[] found = place(domains, v, value, placed);
+            if (found != null) return found;
+        }
+        return null;
+    }
+
+    /**
+     * Tries the variable with the given piece; on failure the piece is ruled out in {@code domains}
+     * for the sibling branches still to come, and {@link #DEAD_END} returned if none can succeed.
+     */
+    private byte[] place(byte[] domains, int v, int value, int placed) {
+        byte[] next = domains.clone();
+        narrow(next, v, value);
+        byte[] found = descend(next, (domains[v] & NONE_MASK) != 0 ? placed + 1 : placed);
+        if (found == null && !(narrow(domains, v, domains[v] & ~value) && propagate(domains))) {
+            return DEAD_END;
+        }
+        return found;
+    }
+
+    /**
+     * Checks whether the cells that could block an attacker of the constraint are unmarked, or marks
+     * them.
+     */
+    private boolean markBlockers(int[][] vars, byte[][] masks, byte[] domains, boolean mark) {
+        for (int r = 0; r < vars.length; r++) {
+            int end = 0;
+            while (end < vars[r].length && (domains[vars[r][end]] & NONE_MASK) != 0) end++;
+            if (end == vars[r].length || (domains[vars[r][end]] & masks[r][end]) == 0) continue;
+            for (int j = 0; j < end; j++) {
+                int v = vars[r][j];
+                if ((domains[v] & PIECE_MASK) == 0) continue;
+                if (mark) {
+                    marks[v] = stamp;
+                } else if (marks[v] == stamp) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Narrows the domains for a packing of constraints that needs every piece still to come: any
+     * other undecided cell is empty, and a candidate only holds pieces that attack its constraint.
+     */
+    private boolean confine(byte[] domains, int packed) {
+        for (int u = 0; u < cells.length; u++) {
+            int d = domains[u];
+            if ((d & NONE_MASK) != 0 && (d & PIECE_MASK) != 0 && marks[u] != stamp && !narrow(domains, u, NONE_MASK)) {
+                return false;
+            }
+        }
+        for (int i = 0; i < packed; i++) {
+            int c = shortOf[i];
+            int[] entry = entries[c];
+            for (int ray = firstRay[c]; ray < firstRay[c + 1]; ray++) {
+                if (domains[cells.length + ray] != MAYBE) continue;
+                for (int j = rayFrom[ray]; j < rayTo[ray]; j++) {
+                    int u = entry[j] >>> 8;
+                    int d = domains[u];
+                    if ((d & NONE_MASK) == 0) break;
+                    int m = entry[j] & 0xff;
+                    if ((d & m) != 0 && !narrow(domains, u, d & (m | NONE_MASK))) return false;
+                }
+            }
+        }
+        return propagate(domains);
+    }
+
+    private boolean markCandidates(int c, byte[] domains, boolean mark) {
+        int[] entry = entries[c];
+        for (int ray = firstRay[c]; ray < firstRay[c + 1]; ray++) {
+            if (domains[cells.length + ray] != MAYBE) continue;
+            for (int j = rayFrom[ray]; j < rayTo[ray]; j++) {
+                int v = entry[j] >>> 8;
+                int d = domains[v];
+                if ((d & NONE_MASK) == 0) break;
+                if ((d & entry[j] & 0xff) == 0) continue;
+                if (mark) {
+                    marks[v] = stamp;
+                } else if (marks[v] == stamp) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * {@link #propagate} starting from every constraint.
+     */
+    private boolean propagateAll(byte[] domains) {
+        for (int c = 0; c < targets.length; c++) enqueue(c);
+        return propagate(domains);
+    }
+
+    /**
+     * Narrows the domains until nothing changes, starting from the constraints queued by earlier
+     * narrowing. Returns {@code false} on a contradiction.
+     */
+    private boolean propagate(byte[] domains) {
+        while (true) {
+            while (length > 0) {
+                int c = queue[head];
+                if (++head == queue.length) head = 0;
+                length--;
+                queued[c] = false;
+                if (!revise(c, domains)) {
+                    while (length > 0) {
+                        queued[queue[head]] = false;
+                        if (++head == queue.length) head = 0;
+                        length--;
+                    }
+                    return false;
+                }
+            }
+            int definite = 0;
+            int possible = 0;
+            for (int v = 0; v < cells.length; v++) {
+                if ((domains[v] & NONE_MASK) == 0) definite++;
+                if ((domains[v] & PIECE_MASK) != 0) possible++;
+            }
+            if (definite > maxPieces || possible < minPieces) return false;
+            if (definite == possible || definite < maxPieces && possible > minPieces) return true;
+            // a count limit is reached: undecided cells are all empty or all pieces
+            for (int v = 0; v < cells.length; v++) {
+                byte d = domains[v];
+                if ((d & NONE_MASK) != 0 && (d & PIECE_MASK) != 0) {
+                    narrow(domains, v, definite == maxPieces ? NONE_MASK : d & PIECE_MASK);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks one constraint against the domains and removes contents it rules out. A ray supplies at
+     * most one attacker: its first piece, if that piece can reach the constraint. With {@code lo}
+     * rays that certainly attack and {@code hi} that possibly do, the count must lie between them;
+     * at {@code lo} no other ray may attack, at {@code hi} every ray that can must.
+     */
+    private boolean revise(int c, byte[] domains) {
+        int lo = domains[loBase + c];
+        int hi = domains[hiBase + c];
+        int target = targets[c];
+        if (lo > target || hi < target) return false;
+        if (lo != target && hi != target || lo == hi) return true;
+        int[] entry = entries[c];
+        for (int ray = firstRay[c]; ray < firstRay[c + 1]; ray++) {
+            // rays share no variable, so narrowing one leaves the others' states as they were
+            if (domains[cells.length + ray] != MAYBE) continue;
+            for (int j = rayFrom[ray]; j < rayTo[ray]; j++) {
+                int v = entry[j] >>> 8;
+                int d = domains[v];
+                int m = entry[j] & 0xff;
+                if (lo == target) {
+                    // reachable only past certainly empty cells, so an attacker here would count
+                    if (!narrow(domains, v, d & ~m)) return false;
+                    if (domains[v] != NONE_MASK) break;
+                } else if ((d & m) == 0) {
+                    if (!narrow(domains, v, d & NONE_MASK)) return false;
+                } else {
+                    if (!narrow(domains, v, (d & NONE_MASK) == 0 ? d & m : d & (m | NONE_MASK))) return false;
+                    break;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether a ray attacks its constraint for sure, possibly or never under the current domains.
+     */
+    private static int scan(int[] ray, byte[] mask, byte[] domains) {
+        boolean clear = true;
+        boolean possible = false;
+        for (int j = 0; j < ray.length; j++) {
+            int d = domains[ray[j]];
+            int m = mask[j];
+            if (clear && (d & ~m) == 0) return CERTAIN;
+            if ((d & m) != 0) possible = true;
+            if ((d & NONE_MASK) == 0) break;
+            if (d != NONE_MASK) clear = false;
+        }
+        return possible ? MAYBE : NEVER;
+    }
+
+    /**
+     * {@link #scan(int[], byte[], byte[])} over the entries {@code from..to-1} of a constraint.
+     */
+    private static int scan(int[] entry, int from, int to, byte[] domains) {
+        boolean clear = true;
+        boolean possible = false;
+        for (int j = from; j < to; j++) {
+            int d = domains[entry[j] >>> 8];
+            int m = entry[j] & 0xff;
+            if (clear && (d & ~m) == 0) return CERTAIN;
+            if ((d & m) != 0) possible = true;
+            if ((d & NONE_MASK) == 0) break;
+            if (d != NONE_MASK) clear = false;
+        }
+        return possible ? MAYBE : NEVER;
+    }
+
+    /**
+     * Sets a variable's domain, which is usually narrower than before, and rescans the rays through
+     * it. Only the constraints that may have something to revise are queued: those at either end of
+     * their range, or past it.
+     */
+    private boolean narrow(byte[] domains, int v, int domain) {
+        int old = domains[v];
+        if (old == domain) return true;
+        domains[v] = (byte) domain;
+        if (domain == 0) return false;
+        int[] rays = watchRays[v];
+        byte[] masks = watchMasks[v];
+        // narrowing can't undo a ray that surely or never attacks; solutions checked with one cell
+        // changed widen it, though
+        boolean narrower = (domain & ~old) == 0;
+        for (int i = 0; i < rays.length; i++) {
+            int m = masks[i];
+            int ray = rays[i];
+            int before = domains[cells.length + ray];
+            if (narrower && before != MAYBE || role(old, m) == role(domain, m)) continue;
+            int c = rayOwner[ray];
+            int after = scan(entries[c], rayFrom[ray], rayTo[ray], domains);
+            if (after != before) {
+                domains[cells.length + ray] = (byte) after;
+                domains[loBase + c] += (byte) ((after == CERTAIN ? 1 : 0) - (before == CERTAIN ? 1 : 0));
+                domains[hiBase + c] += (byte) ((after != NEVER ? 1 : 0) - (before != NEVER ? 1 : 0));
+            }
+            // a decided ray that stayed as it was gives its constraint nothing new to revise
+            if (after == before && after != MAYBE) continue;
+            if (domains[loBase + c] >= targets[c] || domains[hiBase + c] <= targets[c]) enqueue(c);
+        }
+        return true;
+    }
+
+    /**
+     * What a scan or revise reads of a domain where {@code mask} attacks: whether it surely attacks,
+     * may attack, is surely a piece and is surely empty. A change that leaves these alone changes
+     * neither the ray's state nor what revising its constraint would narrow.
+     */
+    private static int role(int domain, int mask) {
+        return ((domain & ~mask) == 0 ? 1 : 0) | ((domain & mask) != 0 ? 2 : 0)
+                | ((domain & NONE_MASK) == 0 ? 4 : 0) | (domain == NONE_MASK ? 8 : 0);
+    }
+
+    /**
+     * Works out the ray states and attacker counts of a state from its domains.
+     */
+    private void restate(byte[] state) {
+        Arrays.fill(state, cells.length, state.length, (byte) 0);
+        for (int c = 0; c < targets.length; c++) {
+            for (int ray = firstRay[c]; ray < firstRay[c + 1]; ray++) {
+                int scanned = scan(entries[c], rayFrom[ray], rayTo[ray], state);
+                state[cells.length + ray] = (byte) scanned;
+                if (scanned == CERTAIN) state[loBase + c]++;
+                if (scanned != NEVER) state[hiBase + c]++;
+            }
+        }
+    }
+
+    private void enqueue(int c) {
+        if (queued[c]) return;
+        queued[c] = true;
+        int tail = head + length++;
+        queue[tail < queue.length ? tail : tail - queue.length] = c;
+    }
+
+    /**
+     * A group of constraints with the domains of the variables they depend on.
+     */
+    private record Counted(Tally.Node node, int budget) {
+    }
+
+    private record Large(Key key, int part) {
+    }
+
+    private record Key(int[] values) {
+
+        /**
+         * The attackers each constraint is short of are part of it: they depend on rays that have
+         * left the group.
+         */
+        static Key of(int[] constraints, int[] missing, int[] scope, byte[] domains) {
+            int[] values = new int[constraints.length * 2 + 1 + scope.length * 2];
+            for (int i = 0; i < constraints.length; i++) {
+                values[i * 2] = constraints[i];
+                values[i * 2 + 1] = missing[constraints[i]];
+            }
+            values[constraints.length * 2] = -1;
+            for (int i = 0, at = constraints.length * 2 + 1; i < scope.length; i++) {
+                values[at++] = scope[i];
+                values[at++] = domains[scope[i]];
+            }
+            return new Key(values);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key key && Arrays.equals(values, key.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(values);
+        }
+    }
+}
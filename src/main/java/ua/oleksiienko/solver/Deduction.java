@@ -0,0 +1,76 @@
+package ua.oleksiienko.solver;
+
+import ua.oleksiienko.entities.Piece;
+
+/**
+ * The contents each cell can still have, given everything visible in a {@link Position}.
+ */
+public final class Deduction {
+
+    private final int size;
+    private final byte[] possible;
+    private final boolean consistent;
+    private final boolean complete;
+
+    Deduction(int size, byte[] possible, boolean consistent, boolean complete) {
+        this.size = size;
+        this.possible = possible;
+        this.consistent = consistent;
+        this.complete = complete;
+    }
+
+    /**
+     * Mask of the contents the cell may hold, bit {@code 1 << value} per {@link Position} value.
+     * Open cells report exactly what they are.
+     */
+    public int getPossible(int x, int y) {
+        return possible[x * size + y];
+    }
+
+    public boolean isSafe(int x, int y) {
+        return possible[x * size + y] == Position.NONE_MASK;
+    }
+
+    /**
+     * Returns the piece the cell must hold, or {@code null} if it may hold something else.
+     */
+    public Piece getForcedPiece(int x, int y) {
+        int mask = possible[x * size + y];
+        if (Integer.bitCount(mask) != 1 || mask == Position.NONE_MASK) return null;
+        return Position.pieceOf(Integer.numberOfTrailingZeros(mask));
+    }
+
+    public boolean isDetermined(int x, int y) {
+        return Integer.bitCount(possible[x * size + y]) == 1;
+    }
+
+    /**
+     * Whether every cell's contents follow from what is visible, i.e. the game can be finished
+     * without guessing.
+     */
+    public boolean isSolved() {
+        if (!consistent) return false;
+        for (byte mask : possible) {
+            if (Integer.bitCount(mask) != 1) return false;
+        }
+        return true;
+    }
+
+    /**
+     * {@code false} if what is visible contradicts itself; no cell then has any possible content.
+     */
+    public boolean isConsistent() {
+        return consistent;
+    }
+
+    /**
+     * {@code false} if some search hit its budget; the possibilities are then a safe superset.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public int getSize() {
+        return size;
+    }
+}
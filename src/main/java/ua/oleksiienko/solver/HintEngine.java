@@ -0,0 +1,269 @@
+package ua.oleksiienko.solver;
+
+import ua.oleksiienko.entities.Board;
+import ua.oleksiienko.entities.ChangeSet;
+import ua.oleksiienko.entities.GameBoard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Follows one game and works out the {@link Probabilities} of what its closed cells hold.
+ * <p>
+ * Every {@link Component} of the frontier has its solutions counted by piece count; the closed
+ * cells no open cell can see share the remaining pieces in every possible way, and each split of
+ * the pieces between them weighs as many layouts as it allows. Counts are kept per component and
+ * reused for as long as the component is unchanged, so an open only recounts the components it
+ * touched, and a flag, being the player's guess, recounts nothing. Cells closed again, as by an
+ * undo, make the engine read the board afresh. Components with too many solutions to count are
+ * sampled.
+ * <p>
+ * Not thread-safe: one engine per game, used by the thread handling its session.
+ */
+public class HintEngine {
+
+    /**
+     * The closed cell least likely to hold a piece.
+     */
+    public record Hint(int x, int y, double pieceChance) {
+    }
+
+    // a hint is worked out while the player waits: on 8x8 boards after a few opens, 1000 nodes
+    // keep the 99th percentile near 60 ms, where 20000 took half a second
+    private static final long COUNT_NODES = 1_000;
+    private static final int SAMPLES = 200;
+    private static final double LOG_PIECE_KINDS = Math.log(Position.VALUES - 1);
+
+    private final GameBoard board;
+    private Position position;
+    private final long countNodes;
+    private final int samples;
+    private final Random random;
+    private Map<Key, Tally> tallies = new HashMap<>();
+    private Probabilities probabilities;
+
+    public HintEngine(GameBoard board) {
+        this(board, COUNT_NODES, SAMPLES, new Random());
+    }
+
+    /**
+     * @param countNodes search nodes a component may take to count its solutions before it is sampled
+     * @param samples    random solutions drawn for a sampled component
+     */
+    public HintEngine(GameBoard board, long countNodes, int samples, Random random) {
+        this.board = board;
+        this.position = Position.of(board);
+        this.countNodes = countNodes;
+        this.samples = samples;
+        this.random = random;
+    }
+
+    /**
+     * Takes in changed cells, such as those an {@link GameBoard#openCell} opened.
+     */
+    public void update(ChangeSet changes) {
+        for (int i = 0; i < changes.size(); i++) {
+            int x = changes.getX(i);
+            int y = changes.getY(i);
+            boolean opened = board.getVisibility(x, y) == Board.CellVisibility.OPENED;
+            if (!opened && !position.isClosed(x, y)) {
+                // counts of unchanged components still apply, so the tallies are kept
+                position = Position.of(board);
+                probabilities = null;
+                return;
+            }
+            if (!opened || !position.isClosed(x, y)) continue;
+            if (board.getStatus(x, y) == Board.CellStatus.PIECED) {
+                position.reveal(x, y, board.getPiece(x, y));
+            } else {
+                position.open(x, y, board.getBeaten(x, y));
+            }
+            probabilities = null;
+        }
+    }
+
+    public Probabilities probabilities() {
+        if (probabilities == null) probabilities = compute();
+        return probabilities;
+    }
+
+    /**
+     * The unflagged closed cell least likely to hold a piece, the first one on ties, or {@code null}
+     * if there is none, the position is contradictory or the chances ignore the numbers.
+     */
+    public Hint best() {
+        Probabilities current = probabilities();
+        if (!current.isConsistent() || !current.isInformed()) return null;
+        Hint best = null;
+        for (int x = 0; x < board.getSize(); x++) {
+            for (int y = 0; y < board.getSize(); y++) {
+                if (board.getVisibility(x, y) != Board.CellVisibility.CLOSED) continue;
+                double chance = current.getPieceChance(x, y);
+                if (best == null || chance < best.pieceChance()) best = new Hint(x, y, chance);
+            }
+        }
+        return best;
+    }
+
+    private Probabilities compute() {
+        int size = position.getSize();
+        Solver.Frontier frontier = new Solver.Frontier(position);
+        int pieces = position.getTotalMines() - frontier.revealedOutside;
+        if (!frontier.consistent || pieces < 0) return inconsistent();
+        List<Component> components = frontier.split(0);
+        List<Tally> parts = new ArrayList<>(components.size());
+        Map<Key, Tally> next = new HashMap<>();
+        boolean exact = true;
+        for (Component component : components) {
+            Key key = new Key(component.signature(), pieces);
+            Tally tally = tallies.get(key);
+            if (tally == null) tally = component.count(pieces, countNodes, samples, random);
+            next.put(key, tally);
+            parts.add(tally);
+            exact &= tally.isExact();
+        }
+        tallies = next;
+
+        // piece counts of the components, each scaled to its heaviest count so products stay in range
+        double[][] weights = new double[parts.size()][];
+        double[] heaviest = new double[parts.size()];
+        for (int c = 0; c < parts.size(); c++) {
+            Tally tally = parts.get(c);
+            weights[c] = new double[tally.maxPieces() + 1];
+            for (int k = 0; k <= tally.maxPieces(); k++) heaviest[c] = Math.max(heaviest[c], tally.weight(k));
+            if (heaviest[c] == 0 && tally.isExact()) return inconsistent();
+            if (!(heaviest[c] > 0 && heaviest[c] < Double.POSITIVE_INFINITY)) return uninformed(pieces);
+            for (int k = 0; k <= tally.maxPieces(); k++) weights[c][k] = tally.weight(k) / heaviest[c];
+        }
+        double[][] before = new double[parts.size() + 1][];
+        double[][] after = new double[parts.size() + 1][];
+        before[0] = new double[]{1};
+        after[parts.size()] = new double[]{1};
+        for (int c = 0; c < parts.size(); c++) before[c + 1] = convolve(before[c], weights[c]);
+        for (int c = parts.size() - 1; c >= 0; c--) after[c] = convolve(weights[c], after[c + 1]);
+        double[] all = before[parts.size()];
+
+        // outside[t]: layouts of the other cells when the components hold t pieces, relative to the largest
+        int free = frontier.freeCells;
+        double[] logOutside = new double[all.length];
+        double largest = Double.NEGATIVE_INFINITY;
+        for (int t = 0; t < all.length; t++) {
+            logOutside[t] = logLayouts(free, pieces - t);
+            largest = Math.max(largest, logOutside[t]);
+        }
+        // sampled components may only have found layouts that can't go together; that proves nothing
+        if (largest == Double.NEGATIVE_INFINITY) return exact ? inconsistent() : uninformed(pieces);
+        double[] outside = new double[all.length];
+        double total = 0;
+        double outsidePieces = 0;
+        for (int t = 0; t < all.length; t++) {
+            outside[t] = Math.exp(logOutside[t] - largest);
+            total += all[t] * outside[t];
+            outsidePieces += all[t] * outside[t] * (pieces - t);
+        }
+        if (!(total > 0)) return exact ? inconsistent() : uninformed(pieces);
+
+        float[] chances = new float[size * size * Position.VALUES];
+        for (int c = 0; c < parts.size(); c++) {
+            Tally tally = parts.get(c);
+            double[] rest = convolve(before[c], after[c + 1]);
+            int[] cells = components.get(c).cells;
+            for (int k = 0; k <= tally.maxPieces(); k++) {
+                if (!tally.hasSolutions(k)) continue;
+                double factor = 0;
+                for (int j = 0; j < rest.length && k + j < outside.length; j++) factor += rest[j] * outside[k + j];
+                factor /= heaviest[c] * total;
+                for (int v = 0; v < cells.length; v++) {
+                    for (int value = 0; value < Position.VALUES; value++) {
+                        chances[cells[v] * Position.VALUES + value] += (float) (tally.share(k, v, value) * factor);
+                    }
+                }
+            }
+        }
+        double pieceChance = free == 0 ? 0 : outsidePieces / total / free;
+        for (int index = 0; index < size * size; index++) {
+            int at = index * Position.VALUES;
+            switch (position.kind(index)) {
+                case Position.OPENED -> chances[at + Position.NONE] = 1;
+                case Position.REVEALED -> chances[at + position.value(index)] = 1;
+                default -> {
+                    if (!frontier.inComponent[index]) spread(chances, at, pieceChance);
+                }
+            }
+        }
+        return new Probabilities(size, chances, true, exact);
+    }
+
+    /**
+     * Every closed cell equally likely to hold each of the pieces, for when sampling found no
+     * solution, or no combination of solutions, to go by.
+     */
+    private Probabilities uninformed(int pieces) {
+        int size = position.getSize();
+        int closed = 0;
+        for (int index = 0; index < size * size; index++) {
+            if (position.kind(index) == Position.CLOSED) closed++;
+        }
+        double pieceChance = closed == 0 ? 0 : (double) pieces / closed;
+        float[] chances = new float[size * size * Position.VALUES];
+        for (int index = 0; index < size * size; index++) {
+            int at = index * Position.VALUES;
+            switch (position.kind(index)) {
+                case Position.OPENED -> chances[at + Position.NONE] = 1;
+                case Position.REVEALED -> chances[at + position.value(index)] = 1;
+                default -> spread(chances, at, pieceChance);
+            }
+        }
+        return new Probabilities(size, chances, true, false, false);
+    }
+
+    private static void spread(float[] chances, int at, double pieceChance) {
+        chances[at + Position.NONE] = (float) (1 - pieceChance);
+        for (int value = 1; value < Position.VALUES; value++) {
+            chances[at + value] = (float) (pieceChance / (Position.VALUES - 1));
+        }
+    }
+
+    private Probabilities inconsistent() {
+        int size = position.getSize();
+        return new Probabilities(size, new float[size * size * Position.VALUES], false, true);
+    }
+
+    /**
+     * Log of the ways to place {@code pieces} pieces of any kind on {@code cells} cells.
+     */
+    private static double logLayouts(int cells, int pieces) {
+        if (pieces < 0 || pieces > cells) return Double.NEGATIVE_INFINITY;
+        double log = pieces * LOG_PIECE_KINDS;
+        for (int i = 0; i < pieces; i++) {
+            log += Math.log(cells - i) - Math.log(i + 1);
+        }
+        return log;
+    }
+
+    private static double[] convolve(double[] a, double[] b) {
+        double[] sums = new double[a.length + b.length - 1];
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == 0) continue;
+            for (int j = 0; j < b.length; j++) sums[i + j] += a[i] * b[j];
+        }
+        return sums;
+    }
+
+    private record Key(int[] signature, int pieces) {
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key key && pieces == key.pieces && Arrays.equals(signature, key.signature);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(signature) + pieces;
+        }
+    }
+}
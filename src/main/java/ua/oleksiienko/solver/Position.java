@@ -0,0 +1,98 @@
+package ua.oleksiienko.solver;
+
+import ua.oleksiienko.entities.Board;
+import ua.oleksiienko.entities.GameBoard;
+import ua.oleksiienko.entities.Piece;
+
+/**
+ * What a player can see of a game: which cells are open, the beat counts shown on them, revealed
+ * pieces and the total number of pieces. Hidden information never gets into a position, so the
+ * solver can't cheat.
+ * <p>
+ * Cell contents are encoded as small values: {@link #NONE} for no piece, {@code id + 1} for a
+ * {@link Piece}. Sets of contents are masks with bit {@code 1 << value} set for each member.
+ */
+public final class Position {
+
+    public static final int NONE = 0;
+    public static final int VALUES = 6;
+    public static final int NONE_MASK = 1;
+    public static final int ALL_MASK = (1 << VALUES) - 1;
+
+    static final byte CLOSED = 0;
+    static final byte OPENED = 1;
+    static final byte REVEALED = 2;
+
+    private final int size;
+    private final int totalMines;
+    private final byte[] kinds;
+    private final byte[] values;
+
+    public Position(int size, int totalMines) {
+        this.size = size;
+        this.totalMines = totalMines;
+        this.kinds = new byte[size * size];
+        this.values = new byte[size * size];
+    }
+
+    public static Position of(GameBoard board) {
+        int size = board.getSize();
+        Position position = new Position(size, board.getNumberOfMines());
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                if (board.getVisibility(x, y) != Board.CellVisibility.OPENED) continue;
+                Piece piece = board.getStatus(x, y) == Board.CellStatus.PIECED ? board.getPiece(x, y) : null;
+                if (piece != null) {
+                    position.reveal(x, y, piece);
+                } else {
+                    position.open(x, y, board.getBeaten(x, y));
+                }
+            }
+        }
+        return position;
+    }
+
+    public static int valueOf(Piece piece) {
+        return piece == null ? NONE : piece.getId() + 1;
+    }
+
+    public static Piece pieceOf(int value) {
+        return value == NONE ? null : Piece.getById(value - 1);
+    }
+
+    /**
+     * Marks an empty cell as open, showing the number of pieces that attack it.
+     */
+    public void open(int x, int y, int beaten) {
+        kinds[x * size + y] = OPENED;
+        values[x * size + y] = (byte) beaten;
+    }
+
+    /**
+     * Marks a cell as open with its piece visible, as after a lost game.
+     */
+    public void reveal(int x, int y, Piece piece) {
+        kinds[x * size + y] = REVEALED;
+        values[x * size + y] = (byte) valueOf(piece);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getTotalMines() {
+        return totalMines;
+    }
+
+    public boolean isClosed(int x, int y) {
+        return kinds[x * size + y] == CLOSED;
+    }
+
+    byte kind(int index) {
+        return kinds[index];
+    }
+
+    int value(int index) {
+        return values[index];
+    }
+}
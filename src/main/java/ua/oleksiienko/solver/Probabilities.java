@@ -0,0 +1,69 @@
+package ua.oleksiienko.solver;
+
+import ua.oleksiienko.entities.Piece;
+
+/**
+ * How likely each cell is to hold each piece, given everything visible in a {@link Position} and
+ * that every layout of the pieces was equally likely to be generated.
+ */
+public final class Probabilities {
+
+    private final int size;
+    // cell * VALUES + Position value
+    private final float[] chances;
+    private final boolean consistent;
+    private final boolean exact;
+    private final boolean informed;
+
+    Probabilities(int size, float[] chances, boolean consistent, boolean exact) {
+        this(size, chances, consistent, exact, true);
+    }
+
+    Probabilities(int size, float[] chances, boolean consistent, boolean exact, boolean informed) {
+        this.size = size;
+        this.chances = chances;
+        this.consistent = consistent;
+        this.exact = exact;
+        this.informed = informed;
+    }
+
+    /**
+     * Chance that the cell holds the piece, or is empty for {@code null}.
+     */
+    public double getChance(int x, int y, Piece piece) {
+        return chances[(x * size + y) * Position.VALUES + Position.valueOf(piece)];
+    }
+
+    /**
+     * Chance that the cell holds any piece.
+     */
+    public double getPieceChance(int x, int y) {
+        return consistent ? 1 - getChance(x, y, null) : 0;
+    }
+
+    /**
+     * {@code false} if what is visible contradicts itself; every chance is then zero.
+     */
+    public boolean isConsistent() {
+        return consistent;
+    }
+
+    /**
+     * {@code false} if some component had too many solutions to count and was sampled instead.
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * {@code false} if sampling found nothing to go on and the pieces were spread evenly over all
+     * closed cells, ignoring the numbers.
+     */
+    public boolean isInformed() {
+        return informed;
+    }
+
+    public int getSize() {
+        return size;
+    }
+}
@@ -0,0 +1,255 @@
+package ua.oleksiienko.solver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The solutions of a {@link Component} summed up by piece count: how much weight the solutions
+ * with {@code k} pieces carry, and how much of it has each variable holding each content. Counted
+ * solutions weigh one each, sampled ones their estimated share of the search.
+ * <p>
+ * A count is built as a graph of {@link Node nodes}, each knowing only its weights by piece count:
+ * branches over the same variables {@link #sum add up}, disjoint variables that don't constrain
+ * each other {@link #product multiply}, and the variables left unconstrained are {@link #free}
+ * choices. Nodes may be shared, as remembered counts are. What each variable holds is worked out
+ * once the graph is complete, in a single pass from the top that tells each node how much weight
+ * the rest of the graph puts around it.
+ */
+final class Tally {
+
+    private final int maxPieces;
+    private final double[] weights;
+    // (variable * VALUES + value) * (maxPieces + 1) + pieces
+    private final double[] shares;
+    private final boolean exact;
+
+    private Tally(int maxPieces, double[] weights, double[] shares, boolean exact) {
+        this.maxPieces = maxPieces;
+        this.weights = weights;
+        this.shares = shares;
+        this.exact = exact;
+    }
+
+    /**
+     * Builds the nodes of one count; they are kept in the order they are made, which puts every
+     * node after the ones it is made of.
+     */
+    static final class Builder {
+
+        private final int variables;
+        private final int maxPieces;
+        private final List<Node> nodes = new ArrayList<>();
+
+        Builder(int variables, int maxPieces) {
+            this.variables = variables;
+            this.maxPieces = maxPieces;
+        }
+
+        /**
+         * No solutions.
+         */
+        Node none() {
+            return add(new Node(new double[maxPieces + 1], null, null, null, null));
+        }
+
+        /**
+         * Every way the variables can hold what is left in their domains, independently of each other.
+         */
+        Node free(int[] variables, byte[] domains) {
+            byte[] kept = new byte[variables.length];
+            double[] weights = unit();
+            for (int i = 0; i < variables.length; i++) {
+                kept[i] = domains[variables[i]];
+                extend(weights, kept[i]);
+            }
+            return add(new Node(weights, null, null, variables, kept));
+        }
+
+        /**
+         * Branches over the same variables, each counted {@code factors[i]} times.
+         */
+        Node sum(Node[] parts, double[] factors) {
+            double[] weights = new double[maxPieces + 1];
+            for (int i = 0; i < parts.length; i++) {
+                for (int k = 0; k <= maxPieces; k++) weights[k] += factors[i] * parts[i].weights[k];
+            }
+            return add(new Node(weights, parts, factors, null, null));
+        }
+
+        /**
+         * Disjoint, independent variables together.
+         */
+        Node product(Node[] parts) {
+            if (parts.length == 1) return parts[0];
+            double[] weights = unit();
+            for (Node part : parts) weights = convolve(weights, part.weights);
+            return add(new Node(weights, parts, null, null, null));
+        }
+
+        /**
+         * The count of the whole component, {@code root} covering all its variables.
+         */
+        Tally build(Node root, boolean exact) {
+            int width = maxPieces + 1;
+            // variable * masks * width: the weight around the variable while its domain was that mask
+            double[] around = new double[variables * (Position.ALL_MASK + 1) * width];
+            root.outer = unit();
+            for (int n = nodes.size() - 1; n >= 0; n--) {
+                Node node = nodes.get(n);
+                if (node.outer == null) continue;
+                if (node.variables != null) {
+                    spread(node, around);
+                } else if (node.factors != null) {
+                    for (int i = 0; i < node.parts.length; i++) {
+                        Node part = node.parts[i];
+                        if (part.outer == null) part.outer = new double[width];
+                        for (int k = 0; k < width; k++) part.outer[k] += node.factors[i] * node.outer[k];
+                    }
+                } else if (node.parts != null) {
+                    int count = node.parts.length;
+                    double[][] after = new double[count + 1][];
+                    after[count] = unit();
+                    for (int i = count - 1; i >= 0; i--) after[i] = convolve(node.parts[i].weights, after[i + 1]);
+                    double[] before = node.outer;
+                    for (int i = 0; i < count; i++) {
+                        Node part = node.parts[i];
+                        double[] outer = convolve(before, after[i + 1]);
+                        if (part.outer == null) part.outer = new double[width];
+                        for (int k = 0; k < width; k++) part.outer[k] += outer[k];
+                        before = convolve(before, part.weights);
+                    }
+                }
+                node.outer = null;
+            }
+            double[] shares = new double[variables * Position.VALUES * width];
+            for (int v = 0; v < variables; v++) {
+                for (int mask = 1; mask <= Position.ALL_MASK; mask++) {
+                    int from = (v * (Position.ALL_MASK + 1) + mask) * width;
+                    for (int rest = mask; rest != 0; rest &= rest - 1) {
+                        int value = Integer.numberOfTrailingZeros(rest);
+                        int own = value == Position.NONE ? 0 : 1;
+                        int base = (v * Position.VALUES + value) * width;
+                        for (int k = own; k < width; k++) shares[base + k] += around[from + k - own];
+                    }
+                }
+            }
+            return new Tally(maxPieces, root.weights.clone(), shares, exact);
+        }
+
+        /**
+         * Hands a free node's weight to its variables: for each, the weight around the node times
+         * the ways the node's other variables can be filled.
+         */
+        private void spread(Node node, double[] around) {
+            int width = maxPieces + 1;
+            byte[] distinct = new byte[node.domains.length];
+            int[] counts = new int[node.domains.length];
+            int kinds = 0;
+            for (byte domain : node.domains) {
+                int at = 0;
+                while (at < kinds && distinct[at] != domain) at++;
+                if (at == kinds) distinct[kinds++] = domain;
+                counts[at]++;
+            }
+            double[][] others = new double[kinds][];
+            for (int d = 0; d < kinds; d++) {
+                double[] ways = node.outer.clone();
+                for (int e = 0; e < kinds; e++) {
+                    for (int i = e == d ? 1 : 0; i < counts[e]; i++) extend(ways, distinct[e]);
+                }
+                others[d] = ways;
+            }
+            for (int i = 0; i < node.variables.length; i++) {
+                int d = 0;
+                while (distinct[d] != node.domains[i]) d++;
+                int base = (node.variables[i] * (Position.ALL_MASK + 1) + distinct[d]) * width;
+                for (int k = 0; k < width; k++) around[base + k] += others[d][k];
+            }
+        }
+
+        private Node add(Node node) {
+            nodes.add(node);
+            return node;
+        }
+
+        private double[] unit() {
+            double[] ways = new double[maxPieces + 1];
+            ways[0] = 1;
+            return ways;
+        }
+    }
+
+    /**
+     * A part of a count: a sum of branches, a product of independent parts or free variables.
+     */
+    static final class Node {
+
+        private final double[] weights;
+        private final Node[] parts;
+        private final double[] factors;
+        private final int[] variables;
+        private final byte[] domains;
+        private double[] outer;
+
+        private Node(double[] weights, Node[] parts, double[] factors, int[] variables, byte[] domains) {
+            this.weights = weights;
+            this.parts = parts;
+            this.factors = factors;
+            this.variables = variables;
+            this.domains = domains;
+        }
+
+        boolean hasSolutions() {
+            for (double weight : weights) {
+                if (weight != 0) return true;
+            }
+            return false;
+        }
+    }
+
+    int maxPieces() {
+        return maxPieces;
+    }
+
+    double weight(int pieces) {
+        return weights[pieces];
+    }
+
+    /**
+     * Weight of the solutions with {@code pieces} pieces where the variable holds the value.
+     */
+    double share(int pieces, int variable, int value) {
+        return shares[(variable * Position.VALUES + value) * (maxPieces + 1) + pieces];
+    }
+
+    boolean hasSolutions(int pieces) {
+        return weights[pieces] != 0;
+    }
+
+    /**
+     * {@code false} if some of the solutions were sampled rather than counted.
+     */
+    boolean isExact() {
+        return exact;
+    }
+
+    private static double[] convolve(double[] a, double[] b) {
+        double[] sums = new double[a.length];
+        for (int i = 0; i < a.length; i++) {
+            double x = a[i];
+            if (x == 0) continue;
+            for (int j = 0; i + j < a.length; j++) sums[i + j] += x * b[j];
+        }
+        return sums;
+    }
+
+    /**
+     * Turns the ways by piece count into those once one more variable with the given domain is filled.
+     */
+    private static void extend(double[] ways, int domain) {
+        int empty = domain & Position.NONE_MASK;
+        int pieces = Integer.bitCount(domain & ~Position.NONE_MASK);
+        for (int k = ways.length - 1; k > 0; k--) ways[k] = ways[k] * empty + ways[k - 1] * pieces;
+        ways[0] *= empty;
+    }
+}
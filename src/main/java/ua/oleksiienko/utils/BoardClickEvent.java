@@ -0,0 +1,41 @@
+package ua.oleksiienko.utils;
+
+import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.ComponentEvent;
+import com.vaadin.flow.component.DomEvent;
+import com.vaadin.flow.component.EventData;
+
+/**
+ * A click on a {@link ClientBoard} or a {@link BoardPicture}: button 0 opens, button 2 (the context
+ * menu) flags.
+ */
+@DomEvent("board-click")
+public class BoardClickEvent extends ComponentEvent<Component> {
+
+    private final int offsetX;
+    private final int offsetY;
+    private final int button;
+
+    public BoardClickEvent(Component source,
+                           boolean fromClient,
+                           @EventData("event.detail.offsetX") int offsetX,
+                           @EventData("event.detail.offsetY") int offsetY,
+                           @EventData("event.detail.button") int button) {
+        super(source, fromClient);
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+        this.button = button;
+    }
+
+    public int getOffsetX() {
+        return offsetX;
+    }
+
+    public int getOffsetY() {
+        return offsetY;
+    }
+
+    public int getButton() {
+        return button;
+    }
+}
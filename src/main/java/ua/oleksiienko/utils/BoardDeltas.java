@@ -0,0 +1,131 @@
+package ua.oleksiienko.utils;
+
+import ua.oleksiienko.entities.ChangeSet;
+import ua.oleksiienko.entities.GameBoard;
+
+import java.util.function.Consumer;
+
+/**
+ * Sends cell states instead of drawing: the {@link ClientBoard} in the browser keeps the window's
+ * cells and paints them itself, so a click costs a few numbers per changed cell.
+ * <p>
+ * Every flush sends one JSON array of integers,
+ * <pre>
+ * [1, board size, origin x, origin y, tiles, tile size, cell, state, cell, state, ...]
+ * [0, cell, state, ...]
+ * </pre>
+ * the first replacing the whole window (cells it doesn't list are closed), the second changing
+ * single cells. A cell is its index inside the window, {@code (y - originY) * tiles + x - originX},
+ * and a state is {@code kind | value << 2} with kinds
+ * <pre>
+ * 0  closed
+ * 1  flagged, value is the flag's {@link SpriteAtlas} column
+ * 2  opened piece, value is its {@link SpriteAtlas} column
+ * 3  opened free cell, value is the number of pieces beating it
+ * </pre>
+ */
+public class BoardDeltas implements BoardRenderer {
+
+    static final int CHANGES = 0;
+    static final int WINDOW = 1;
+
+    private final GameBoard board;
+    private final Viewport viewport;
+    private final Consumer<String> target;
+    private final StringBuilder message = new StringBuilder();
+    private long sent;
+    private int pending;
+
+    public BoardDeltas(GameBoard board, Viewport viewport, Consumer<String> target) {
+        this.board = board;
+        this.viewport = viewport;
+        this.target = target;
+    }
+
+    public BoardDeltas(GameBoard board, Viewport viewport, ClientBoard client) {
+        this(board, viewport, client::apply);
+    }
+
+    @Override
+    public void paintBoard() {
+        message.setLength(0);
+        pending = 0;
+        message.append('[').append(WINDOW).append(',').append(board.getSize())
+                .append(',').append(viewport.getOriginX()).append(',').append(viewport.getOriginY())
+                .append(',').append(viewport.getTiles()).append(',');
+        appendNumber(viewport.getTileSize());
+        int tiles = viewport.getTiles();
+        for (int y = viewport.getOriginY(); y < viewport.getOriginY() + tiles; y++) {
+            for (int x = viewport.getOriginX(); x < viewport.getOriginX() + tiles; x++) {
+                int state = state(board, x, y);
+                if (state != 0) append(x, y, state);
+            }
+        }
+    }
+
+    @Override
+    public void paintChanges(ChangeSet changes) {
+        for (int i = 0; i < changes.size(); i++) {
+            paintTile(changes.getX(i), changes.getY(i));
+        }
+    }
+
+    @Override
+    public void paintTile(int x, int y) {
+        if (!viewport.isVisible(x, y)) return;
+        if (message.length() == 0) message.append('[').append(CHANGES);
+        append(x, y, state(board, x, y));
+    }
+
+    @Override
+    public void flush() {
+        if (message.length() == 0) return;
+        message.append(']');
+        target.accept(message.toString());
+        sent += pending;
+        pending = 0;
+        message.setLength(0);
+    }
+
+    /**
+     * The client redraws from its cells whenever the window changes, there is nothing to forget.
+     */
+    @Override
+    public void resetState() {
+    }
+
+    @Override
+    public long getSentCount() {
+        return sent;
+    }
+
+    /**
+     * The state of one cell as sent to the client, see above.
+     */
+    public static int state(GameBoard board, int x, int y) {
+        return switch (board.getVisibility(x, y)) {
+            case CLOSED -> 0;
+            case FLAGGED -> 1 | SpriteAtlas.getColumn(board.getFlag(x, y)) << 2;
+            case OPENED -> switch (board.getStatus(x, y)) {
+                case PIECED -> 2 | SpriteAtlas.getColumn(board.getPiece(x, y)) << 2;
+                case BEATEN -> 3 | board.getBeaten(x, y) << 2;
+                default -> 3;
+            };
+        };
+    }
+
+    private void append(int x, int y, int state) {
+        int cell = (y - viewport.getOriginY()) * viewport.getTiles() + x - viewport.getOriginX();
+        message.append(',').append(cell).append(',').append(state);
+        pending++;
+    }
+
+    private void appendNumber(double value) {
+        long rounded = Math.round(value * 100);
+        if (rounded % 100 == 0) {
+            message.append(rounded / 100);
+        } else {
+            message.append(rounded / 100.0);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package ua.oleksiienko.utils;
+
+import ua.oleksiienko.entities.Board;
+import ua.oleksiienko.entities.ChangeSet;
+import ua.oleksiienko.entities.GameBoard;
+import ua.oleksiienko.entities.Piece;
+
+/**
+ * Turns board tiles into canvas commands. It knows nothing about components or events, so the
+ * same drawing code runs in the view and against a stubbed {@link CanvasCommandBuffer}. Only
+ * tiles inside the {@link Viewport} are drawn.
+ */
+public class BoardPainter implements BoardRenderer {
+
+    private final GameBoard board;
+    private final CanvasCommandBuffer commands;
+    private final Runnable onPieceOpened;
+    private final Viewport viewport;
+
+    /**
+     * @param onPieceOpened called whenever an opened piece is painted, i.e. the game is lost
+     */
+    public BoardPainter(GameBoard board, CanvasCommandBuffer commands, double tileSize, Runnable onPieceOpened) {
+        this(board, commands, new Viewport(board.getSize(), tileSize), onPieceOpened);
+    }
+
+    public BoardPainter(GameBoard board, CanvasCommandBuffer commands, Viewport viewport, Runnable onPieceOpened) {
+        this.board = board;
+        this.commands = commands;
+        this.viewport = viewport;
+        this.onPieceOpened = onPieceOpened;
+    }
+
+    public void setTileSize(double tileSize) {
+        viewport.setTileSize(tileSize);
+    }
+
+    @Override
+    public void paintChanges(ChangeSet changes) {
+        for (int i = 0; i < changes.size(); i++) {
+            paintTile(changes.getX(i), changes.getY(i));
+        }
+    }
+
+    /**
+     * Paints every tile of the window.
+     */
+    @Override
+    public void paintBoard() {
+        int tiles = viewport.getTiles();
+        for (int i = viewport.getOriginX(); i < viewport.getOriginX() + tiles; i++) {
+            for (int j = viewport.getOriginY(); j < viewport.getOriginY() + tiles; j++) {
+                paintTile(i, j);
+            }
+        }
+    }
+
+    @Override
+    public void paintTile(int x, int y) {
+        if (!viewport.isVisible(x, y)) return;
+        switch (board.getVisibility(x, y)) {
+            case CLOSED -> paintRect(x, y, getClosedColor(x, y));
+            case OPENED -> paintOpenTile(x, y);
+            case FLAGGED -> paintFlaggedTile(x, y);
+        }
+    }
+
+    @Override
+    public void flush() {
+        commands.flush();
+    }
+
+    @Override
+    public void resetState() {
+        commands.resetState();
+    }
+
+    @Override
+    public long getSentCount() {
+        return commands.getSentCount();
+    }
+
+    private void paintFlaggedTile(int x, int y) {
+        paintRect(x, y, getClosedColor(x, y));
+        paintPiece(x, y, board.getFlag(x, y), SpriteAtlas.Shade.WHITE);
+    }
+
+    private void paintOpenTile(int x, int y) {
+        paintRect(x, y, "#ADB9C9");
+        paintHollowRect(x, y, "black");
+        switch (board.getStatus(x, y)) {
+            case PIECED -> {
+                if (board.getVisibility(x, y) == Board.CellVisibility.FLAGGED && board.getFlag(x, y) == board.getPiece(x, y)) {
+                    paintPiece(x, y, board.getPiece(x, y), SpriteAtlas.Shade.WHITE);
+                }
+                paintPiece(x, y, board.getPiece(x, y), SpriteAtlas.Shade.BLACK);
+                onPieceOpened.run();
+            }
+            case BEATEN -> paintBeats(x, y, board.getBeaten(x, y));
+            default -> {}
+        }
+    }
+
+    private String getClosedColor(int x, int y) {
+        return (x % 2 + y % 2) % 2 == 0 ? "#076271" : "#20457D";
+    }
+
+    private void paintRect(int x, int y, String color) {
+        double tileSize = viewport.getTileSize();
+        commands.setFillStyle(color);
+        commands.fillRect(viewport.left(x), viewport.top(y), tileSize, tileSize);
+    }
+
+    private void paintHollowRect(int x, int y, String color) {
+        double tileSize = viewport.getTileSize();
+        commands.setStrokeStyle(color);
+        commands.setLineWidth(4);
+        commands.strokeRect(viewport.left(x) + 2, viewport.top(y) + 2, tileSize-4, tileSize-4);
+    }
+
+    private void paintBeats(int x, int y, int beaten) {
+        double tileSize = viewport.getTileSize();
+        commands.setFillStyle("black");
+        commands.setFont(tileSize / 2 + "px serif");
+        commands.fillText(String.valueOf(beaten), viewport.left(x) + tileSize / 2.6087, viewport.top(y) + tileSize / 1.5);
+    }
+
+    private void paintPiece(int x, int y, Piece piece, SpriteAtlas.Shade shade) {
+        double tileSize = viewport.getTileSize();
+        commands.drawSprite(SpriteAtlas.getSourceX(piece), SpriteAtlas.getSourceY(shade), SpriteAtlas.CELL, SpriteAtlas.CELL,
+                viewport.left(x) + tileSize * 0.03, viewport.top(y) + tileSize * 0.03, tileSize * 0.94, tileSize * 0.94);
+    }
+}
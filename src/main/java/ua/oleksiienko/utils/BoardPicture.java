@@ -0,0 +1,79 @@
+package ua.oleksiienko.utils;
+
+import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.ComponentEventListener;
+import com.vaadin.flow.component.Tag;
+import com.vaadin.flow.shared.Registration;
+
+/**
+ * The board as a single server-rendered image, for clients too slow to run canvas commands.
+ * Clicks and wheel input are reported with offsets into the image, and the hovered tile is
+ * highlighted by the browser, like {@link Canvas} does.
+ */
+@Tag("img")
+public class BoardPicture extends Component {
+
+    /**
+     * Where {@code BoardImageController} serves the images.
+     */
+    public static final String PATH = "board-images/";
+
+    private static final String CLICK_SCRIPT = """
+            const img = $0;
+            const send = (e, button) => img.dispatchEvent(new CustomEvent('board-click', {
+              detail: {offsetX: e.offsetX, offsetY: e.offsetY, button: button}}));
+            img.addEventListener('click', e => send(e, 0));
+            img.addEventListener('contextmenu', e => {
+              e.preventDefault();
+              send(e, 2);
+            });
+            """;
+
+    public BoardPicture() {
+        getElement().setAttribute("draggable", "false");
+        getElement().setAttribute("alt", "");
+        getElement().executeJs(CLICK_SCRIPT, getElement());
+        addDetachListener(event -> {
+            getElement().executeJs(Canvas.HOVER_REMOVE_SCRIPT, getElement());
+            getElement().executeJs(Canvas.CHANCES_REMOVE_SCRIPT, getElement());
+        });
+    }
+
+    /**
+     * Shows the image with the given ETag, scaled to {@code size} pixels square.
+     */
+    public void show(String etag, int size) {
+        getElement().setAttribute("src", PATH + etag + ".png");
+        getElement().getStyle().set("width", size + "px").set("height", size + "px");
+    }
+
+    /**
+     * Same as {@link Canvas#setHoverGrid}, in pixels of the image as shown. The wheel pans by
+     * tiles of this size too.
+     */
+    public void setHoverGrid(double tileSize, double offset, int count, String color) {
+        getElement().executeJs(Canvas.HOVER_SCRIPT, getElement(), tileSize, offset, count, color);
+    }
+
+    /**
+     * Same as {@link Canvas#showChances}.
+     */
+    public void showChances(double tileSize, double offset, int count, double[] chances) {
+        getElement().executeJs(Canvas.CHANCES_SCRIPT, getElement(), tileSize, offset, count, Canvas.toJson(chances));
+    }
+
+    /**
+     * Same as {@link Canvas#enableViewportControls(int)}.
+     */
+    public void enableViewportControls(int intervalMillis) {
+        getElement().executeJs(Canvas.VIEWPORT_SCRIPT, getElement(), intervalMillis);
+    }
+
+    public Registration addViewportListener(ComponentEventListener<ViewportEvent> listener) {
+        return addListener(ViewportEvent.class, listener);
+    }
+
+    public Registration addClickListener(ComponentEventListener<BoardClickEvent> listener) {
+        return addListener(BoardClickEvent.class, listener);
+    }
+}
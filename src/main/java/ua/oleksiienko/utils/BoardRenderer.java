@@ -0,0 +1,40 @@
+package ua.oleksiienko.utils;
+
+import ua.oleksiienko.entities.ChangeSet;
+
+/**
+ * Shows the {@link Viewport} window of a board to one player: {@link BoardPainter} as canvas
+ * commands drawn by the server, {@link BoardDeltas} as cell states drawn by the browser.
+ */
+public interface BoardRenderer {
+
+    /**
+     * Paints every tile of the window.
+     */
+    void paintBoard();
+
+    void paintChanges(ChangeSet changes);
+
+    void paintTile(int x, int y);
+
+    /**
+     * Sends everything painted since the last flush in one client round.
+     */
+    void flush();
+
+    /**
+     * Forgets what the client is assumed to hold, e.g. after its canvas was resized.
+     */
+    void resetState();
+
+    /**
+     * Units sent so far, for metrics: canvas commands or cell states.
+     */
+    long getSentCount();
+
+    /**
+     * Lets go of what is kept for the client once it is gone.
+     */
+    default void close() {
+    }
+}
@@ -2,9 +2,139 @@ package ua.oleksiienko.utils;
 
 import com.vaadin.flow.component.ComponentEventListener;
 import com.vaadin.flow.shared.Registration;
-import org.vaadin.pekkam.event.MouseMoveEvent;
+import elemental.json.Json;
+import elemental.json.JsonArray;
 
 public class Canvas extends org.vaadin.pekkam.Canvas {
+
+    private static final String BATCH_SCRIPT = """
+            $0.__run = function (commands) {
+              if (this.__waiting) {
+                this.__waiting.push(commands);
+                return;
+              }
+              const ctx = this.getContext('2d');
+              for (let i = 0; i < commands.length; i++) {
+                const c = commands[i];
+                switch (c[0]) {
+                  case 'F': ctx.fillStyle = c[1]; break;
+                  case 'S': ctx.strokeStyle = c[1]; break;
+                  case 'W': ctx.lineWidth = c[1]; break;
+                  case 'T': ctx.font = c[1]; break;
+                  case 'r': ctx.fillRect(c[1], c[2], c[3], c[4]); break;
+                  case 's': ctx.strokeRect(c[1], c[2], c[3], c[4]); break;
+                  case 't': ctx.fillText(c[1], c[2], c[3]); break;
+                  case 'i':
+                    if (this.__atlas && !this.__atlas.complete) {
+                      this.__waiting = [commands.slice(i)];
+                      this.__atlasReady.then(() => {
+                        const waiting = this.__waiting;
+                        this.__waiting = null;
+                        waiting.forEach(batch => this.__run(batch));
+                      });
+                      return;
+                    }
+                    ctx.drawImage(this.__atlas, c[1], c[2], c[3], c[4], c[5], c[6], c[7], c[8]);
+                    break;
+                }
+              }
+            };
+            """;
+
+    static final String HOVER_SCRIPT = """
+            const canvas = $0;
+            if (!canvas.__hover) {
+              const overlay = document.createElement('div');
+              overlay.style.cssText = 'position:absolute;pointer-events:none;box-sizing:border-box;display:none;z-index:1';
+              document.body.appendChild(overlay);
+              canvas.__hover = {overlay: overlay};
+              canvas.addEventListener('mousemove', e => {
+                const h = canvas.__hover;
+                const x = Math.floor((e.offsetX - h.offset) / h.tile);
+                const y = Math.floor((e.offsetY - h.offset) / h.tile);
+                if (x < 0 || y < 0 || x >= h.count || y >= h.count) {
+                  h.overlay.style.display = 'none';
+                  return;
+                }
+                const rect = canvas.getBoundingClientRect();
+                h.overlay.style.left = (rect.left + window.scrollX + h.offset + x * h.tile) + 'px';
+                h.overlay.style.top = (rect.top + window.scrollY + h.offset + y * h.tile) + 'px';
+                h.overlay.style.display = 'block';
+              });
+              canvas.addEventListener('mouseleave', () => canvas.__hover.overlay.style.display = 'none');
+            }
+            Object.assign(canvas.__hover, {tile: $1, offset: $2, count: $3});
+            const style = canvas.__hover.overlay.style;
+            style.width = style.height = $1 + 'px';
+            style.border = '4px solid ' + $4;
+            """;
+
+    static final String HOVER_REMOVE_SCRIPT = "if ($0.__hover) { $0.__hover.overlay.remove(); delete $0.__hover; }";
+
+    // green for safe through red for certain pieces, until the next click, wheel or resize
+    static final String CHANCES_SCRIPT = """
+            const target = $0;
+            if (target.__chances) target.__chances.remove();
+            const rect = target.getBoundingClientRect();
+            const overlay = document.createElement('canvas');
+            overlay.width = rect.width;
+            overlay.height = rect.height;
+            overlay.style.cssText = 'position:absolute;pointer-events:none;z-index:1';
+            overlay.style.left = (rect.left + window.scrollX) + 'px';
+            overlay.style.top = (rect.top + window.scrollY) + 'px';
+            const ctx = overlay.getContext('2d');
+            const chances = $4;
+            for (let i = 0; i < chances.length; i++) {
+              if (chances[i] < 0) continue;
+              ctx.fillStyle = 'hsla(' + Math.round(120 * (1 - chances[i])) + ',80%,45%,0.45)';
+              ctx.fillRect($2 + (i % $3) * $1, $2 + Math.trunc(i / $3) * $1, $1, $1);
+            }
+            document.body.appendChild(overlay);
+            const stop = new AbortController();
+            const remove = () => {
+              overlay.remove();
+              stop.abort();
+              delete target.__chances;
+            };
+            for (const type of ['mousedown', 'wheel']) target.addEventListener(type, remove, {signal: stop.signal});
+            window.addEventListener('resize', remove, {signal: stop.signal});
+            target.__chances = {remove: remove};
+            """;
+
+    static final String CHANCES_REMOVE_SCRIPT = "if ($0.__chances) $0.__chances.remove();";
+
+    static final String VIEWPORT_SCRIPT = """
+            const canvas = $0;
+            if (canvas.__viewport) return;
+            const v = canvas.__viewport = {x: 0, y: 0, panX: 0, panY: 0, zoom: 0, offsetX: 0, offsetY: 0, timer: null};
+            const send = () => {
+              v.timer = null;
+              if (!v.panX && !v.panY && !v.zoom) return;
+              canvas.dispatchEvent(new CustomEvent('viewport-change', {detail: {
+                panX: v.panX, panY: v.panY, zoom: v.zoom, offsetX: v.offsetX, offsetY: v.offsetY}}));
+              v.panX = v.panY = v.zoom = 0;
+            };
+            canvas.addEventListener('wheel', e => {
+              e.preventDefault();
+              const unit = e.deltaMode === 1 ? 16 : e.deltaMode === 2 ? canvas.height : 1;
+              if (e.ctrlKey) {
+                v.zoom -= Math.sign(e.deltaY);
+                v.offsetX = e.offsetX;
+                v.offsetY = e.offsetY;
+              } else {
+                const tile = canvas.__hover ? canvas.__hover.tile : 60;
+                v.x += (e.shiftKey && !e.deltaX ? e.deltaY : e.deltaX) * unit;
+                v.y += (e.shiftKey && !e.deltaX ? 0 : e.deltaY) * unit;
+                const dx = Math.trunc(v.x / tile);
+                const dy = Math.trunc(v.y / tile);
+                v.x -= dx * tile;
+                v.y -= dy * tile;
+                v.panX += dx;
+                v.panY += dy;
+              }
+              if (!v.timer) v.timer = setTimeout(send, $1);
+            }, {passive: false});
+            """;
     /**
      * Creates a new canvas component with the given size.
      * <p>
@@ -22,6 +152,72 @@ public class Canvas extends org.vaadin.pekkam.Canvas {
     public Canvas(int width, int height) {
         super(width, height);
         this.getElement().executeJs("$0.oncontextmenu = function(e) { e.preventDefault();}", this.getElement());
+        this.getElement().executeJs(BATCH_SCRIPT, this.getElement());
+        this.addDetachListener(event -> {
+            this.getElement().executeJs(HOVER_REMOVE_SCRIPT, this.getElement());
+            this.getElement().executeJs(CHANCES_REMOVE_SCRIPT, this.getElement());
+        });
+    }
+
+    /**
+     * Starts loading the sprite atlas once for this canvas. Batches that reach a sprite before the
+     * image has arrived are queued in the browser and resumed, in order, as soon as it is available.
+     */
+    public void preloadAtlas(String url) {
+        this.getElement().executeJs("""
+                $0.__atlas = new Image();
+                $0.__atlasReady = new Promise(resolve => $0.__atlas.onload = resolve);
+                $0.__atlas.src = $1;
+                """, this.getElement(), url);
+    }
+
+    /**
+     * Executes a batch recorded by {@link CanvasCommandBuffer} in a single client round.
+     */
+    public void runBatch(String batch) {
+        this.getElement().executeJs("$0.__run(JSON.parse($1))", this.getElement(), batch);
+    }
+
+    /**
+     * Highlights the tile under the cursor with a border drawn by the browser, so hovering never
+     * reaches the server. Calling it again updates the grid geometry, e.g. after a resize.
+     *
+     * @param tileSize the size of one tile in canvas pixels
+     * @param offset   the distance from the canvas edge to the first tile
+     * @param count    the number of tiles per row and column
+     * @param color    the CSS color of the highlight border
+     */
+    public void setHoverGrid(double tileSize, double offset, int count, String color) {
+        this.getElement().executeJs(HOVER_SCRIPT, this.getElement(), tileSize, offset, count, color);
+    }
+
+    /**
+     * Shades each tile by its chance of holding a piece, until the player clicks, scrolls or
+     * resizes the window.
+     *
+     * @param chances row by row, a negative value leaves the tile as it is
+     */
+    public void showChances(double tileSize, double offset, int count, double[] chances) {
+        this.getElement().executeJs(CHANCES_SCRIPT, this.getElement(), tileSize, offset, count, toJson(chances));
+    }
+
+    static JsonArray toJson(double[] values) {
+        JsonArray array = Json.createArray();
+        for (int i = 0; i < values.length; i++) array.set(i, values[i]);
+        return array;
+    }
+
+    /**
+     * Lets the wheel pan the canvas and ctrl + wheel (or a pinch) zoom it. The browser sums the
+     * input into whole tiles and reports it as a {@link ViewportEvent} at most once per interval,
+     * so a fast scroll costs one repaint per interval rather than one per wheel tick.
+     */
+    public void enableViewportControls(int intervalMillis) {
+        this.getElement().executeJs(VIEWPORT_SCRIPT, this.getElement(), intervalMillis);
+    }
+
+    public Registration addViewportListener(ComponentEventListener<ViewportEvent> listener) {
+        return addListener(ViewportEvent.class, listener);
     }
 
     public Registration addRightClickListener(ComponentEventListener<RightClickEvent> listener) {
@@ -0,0 +1,155 @@
+package ua.oleksiienko.utils;
+
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Records canvas draw operations and sends them to the client as one batch per {@link #flush()}.
+ * State changes that would not change anything (setting the fill style to the current one, for
+ * example) are dropped before they are recorded into the batch.
+ * <p>
+ * The batch is a JSON array of commands, each an array starting with a one-letter opcode. It is
+ * executed by the interpreter installed by {@link Canvas}.
+ */
+public class CanvasCommandBuffer {
+
+    private final Consumer<String> target;
+    private final StringBuilder batch = new StringBuilder("[");
+
+    private String fillStyle;
+    private String strokeStyle;
+    private double lineWidth = -1;
+    private String font;
+
+    private int pending;
+    private long recorded;
+    private long sent;
+    private long flushes;
+
+    public CanvasCommandBuffer(Canvas canvas) {
+        this(canvas::runBatch);
+    }
+
+    public CanvasCommandBuffer(Consumer<String> target) {
+        this.target = target;
+    }
+
+    public void setFillStyle(String color) {
+        recorded++;
+        if (Objects.equals(color, fillStyle)) return;
+        fillStyle = color;
+        command('F').text(color).end();
+    }
+
+    public void setStrokeStyle(String color) {
+        recorded++;
+        if (Objects.equals(color, strokeStyle)) return;
+        strokeStyle = color;
+        command('S').text(color).end();
+    }
+
+    public void setLineWidth(double width) {
+        recorded++;
+        if (width == lineWidth) return;
+        lineWidth = width;
+        command('W').number(width).end();
+    }
+
+    public void setFont(String font) {
+        recorded++;
+        if (Objects.equals(font, this.font)) return;
+        this.font = font;
+        command('T').text(font).end();
+    }
+
+    public void fillRect(double x, double y, double width, double height) {
+        recorded++;
+        command('r').number(x).number(y).number(width).number(height).end();
+    }
+
+    public void strokeRect(double x, double y, double width, double height) {
+        recorded++;
+        command('s').number(x).number(y).number(width).number(height).end();
+    }
+
+    public void fillText(String text, double x, double y) {
+        recorded++;
+        command('t').text(text).number(x).number(y).end();
+    }
+
+    /**
+     * Draws a region of the atlas preloaded with {@link Canvas#preloadAtlas(String)}.
+     */
+    public void drawSprite(double sx, double sy, double sw, double sh, double dx, double dy, double dw, double dh) {
+        recorded++;
+        command('i').number(sx).number(sy).number(sw).number(sh)
+                .number(dx).number(dy).number(dw).number(dh).end();
+    }
+
+    /**
+     * Forgets the remembered drawing state. Must be called whenever the client-side context is
+     * reset, e.g. after the canvas has been resized.
+     */
+    public void resetState() {
+        fillStyle = null;
+        strokeStyle = null;
+        lineWidth = -1;
+        font = null;
+    }
+
+    public void flush() {
+        if (pending == 0) return;
+        batch.setLength(batch.length() - 1);
+        batch.append(']');
+        target.accept(batch.toString());
+        sent += pending;
+        flushes++;
+        pending = 0;
+        batch.setLength(0);
+        batch.append('[');
+    }
+
+    public long getRecordedCount() {
+        return recorded;
+    }
+
+    public long getSentCount() {
+        return sent;
+    }
+
+    public long getFlushCount() {
+        return flushes;
+    }
+
+    private CanvasCommandBuffer command(char opcode) {
+        pending++;
+        batch.append("[\"").append(opcode).append('"');
+        return this;
+    }
+
+    private CanvasCommandBuffer number(double value) {
+        batch.append(',');
+        long rounded = Math.round(value * 100);
+        if (rounded % 100 == 0) {
+            batch.append(rounded / 100);
+        } else {
+            batch.append(rounded / 100.0);
+        }
+        return this;
+    }
+
+    private CanvasCommandBuffer text(String value) {
+        batch.append(",\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') batch.append('\\');
+            batch.append(c);
+        }
+        batch.append('"');
+        return this;
+    }
+
+    private void end() {
+        batch.append("],");
+    }
+}
@@ -0,0 +1,56 @@
+package ua.oleksiienko.utils;
+
+import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.ComponentEventListener;
+import com.vaadin.flow.component.Tag;
+import com.vaadin.flow.component.dependency.JsModule;
+import com.vaadin.flow.shared.Registration;
+
+/**
+ * The board drawn in the browser by {@code frontend/chess-board.js}. The server only sends cell
+ * states through {@link BoardDeltas}; tiles, sprites, the hover highlight and wheel input are all
+ * handled on the client, which reports clicks and viewport moves with the same canvas offsets
+ * as {@link Canvas}.
+ */
+@Tag("chess-board")
+@JsModule("./chess-board.js")
+public class ClientBoard extends Component {
+
+    public ClientBoard(String atlasUrl, String hoverColor) {
+        getElement().setProperty("atlas", atlasUrl);
+        getElement().setProperty("hoverColor", hoverColor);
+        addDetachListener(event -> getElement().executeJs(Canvas.CHANCES_REMOVE_SCRIPT, getElement()));
+    }
+
+    /**
+     * Applies a message written by {@link BoardDeltas}.
+     */
+    public void apply(String message) {
+        getElement().callJsFunction("apply", message);
+    }
+
+    /**
+     * Same as {@link Canvas#showChances}; the tiles are laid out like those of a canvas.
+     */
+    public void showChances(double tileSize, double offset, int count, double[] chances) {
+        getElement().executeJs(Canvas.CHANCES_SCRIPT, getElement(), tileSize, offset, count, Canvas.toJson(chances));
+    }
+
+    /**
+     * Same as {@link Canvas#enableViewportControls(int)}.
+     */
+    public void enableViewportControls(int intervalMillis) {
+        getElement().setProperty("viewportInterval", intervalMillis);
+    }
+
+    public Registration addViewportListener(ComponentEventListener<ViewportEvent> listener) {
+        return addListener(ViewportEvent.class, listener);
+    }
+
+    /**
+     * Left and right clicks, told apart by {@link BoardClickEvent#getButton()}.
+     */
+    public Registration addClickListener(ComponentEventListener<BoardClickEvent> listener) {
+        return addListener(BoardClickEvent.class, listener);
+    }
+}
@@ -0,0 +1,36 @@
+package ua.oleksiienko.utils;
+
+import ua.oleksiienko.entities.Piece;
+
+/**
+ * Layout of {@code images/pieces.cache.png}: one column per piece (in {@link Piece#getId()} order,
+ * the question mark last) and one row per shade. The {@code .cache.} infix makes Vaadin serve the
+ * file with a one year cache lifetime, so rename it whenever the image changes.
+ */
+public final class SpriteAtlas {
+
+    public static final String URL = "images/pieces.cache.png";
+    public static final int CELL = 60;
+
+    private static final int QUESTION = 5;
+
+    public enum Shade {
+        WHITE,
+        BLACK
+    }
+
+    private SpriteAtlas() {
+    }
+
+    public static int getSourceX(Piece piece) {
+        return getColumn(piece) * CELL;
+    }
+
+    public static int getColumn(Piece piece) {
+        return piece == null ? QUESTION : piece.getId();
+    }
+
+    public static int getSourceY(Shade shade) {
+        return shade.ordinal() * CELL;
+    }
+}
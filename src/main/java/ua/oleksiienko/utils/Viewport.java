@@ -0,0 +1,144 @@
+package ua.oleksiienko.utils;
+
+/**
+ * The square window of board tiles shown on the canvas. The canvas keeps its pixel size; panning
+ * moves the window over the board and zooming changes how many tiles fit into it, so drawing and
+ * hit-testing cost depends on the window, never on the board.
+ */
+public class Viewport {
+
+    /**
+     * Distance from the canvas edge to the first tile.
+     */
+    public static final double MARGIN = 5;
+    private static final double ZOOM_STEP = 1.25;
+    private static final int MIN_TILES = 4;
+
+    private final int boardSize;
+    private final int maxTiles;
+    private int tiles;
+    private double tileSize;
+    private int originX;
+    private int originY;
+
+    /**
+     * A window showing the whole board.
+     */
+    public Viewport(int boardSize, double tileSize) {
+        this(boardSize, boardSize, boardSize, tileSize);
+    }
+
+    /**
+     * @param tiles    tiles per side shown at first
+     * @param maxTiles tiles per side shown when zoomed out completely
+     */
+    public Viewport(int boardSize, int tiles, int maxTiles, double tileSize) {
+        this.boardSize = boardSize;
+        this.maxTiles = Math.min(boardSize, maxTiles);
+        this.tiles = Math.min(tiles, this.maxTiles);
+        this.tileSize = tileSize;
+    }
+
+    public int getTiles() {
+        return tiles;
+    }
+
+    public double getTileSize() {
+        return tileSize;
+    }
+
+    public void setTileSize(double tileSize) {
+        this.tileSize = tileSize;
+    }
+
+    public int getOriginX() {
+        return originX;
+    }
+
+    public int getOriginY() {
+        return originY;
+    }
+
+    /**
+     * Canvas width and height needed for the window, margins included.
+     */
+    public int getCanvasSize() {
+        return (int) (tileSize * tiles + 2 * MARGIN);
+    }
+
+    /**
+     * Moves the window by whole tiles, stopping at the board edges.
+     *
+     * @return whether the window moved
+     */
+    public boolean pan(int dx, int dy) {
+        return moveTo(originX + dx, originY + dy);
+    }
+
+    /**
+     * Zooms in for positive steps and out for negative ones, keeping the tile under the given
+     * canvas point in place.
+     *
+     * @return whether the scale changed
+     */
+    public boolean zoom(int steps, int offsetX, int offsetY) {
+        int zoomed = (int) Math.round(tiles / Math.pow(ZOOM_STEP, steps));
+        if (zoomed == tiles) zoomed -= Integer.signum(steps);
+        zoomed = Math.max(Math.min(MIN_TILES, maxTiles), Math.min(maxTiles, zoomed));
+        if (zoomed == tiles) return false;
+        double anchorX = originX + (offsetX - MARGIN) / tileSize;
+        double anchorY = originY + (offsetY - MARGIN) / tileSize;
+        tileSize = tileSize * tiles / zoomed;
+        tiles = zoomed;
+        moveTo((int) Math.round(anchorX - (offsetX - MARGIN) / tileSize),
+                (int) Math.round(anchorY - (offsetY - MARGIN) / tileSize));
+        return true;
+    }
+
+    /**
+     * Board column under the canvas offset, {@code -1} outside the window.
+     */
+    public int tileX(int offsetX) {
+        return tileAt(offsetX, originX);
+    }
+
+    /**
+     * Board row under the canvas offset, {@code -1} outside the window.
+     */
+    public int tileY(int offsetY) {
+        return tileAt(offsetY, originY);
+    }
+
+    public boolean isVisible(int x, int y) {
+        return x >= originX && x < originX + tiles && y >= originY && y < originY + tiles;
+    }
+
+    /**
+     * Canvas position of the tile's left edge.
+     */
+    public double left(int x) {
+        return (x - originX) * tileSize + MARGIN;
+    }
+
+    /**
+     * Canvas position of the tile's top edge.
+     */
+    public double top(int y) {
+        return (y - originY) * tileSize + MARGIN;
+    }
+
+    private int tileAt(int offset, int origin) {
+        if (offset < MARGIN) return -1;
+        int tile = (int) ((offset - MARGIN) / tileSize);
+        return tile < tiles ? origin + tile : -1;
+    }
+
+    private boolean moveTo(int x, int y) {
+        x = Math.max(0, Math.min(boardSize - tiles, x));
+        y = Math.max(0, Math.min(boardSize - tiles, y));
+        if (x == originX && y == originY) return false;
+        originX = x;
+        originY = y;
+        return true;
+    }
+}
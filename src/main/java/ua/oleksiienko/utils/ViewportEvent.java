@@ -0,0 +1,56 @@
+package ua.oleksiienko.utils;
+
+import com.vaadin.flow.component.Component;
+import com.vaadin.flow.component.ComponentEvent;
+import com.vaadin.flow.component.DomEvent;
+import com.vaadin.flow.component.EventData;
+
+/**
+ * Pan and zoom gathered in the browser by {@link Canvas#enableViewportControls(int)} or a
+ * {@link ClientBoard}: whole tiles to move and zoom steps, with the canvas point the zoom is
+ * anchored at.
+ */
+@DomEvent("viewport-change")
+public class ViewportEvent extends ComponentEvent<Component> {
+
+    private final int panX;
+    private final int panY;
+    private final int zoom;
+    private final int offsetX;
+    private final int offsetY;
+
+    public ViewportEvent(Component source,
+                         boolean fromClient,
+                         @EventData("event.detail.panX") int panX,
+                         @EventData("event.detail.panY") int panY,
+                         @EventData("event.detail.zoom") int zoom,
+                         @EventData("event.detail.offsetX") int offsetX,
+                         @EventData("event.detail.offsetY") int offsetY) {
+        super(source, fromClient);
+        this.panX = panX;
+        this.panY = panY;
+        this.zoom = zoom;
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+    }
+
+    public int getPanX() {
+        return panX;
+    }
+
+    public int getPanY() {
+        return panY;
+    }
+
+    public int getZoom() {
+        return zoom;
+    }
+
+    public int getOffsetX() {
+        return offsetX;
+    }
+
+    public int getOffsetY() {
+        return offsetY;
+    }
+}
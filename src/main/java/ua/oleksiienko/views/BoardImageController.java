@@ -0,0 +1,41 @@
+package ua.oleksiienko.views;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import ua.oleksiienko.services.BoardImages;
+import ua.oleksiienko.utils.BoardPicture;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves the images of {@link BoardImages}. An image's name is the hash of what it shows, so it
+ * never changes and browsers and proxies may keep it for good.
+ */
+@RestController
+public class BoardImageController {
+
+    private final BoardImages images;
+
+    public BoardImageController(BoardImages images) {
+        this.images = images;
+    }
+
+    @GetMapping("/" + BoardPicture.PATH + "{etag}.png")
+    public ResponseEntity<byte[]> image(@PathVariable String etag,
+                                        @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        String quoted = '"' + etag + '"';
+        CacheControl cache = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+        if (quoted.equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(quoted).cacheControl(cache).build();
+        }
+        byte[] png = images.get(etag);
+        if (png == null) return ResponseEntity.notFound().build();
+        return ResponseEntity.ok().eTag(quoted).cacheControl(cache).contentType(MediaType.IMAGE_PNG).body(png);
+    }
+}
@@ -13,21 +13,42 @@ import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.component.textfield.TextField;
 import com.vaadin.flow.component.textfield.TextFieldVariant;
 import com.vaadin.flow.dom.Style;
+import com.vaadin.flow.router.BeforeEnterEvent;
+import com.vaadin.flow.router.BeforeEnterObserver;
 import com.vaadin.flow.router.PageTitle;
 import com.vaadin.flow.router.PreserveOnRefresh;
 import com.vaadin.flow.router.Route;
 import com.vaadin.flow.router.RouteAlias;
+import com.vaadin.flow.router.RouterLink;
+import com.vaadin.flow.shared.communication.PushMode;
 import com.vaadin.flow.theme.Theme;
 import org.springframework.beans.factory.annotation.Autowired;
-import ua.oleksiienko.entities.Board;
+import org.springframework.beans.factory.annotation.Value;
+import ua.oleksiienko.entities.GameBoard;
+import ua.oleksiienko.services.BoardPool;
 import ua.oleksiienko.services.PainterService;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 @PageTitle("Chess Sweeper")
 @Route(value = "chess-sweeper")
 @RouteAlias(value = "")
-public class ChessSweeperView extends VerticalLayout {
+public class ChessSweeperView extends VerticalLayout implements BeforeEnterObserver {
+
+    private final PainterService painter;
+    private final BoardPool pool;
+    private final TextField score;
+    private final TextField player;
+    private final Button finishButton;
+    private final int maxSize;
 
-    public ChessSweeperView(@Autowired PainterService painter) {
+    public ChessSweeperView(@Autowired PainterService painter, @Autowired BoardPool pool,
+                            @Value("${chess-sweeper.board.max-size:1000}") int maxSize) {
+        this.painter = painter;
+        this.pool = pool;
+        this.maxSize = maxSize;
         configureView();
         H3 title = new H3("ШахоСапер");
         title.getStyle().set("margin", "0px 20px 20px");
@@ -38,16 +59,81 @@ public class ChessSweeperView extends VerticalLayout {
         add(title);
         add(subtitle);
         add(instruction);
+        add(new RouterLink("Таблиця лідерів", LeaderboardView.class));
         HorizontalLayout ui = new HorizontalLayout();
-        TextField score = createScoreField();
-        Button finishButton = createFinishButton();
+        player = createPlayerField();
+        score = createScoreField();
+        finishButton = createFinishButton();
+        Button hintButton = new Button("Підказка", event -> painter.showHint());
+        Button undoButton = new Button("Назад", event -> painter.undo());
+        Button redoButton = new Button("Вперед", event -> painter.redo());
+        ui.add(player);
         ui.add(score);
+        ui.add(undoButton);
+        ui.add(redoButton);
+        ui.add(hintButton);
         ui.add(finishButton);
+        ui.setAlignSelf(Alignment.END, undoButton);
+        ui.setAlignSelf(Alignment.END, redoButton);
+        ui.setAlignSelf(Alignment.END, hintButton);
         ui.setAlignSelf(Alignment.END, finishButton);
         add(ui);
-        Board board = new Board(8);
-        UI.getCurrent().getPage().retrieveExtendedClientDetails(
-                details -> painter.init(this, board, score, finishButton, details.getWindowInnerWidth() * 0.9));
+    }
+
+    /**
+     * A {@code ?seed=} query parameter replays that game instead of taking a fresh one from the pool,
+     * {@code ?size=} asks for a larger board, shown through a viewport. A board that isn't ready
+     * yet is generated off the request thread and pushed once it is. {@code ?coop=} joins the
+     * shared board of that room instead.
+     */
+    @Override
+    public void beforeEnter(BeforeEnterEvent event) {
+        Map<String, List<String>> parameters = event.getLocation().getQueryParameters().getParameters();
+        List<String> coop = parameters.get("coop");
+        if (coop != null) {
+            String room = coop.isEmpty() || coop.get(0).isBlank() ? "default" : coop.get(0).strip();
+            String name = room.length() > 32 ? room.substring(0, 32) : room;
+            UI.getCurrent().getPage().retrieveExtendedClientDetails(details -> painter.initShared(
+                    this, name, score, finishButton, this::getPlayer, details.getWindowInnerWidth() * 0.9));
+            return;
+        }
+        List<String> seed = parameters.get("seed");
+        List<String> sizes = parameters.get("size");
+        int size = 8;
+        try {
+            if (sizes != null && !sizes.isEmpty()) size = Math.max(8, Math.min(maxSize, Integer.parseInt(sizes.get(0))));
+        } catch (NumberFormatException ignored) {
+        }
+        CompletableFuture<GameBoard> next;
+        try {
+            next = seed == null || seed.isEmpty() ? pool.takeAsync(size) : pool.replayAsync(size, Long.parseLong(seed.get(0)));
+        } catch (NumberFormatException e) {
+            next = pool.takeAsync(size);
+        }
+        CompletableFuture<GameBoard> board = next;
+        UI ui = UI.getCurrent();
+        ui.getPage().retrieveExtendedClientDetails(details -> {
+            double width = details.getWindowInnerWidth() * 0.9;
+            if (board.isDone()) {
+                painter.init(this, board.join(), score, finishButton, this::getPlayer, width);
+                return;
+            }
+            ui.getPushConfiguration().setPushMode(PushMode.AUTOMATIC);
+            board.thenAccept(game -> ui.access(() -> painter.init(this, game, score, finishButton, this::getPlayer, width)));
+        });
+    }
+
+    private String getPlayer() {
+        return PlayerName.normalize(player.getValue());
+    }
+
+    private static TextField createPlayerField() {
+        TextField player = new TextField();
+        player.setLabel("Гравець");
+        player.setMaxLength(32);
+        player.setValue(PlayerName.current());
+        player.addValueChangeListener(event -> PlayerName.remember(event.getValue()));
+        return player;
     }
 
     private static TextField createScoreField() {
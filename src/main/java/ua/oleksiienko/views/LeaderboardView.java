@@ -0,0 +1,48 @@
+package ua.oleksiienko.views;
+
+import com.vaadin.flow.component.grid.Grid;
+import com.vaadin.flow.component.html.H3;
+import com.vaadin.flow.component.html.Paragraph;
+import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.router.PageTitle;
+import com.vaadin.flow.router.Route;
+import com.vaadin.flow.router.RouterLink;
+import org.springframework.beans.factory.annotation.Autowired;
+import ua.oleksiienko.results.Leaderboard;
+import ua.oleksiienko.results.PlayerStats;
+
+import java.util.Locale;
+
+/**
+ * The best players and the visitor's own totals, straight from the {@link Leaderboard} cache.
+ */
+@PageTitle("Chess Sweeper - Таблиця лідерів")
+@Route(value = "leaderboard")
+public class LeaderboardView extends VerticalLayout {
+
+    public LeaderboardView(@Autowired Leaderboard leaderboard) {
+        setSizeFull();
+        setDefaultHorizontalComponentAlignment(Alignment.CENTER);
+        add(new H3("Таблиця лідерів"));
+        PlayerStats own = leaderboard.stats(PlayerName.current());
+        add(new Paragraph(String.format(Locale.ROOT, "%s: перемог %d, майже %d, поразок %d, найкращий час %s",
+                own.player(), own.wins(), own.nearly(), own.losses(), formatTime(own))));
+        Grid<PlayerStats> grid = new Grid<>();
+        grid.addColumn(PlayerStats::player).setHeader("Гравець").setFlexGrow(2);
+        grid.addColumn(PlayerStats::wins).setHeader("Перемоги");
+        grid.addColumn(PlayerStats::nearly).setHeader("Майже");
+        grid.addColumn(PlayerStats::losses).setHeader("Поразки");
+        grid.addColumn(stats -> String.format(Locale.ROOT, "%.0f%%", stats.winRate() * 100)).setHeader("Відсоток перемог");
+        grid.addColumn(LeaderboardView::formatTime).setHeader("Найкращий час");
+        grid.setItems(leaderboard.top());
+        grid.setMaxWidth("900px");
+        add(grid);
+        add(new RouterLink("До гри", ChessSweeperView.class));
+    }
+
+    private static String formatTime(PlayerStats stats) {
+        if (stats.wins() == 0) return "—";
+        long seconds = stats.bestWinMillis() / 1000;
+        return String.format(Locale.ROOT, "%d:%02d", seconds / 60, seconds % 60);
+    }
+}
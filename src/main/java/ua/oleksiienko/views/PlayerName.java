@@ -0,0 +1,49 @@
+package ua.oleksiienko.views;
+
+import com.vaadin.flow.server.VaadinRequest;
+import com.vaadin.flow.server.VaadinResponse;
+import jakarta.servlet.http.Cookie;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The name results are recorded under, remembered in a cookie between visits.
+ */
+final class PlayerName {
+
+    static final String ANONYMOUS = "Анонім";
+
+    private static final String COOKIE = "chess-sweeper-player";
+    private static final int MAX_LENGTH = 32;
+
+    private PlayerName() {
+    }
+
+    static String normalize(String name) {
+        String trimmed = name == null ? "" : name.strip();
+        if (trimmed.isEmpty()) return ANONYMOUS;
+        return trimmed.length() > MAX_LENGTH ? trimmed.substring(0, MAX_LENGTH) : trimmed;
+    }
+
+    static String current() {
+        VaadinRequest request = VaadinRequest.getCurrent();
+        Cookie[] cookies = request == null ? null : request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (COOKIE.equals(cookie.getName())) return normalize(URLDecoder.decode(cookie.getValue(), StandardCharsets.UTF_8));
+            }
+        }
+        return ANONYMOUS;
+    }
+
+    static void remember(String name) {
+        VaadinResponse response = VaadinResponse.getCurrent();
+        if (response == null) return;
+        Cookie cookie = new Cookie(COOKIE, URLEncoder.encode(normalize(name), StandardCharsets.UTF_8));
+        cookie.setPath("/");
+        cookie.setMaxAge(365 * 24 * 3600);
+        response.addCookie(cookie);
+    }
+}
@@ -0,0 +1,45 @@
+package ua.olekiienko;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+import ua.oleksiienko.entities.BitBoard;
+import ua.oleksiienko.entities.Board;
+import ua.oleksiienko.entities.Piece;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BitBoardTest {
+
+    @RepeatedTest(50)
+    public void beatCountsMatchNaiveWalk() {
+        BitBoard board = new BitBoard();
+        int[][] expected = NaiveAttacks.beats(board);
+        int mines = NaiveAttacks.countMines(board);
+        assertEquals(board.getNumberOfMines(), mines);
+        for (int x = 0; x < 8; x++) {
+            for (int y = 0; y < 8; y++) {
+                assertEquals(expected[x][y], board.getBeaten(x, y), "beats at " + x + "," + y);
+            }
+        }
+    }
+
+    @Test
+    public void flagCycleReturnsToClosed() {
+        BitBoard board = new BitBoard();
+        int x = 0, y = 0;
+        while (board.getStatus(x, y) != Board.CellStatus.PIECED) {
+            if (++y == 8) { y = 0; x++; }
+        }
+        board.flagNext(x, y);
+        assertEquals(Board.CellVisibility.FLAGGED, board.getVisibility(x, y));
+        assertNull(board.getFlag(x, y));
+        for (int id = 0; id < 5; id++) {
+            board.flagNext(x, y);
+            assertEquals(Piece.getById(id), board.getFlag(x, y));
+            assertEquals(1, board.getFlaggedCount());
+        }
+        board.flagNext(x, y);
+        assertEquals(Board.CellVisibility.CLOSED, board.getVisibility(x, y));
+        assertEquals(0, board.getFlaggedCount());
+    }
+}
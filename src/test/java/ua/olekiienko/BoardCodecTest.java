@@ -0,0 +1,105 @@
+package ua.olekiienko;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+import ua.oleksiienko.entities.Board;
+import ua.oleksiienko.entities.BoardCodec;
+import ua.oleksiienko.entities.GameBoard;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BoardCodecTest {
+
+    @RepeatedTest(20)
+    public void roundTripKeepsTheGame() {
+        Random random = new Random();
+        for (int size : new int[]{8, 13}) {
+            GameBoard board = GameBoard.of(size, random.nextLong());
+            play(board, random);
+            GameBoard decoded = BoardCodec.decode(BoardCodec.encode(board));
+            assertSameGame(board, decoded);
+        }
+    }
+
+    @Test
+    public void smallGameTakesAFewDozenBytes() {
+        GameBoard board = GameBoard.of(8, 42);
+        for (int x = 0; x < 8; x++) {
+            for (int y = 0; y < 8; y++) {
+                if (board.getPiece(x, y) != null) board.flagNext(x, y);
+            }
+        }
+        assertTrue(BoardCodec.encode(board).length <= 28);
+    }
+
+    @Test
+    public void encodesIntoASharedBuffer() {
+        GameBoard first = GameBoard.of(8, 1);
+        GameBoard second = GameBoard.of(20, 2);
+        play(second, new Random(3));
+        ByteBuffer buffer = ByteBuffer.allocate(BoardCodec.encodedSize(first) + BoardCodec.encodedSize(second));
+        BoardCodec.encode(first, buffer);
+        BoardCodec.encode(second, buffer);
+        assertFalse(buffer.hasRemaining());
+        buffer.flip();
+        assertSameGame(first, BoardCodec.decode(buffer));
+        assertSameGame(second, BoardCodec.decode(buffer));
+    }
+
+    @Test
+    public void rejectsUnknownVersion() {
+        byte[] bytes = BoardCodec.encode(GameBoard.of(8, 1));
+        bytes[0] = BoardCodec.VERSION + 1;
+        assertThrows(IllegalArgumentException.class, () -> BoardCodec.decode(bytes));
+    }
+
+    @Test
+    public void serializesAsSnapshot() throws Exception {
+        GameBoard board = GameBoard.of(13, 5);
+        play(board, new Random(5));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(board);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertSameGame(board, (GameBoard) in.readObject());
+        }
+    }
+
+    private static void play(GameBoard board, Random random) {
+        int size = board.getSize();
+        for (int i = 0; i < size; i++) {
+            board.openCell(random.nextInt(size), random.nextInt(size), false);
+            int x = random.nextInt(size);
+            int y = random.nextInt(size);
+            for (int clicks = random.nextInt(7); clicks > 0; clicks--) {
+                board.flagNext(x, y);
+            }
+        }
+        if (random.nextInt(4) == 0) {
+            board.endGame();
+        }
+    }
+
+    private static void assertSameGame(GameBoard expected, GameBoard actual) {
+        assertEquals(expected.getSize(), actual.getSize());
+        assertEquals(expected.getSeed(), actual.getSeed());
+        assertEquals(expected.getFlaggedCount(), actual.getFlaggedCount());
+        for (int x = 0; x < expected.getSize(); x++) {
+            for (int y = 0; y < expected.getSize(); y++) {
+                assertEquals(expected.getVisibility(x, y), actual.getVisibility(x, y), "at " + x + "," + y);
+                assertEquals(expected.getPiece(x, y), actual.getPiece(x, y));
+                if (expected.getVisibility(x, y) == Board.CellVisibility.FLAGGED || expected.getPiece(x, y) != null) {
+                    assertEquals(expected.getFlag(x, y), actual.getFlag(x, y), "at " + x + "," + y);
+                }
+            }
+        }
+    }
+}
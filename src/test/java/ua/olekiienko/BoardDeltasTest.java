@@ -0,0 +1,101 @@
+package ua.olekiienko;
+
+import org.junit.jupiter.api.Test;
+import ua.oleksiienko.entities.Board;
+import ua.oleksiienko.entities.ChangeSet;
+import ua.oleksiienko.entities.GameBoard;
+import ua.oleksiienko.utils.BoardDeltas;
+import ua.oleksiienko.utils.SpriteAtlas;
+import ua.oleksiienko.utils.Viewport;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BoardDeltasTest {
+
+    private final List<String> sent = new ArrayList<>();
+
+    @Test
+    public void windowListsOnlyCellsThatAreNotClosed() {
+        GameBoard board = GameBoard.of(8, 42);
+        BoardDeltas deltas = new BoardDeltas(board, new Viewport(8, 60), sent::add);
+        deltas.paintBoard();
+        deltas.flush();
+        assertArrayEquals(new long[]{1, 8, 0, 0, 8, 60}, parse(0));
+
+        int[] free = find(board, false);
+        ChangeSet changes = board.openCell(free[0], free[1], true);
+        deltas.paintBoard();
+        deltas.flush();
+        long[] window = parse(1);
+        assertEquals(6 + 2 * changes.size(), window.length);
+        for (int i = 0; i < changes.size(); i++) {
+            int x = changes.getX(i);
+            int y = changes.getY(i);
+            assertEquals(3 | board.getBeaten(x, y) << 2, stateOf(window, 6, y * 8 + x));
+        }
+        assertEquals(changes.size(), deltas.getSentCount());
+    }
+
+    @Test
+    public void changesCarryTheNewStates() {
+        GameBoard board = GameBoard.of(8, 7);
+        BoardDeltas deltas = new BoardDeltas(board, new Viewport(8, 60), sent::add);
+        int[] piece = find(board, true);
+        board.flagNext(piece[0], piece[1]);
+        deltas.paintTile(piece[0], piece[1]);
+        deltas.flush();
+        deltas.flush();
+        assertEquals(1, sent.size());
+        int cell = piece[1] * 8 + piece[0];
+        assertArrayEquals(new long[]{0, cell, 1 | SpriteAtlas.getColumn(board.getFlag(piece[0], piece[1])) << 2}, parse(0));
+
+        deltas.paintChanges(board.endGame());
+        deltas.flush();
+        long[] end = parse(1);
+        assertEquals(0, end[0]);
+        assertEquals(2 | SpriteAtlas.getColumn(board.getPiece(piece[0], piece[1])) << 2, stateOf(end, 1, cell));
+    }
+
+    @Test
+    public void cellsAreIndexedInsideThePannedWindow() {
+        Board board = new Board(1000, 42);
+        Viewport viewport = new Viewport(1000, 10, 32, 50);
+        BoardDeltas deltas = new BoardDeltas(board, viewport, sent::add);
+        viewport.pan(495, 490);
+        deltas.paintTile(10, 10);
+        deltas.flush();
+        assertTrue(sent.isEmpty());
+
+        board.flagNext(500, 493);
+        deltas.paintTile(500, 493);
+        deltas.flush();
+        assertEquals(3 * 10 + 5, parse(0)[1]);
+    }
+
+    private long[] parse(int message) {
+        String text = sent.get(message);
+        return Arrays.stream(text.substring(1, text.length() - 1).split(",")).mapToLong(Long::parseLong).toArray();
+    }
+
+    private static long stateOf(long[] message, int from, long cell) {
+        for (int i = from; i < message.length; i += 2) {
+            if (message[i] == cell) return message[i + 1];
+        }
+        throw new AssertionError("cell " + cell + " not sent");
+    }
+
+    private static int[] find(GameBoard board, boolean piece) {
+        for (int x = 0; x < board.getSize(); x++) {
+            for (int y = 0; y < board.getSize(); y++) {
+                if ((board.getPiece(x, y) != null) == piece && board.getVisibility(x, y) == Board.CellVisibility.CLOSED) {
+                    return new int[]{x, y};
+                }
+            }
+        }
+        throw new AssertionError();
+    }
+}
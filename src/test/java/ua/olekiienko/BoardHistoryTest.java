@@ -0,0 +1,116 @@
+package ua.olekiienko;
+
+import org.junit.jupiter.api.Test;
+import ua.oleksiienko.entities.Board;
+import ua.oleksiienko.entities.BoardCodec;
+import ua.oleksiienko.entities.BoardHistory;
+import ua.oleksiienko.entities.BoardVersion;
+import ua.oleksiienko.entities.ChangeSet;
+import ua.oleksiienko.entities.GameBoard;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BoardHistoryTest {
+
+    @Test
+    public void jumpsRestoreEveryVersion() {
+        for (GameBoard board : new GameBoard[]{GameBoard.of(8, 3), new Board(40, 3)}) {
+            Random random = new Random(board.getSize());
+            BoardHistory history = new BoardHistory(board);
+            List<byte[]> states = new ArrayList<>();
+            List<Integer> flagged = new ArrayList<>();
+            states.add(BoardCodec.encode(board));
+            flagged.add(0);
+            int size = board.getSize();
+            for (int move = 0; move < 60; move++) {
+                int x = random.nextInt(size);
+                int y = random.nextInt(size);
+                if (board.getPiece(x, y) == null && random.nextInt(3) == 0) {
+                    history.record(board.openCell(x, y, true));
+                } else {
+                    board.flagNext(x, y);
+                    history.record(x, y);
+                }
+                states.add(BoardCodec.encode(board));
+                flagged.add(board.getFlaggedCount());
+            }
+            assertEquals(60, history.getLatest());
+
+            for (int jump = 0; jump < 100; jump++) {
+                int version = random.nextInt(states.size());
+                byte[] before = BoardCodec.encode(board);
+                Set<Long> expected = differences(board, version, states);
+                ChangeSet changes = history.jumpTo(version);
+                assertArrayEquals(states.get(version), BoardCodec.encode(board), "version " + version);
+                assertEquals(flagged.get(version), board.getFlaggedCount());
+                assertEquals(expected, cells(changes), "only the differing cells are reported");
+                if (expected.isEmpty()) assertArrayEquals(before, BoardCodec.encode(board));
+            }
+        }
+    }
+
+    @Test
+    public void recordingAfterAnUndoDropsTheRedos() {
+        GameBoard board = GameBoard.of(8, 5);
+        BoardHistory history = new BoardHistory(board);
+        board.flagNext(0, 0);
+        history.record(0, 0);
+        board.flagNext(1, 1);
+        history.record(1, 1);
+        assertEquals(1, history.undo().size());
+        assertEquals(Board.CellVisibility.CLOSED, board.getVisibility(1, 1));
+        assertTrue(history.canRedo());
+
+        board.flagNext(2, 2);
+        history.record(2, 2);
+        assertFalse(history.canRedo());
+        assertEquals(2, history.getLatest());
+        assertTrue(history.redo().isEmpty());
+        assertEquals(Board.CellVisibility.CLOSED, board.getVisibility(1, 1));
+        assertThrows(IllegalArgumentException.class, () -> history.jumpTo(3));
+    }
+
+    @Test
+    public void versionsOfLargeBoardsShareWhatDidNotChange() {
+        GameBoard board = new Board(512, 9);
+        BoardVersion first = BoardVersion.of(board);
+        board.flagNext(300, 17);
+        ChangeSet flag = new ChangeSet();
+        flag.add(300, 17);
+        BoardVersion second = first.with(board, flag);
+        ChangeSet difference = new ChangeSet();
+        first.diff(second, difference);
+        assertEquals(1, difference.size());
+        assertEquals(Board.CellVisibility.FLAGGED, second.getVisibility(300, 17));
+        assertEquals(Board.CellVisibility.CLOSED, first.getVisibility(300, 17));
+        assertSame(first, first.with(board, new ChangeSet()));
+    }
+
+    /**
+     * Cells that look different on the board and in the recorded state of the version.
+     */
+    private static Set<Long> differences(GameBoard board, int version, List<byte[]> states) {
+        GameBoard target = BoardCodec.decode(states.get(version));
+        Set<Long> cells = new HashSet<>();
+        for (int x = 0; x < board.getSize(); x++) {
+            for (int y = 0; y < board.getSize(); y++) {
+                if (board.getVisibility(x, y) != target.getVisibility(x, y) || board.getFlag(x, y) != target.getFlag(x, y)) {
+                    cells.add((long) x << 32 | y);
+                }
+            }
+        }
+        return cells;
+    }
+
+    private static Set<Long> cells(ChangeSet changes) {
+        Set<Long> cells = new HashSet<>();
+        for (int i = 0; i < changes.size(); i++) cells.add((long) changes.getX(i) << 32 | changes.getY(i));
+        return cells;
+    }
+}
@@ -0,0 +1,104 @@
+package ua.olekiienko;
+
+import org.junit.jupiter.api.Test;
+import ua.oleksiienko.entities.Board;
+import ua.oleksiienko.entities.GameBoard;
+import ua.oleksiienko.services.BoardImageRenderer;
+import ua.oleksiienko.services.BoardImages;
+import ua.oleksiienko.utils.Viewport;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BoardImagesTest {
+
+    private final BoardImages images = new BoardImages(1 << 20);
+
+    @Test
+    public void equalStatesShareOneImage() throws IOException {
+        Viewport viewport = new Viewport(8, 40);
+        String first = images.render(GameBoard.of(8, 1), viewport);
+        String second = images.render(GameBoard.of(8, 2), viewport);
+        assertEquals(first, second, "closed boards look the same whatever their pieces");
+        assertEquals(1, images.getMisses());
+        assertEquals(1, images.getHits());
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(images.get(first)));
+        assertEquals(BoardImages.imageSize(viewport), image.getWidth());
+        assertEquals(0x076271, image.getRGB(6, 6) & 0xFFFFFF);
+        assertEquals(0x20457D, image.getRGB(6 + 40, 6) & 0xFFFFFF);
+    }
+
+    @Test
+    public void rendererSendsOnlyChangedImages() {
+        GameBoard board = GameBoard.of(8, 42);
+        List<String> shown = new ArrayList<>();
+        BoardImageRenderer renderer = new BoardImageRenderer(board, new Viewport(8, 40), images, shown::add);
+        renderer.paintBoard();
+        renderer.flush();
+        renderer.flush();
+        assertEquals(1, shown.size());
+
+        int[] free = find(board);
+        renderer.paintChanges(board.openCell(free[0], free[1], true));
+        renderer.flush();
+        assertEquals(2, shown.size());
+        assertNotEquals(shown.get(0), shown.get(1));
+
+        renderer.paintBoard();
+        renderer.flush();
+        assertEquals(2, shown.size(), "an unchanged window is not sent again");
+        renderer.resetState();
+        renderer.paintBoard();
+        renderer.flush();
+        assertEquals(List.of(shown.get(0), shown.get(1), shown.get(1)), shown);
+    }
+
+    @Test
+    public void leastRecentlyUsedImagesAreEvicted() {
+        BoardImages small = new BoardImages(1);
+        Board board = new Board(64, 3);
+        Viewport viewport = new Viewport(64, 8, 8, 20);
+        String first = small.render(board, viewport);
+        viewport.pan(1, 0);
+        String second = small.render(board, viewport);
+        assertNull(small.get(first));
+        assertNotNull(small.get(second));
+    }
+
+    @Test
+    public void shownImagesAreNotEvicted() {
+        BoardImages small = new BoardImages(1);
+        Board board = new Board(64, 3);
+        List<String> shown = new ArrayList<>();
+        BoardImageRenderer renderer = new BoardImageRenderer(board, new Viewport(64, 8, 8, 20), small, shown::add);
+        renderer.paintBoard();
+        renderer.flush();
+        // other tile sizes, so every window is a new image
+        String passing = small.render(board, new Viewport(64, 8, 8, 21));
+        assertNotNull(small.get(shown.get(0)), "the page can still fetch what it was sent");
+
+        small.render(board, new Viewport(64, 8, 8, 22));
+        assertNull(small.get(passing));
+        renderer.close();
+        small.render(board, new Viewport(64, 8, 8, 23));
+        assertNull(small.get(shown.get(0)));
+    }
+
+    private static int[] find(GameBoard board) {
+        for (int x = 0; x < board.getSize(); x++) {
+            for (int y = 0; y < board.getSize(); y++) {
+                if (board.getPiece(x, y) == null && board.getVisibility(x, y) == Board.CellVisibility.CLOSED) {
+                    return new int[]{x, y};
+                }
+            }
+        }
+        throw new AssertionError();
+    }
+}
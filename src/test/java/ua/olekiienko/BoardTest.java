@@ -1,8 +1,84 @@
 package ua.olekiienko;
 
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
 import ua.oleksiienko.entities.Board;
+import ua.oleksiienko.entities.ChangeSet;
+import ua.oleksiienko.entities.GameBoard;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 public class BoardTest {
 
-   // Board board = new Board();
+    @RepeatedTest(20)
+    public void beatCountsMatchNaiveWalk() {
+        Board board = new Board(13);
+        int[][] expected = NaiveAttacks.beats(board);
+        assertEquals(board.getNumberOfMines(), NaiveAttacks.countMines(board));
+        for (int x = 0; x < 13; x++) {
+            for (int y = 0; y < 13; y++) {
+                assertEquals(expected[x][y], board.getBeaten(x, y), "beats at " + x + "," + y);
+            }
+        }
+    }
+
+    @Test
+    public void attackersAreThePiecesCounted() {
+        Board board = new Board(13, 11, 40);
+        for (int x = 0; x < 13; x++) {
+            for (int y = 0; y < 13; y++) {
+                List<Board.Cell> attackers = board.getCell(x, y).getBeatenBy();
+                assertEquals(board.getBeaten(x, y), attackers.size());
+                for (Board.Cell attacker : attackers) {
+                    assertEquals(Board.CellStatus.PIECED, attacker.getStatus());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void sameSeedGivesSameLayout() {
+        for (int size : new int[]{8, 20}) {
+            GameBoard first = GameBoard.of(size, 42);
+            GameBoard second = GameBoard.of(size, 42);
+            assertEquals(first.getNumberOfMines(), second.getNumberOfMines());
+            for (int x = 0; x < size; x++) {
+                for (int y = 0; y < size; y++) {
+                    assertEquals(first.getPiece(x, y), second.getPiece(x, y));
+                    assertEquals(first.getBeaten(x, y), second.getBeaten(x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void pieceCountCanBeChosen() {
+        Board dense = new Board(16, 7, 64);
+        assertEquals(64, dense.getNumberOfMines());
+        assertEquals(64, NaiveAttacks.countMines(dense));
+        assertThrows(IllegalArgumentException.class, () -> new Board(4, 7, 17));
+    }
+
+    @Test
+    public void largeRevealReportsEachCellOnce() {
+        Board board = new Board(1000);
+        int x = 0, y = 0;
+        while (board.getStatus(x, y) != Board.CellStatus.EMPTY) {
+            x++;
+        }
+        ChangeSet changes = board.openCell(x, y, true);
+        Set<Long> seen = new HashSet<>();
+        for (int i = 0; i < changes.size(); i++) {
+            int cx = changes.getX(i);
+            int cy = changes.getY(i);
+            assertTrue(seen.add((long) cx << 32 | cy), "reported twice: " + cx + "," + cy);
+            assertEquals(Board.CellVisibility.OPENED, board.getVisibility(cx, cy));
+        }
+        assertTrue(changes.size() > 1);
+        assertTrue(board.openCell(x, y, true).isEmpty());
+    }
 }
@@ -0,0 +1,46 @@
+package ua.olekiienko;
+
+import org.junit.jupiter.api.Test;
+import ua.oleksiienko.utils.CanvasCommandBuffer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CanvasCommandBufferTest {
+
+    @Test
+    public void dropsRedundantStateAndFlushesOnce() {
+        List<String> batches = new ArrayList<>();
+        CanvasCommandBuffer buffer = new CanvasCommandBuffer(batches::add);
+        for (int i = 0; i < 3; i++) {
+            buffer.setFillStyle("#076271");
+            buffer.fillRect(i * 60 + 5, 5, 60, 60);
+        }
+        buffer.fillText("2", 27.5, 45.125);
+        buffer.flush();
+        buffer.flush();
+
+        assertEquals(List.of("[[\"F\",\"#076271\"],[\"r\",5,5,60,60],[\"r\",65,5,60,60],[\"r\",125,5,60,60],"
+                + "[\"t\",\"2\",27.5,45.13]]"), batches);
+        assertEquals(7, buffer.getRecordedCount());
+        assertEquals(5, buffer.getSentCount());
+        assertEquals(1, buffer.getFlushCount());
+    }
+
+    @Test
+    public void resetStateResendsStyles() {
+        List<String> batches = new ArrayList<>();
+        CanvasCommandBuffer buffer = new CanvasCommandBuffer(batches::add);
+        buffer.setStrokeStyle("black");
+        buffer.flush();
+        buffer.setStrokeStyle("black");
+        buffer.flush();
+        buffer.resetState();
+        buffer.setStrokeStyle("black");
+        buffer.flush();
+
+        assertEquals(List.of("[[\"S\",\"black\"]]", "[[\"S\",\"black\"]]"), batches);
+    }
+}
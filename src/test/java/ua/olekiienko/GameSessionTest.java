@@ -0,0 +1,239 @@
+package ua.olekiienko;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ua.oleksiienko.entities.Board;
+import ua.oleksiienko.entities.BoardCodec;
+import ua.oleksiienko.entities.GameBoard;
+import ua.oleksiienko.entities.SharedBoard;
+import ua.oleksiienko.journal.JournalReplay;
+import ua.oleksiienko.journal.MoveJournal;
+import ua.oleksiienko.services.GameMetrics;
+import ua.oleksiienko.services.GameSession;
+import ua.oleksiienko.solver.HintEngine;
+import ua.oleksiienko.utils.BoardDeltas;
+import ua.oleksiienko.utils.CanvasCommandBuffer;
+import ua.oleksiienko.utils.Viewport;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameSessionTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final GameMetrics metrics = new GameMetrics(registry, true, 1);
+    private final MoveJournal journal = new MoveJournal("", 1024, 1000);
+
+    @Test
+    public void interactionsAreMeasured() {
+        GameBoard board = GameBoard.of(8, 42);
+        GameSession session = start(board);
+        assertEquals(1, registry.get("chess-sweeper.boards.active").gauge().value());
+        assertEquals(1, registry.get("chess-sweeper.repaint").timer().count());
+
+        int[] safe = find(board, false);
+        session.open(offset(safe[0]), offset(safe[1]));
+        session.flag(offset(safe[0]), offset(safe[1]));
+        assertEquals(1, registry.get("chess-sweeper.interaction").tag("action", "open").timer().count());
+        assertTrue(registry.get("chess-sweeper.interaction.commands").tag("action", "open").summary().totalAmount() > 0);
+        assertTrue(registry.get("chess-sweeper.reveal.cells").summary().totalAmount() >= 1);
+
+        int[] piece = find(board, true);
+        session.open(offset(piece[0]), offset(piece[1]));
+        assertTrue(session.isOver());
+        assertEquals(1, registry.get("chess-sweeper.games").tag("outcome", "lost").counter().count());
+        assertFalse(session.open(offset(safe[0]), offset(safe[1])));
+
+        session.close();
+        session.close();
+        assertEquals(0, registry.get("chess-sweeper.boards.active").gauge().value());
+    }
+
+    @Test
+    public void finishCountsTheOutcome() {
+        GameBoard board = GameBoard.of(8, 7);
+        GameSession session = start(board);
+        for (int x = 0; x < 8; x++) {
+            for (int y = 0; y < 8; y++) {
+                if (board.getPiece(x, y) == null) continue;
+                do {
+                    session.flag(offset(x), offset(y));
+                } while (board.getFlag(x, y) != board.getPiece(x, y));
+            }
+        }
+        assertEquals(GameSession.Outcome.WIN, session.finish());
+        assertEquals(1, registry.get("chess-sweeper.games").tag("outcome", "win").counter().count());
+    }
+
+    @Test
+    public void aGameIsCountedOnce() {
+        GameBoard board = GameBoard.of(8, 7);
+        GameSession session = start(board);
+        int[] wrong = find(board, true);
+        for (int x = 0; x < 8; x++) {
+            for (int y = 0; y < 8; y++) {
+                if (board.getPiece(x, y) == null) continue;
+                do {
+                    session.flag(offset(x), offset(y));
+                } while (x == wrong[0] && y == wrong[1]
+                        ? board.getFlag(x, y) == null || board.getFlag(x, y) == board.getPiece(x, y)
+                        : board.getFlag(x, y) != board.getPiece(x, y));
+            }
+        }
+        assertEquals(GameSession.Outcome.NEARLY, session.finish());
+        assertEquals(GameSession.Outcome.NEARLY, session.finish());
+        do {
+            session.flag(offset(wrong[0]), offset(wrong[1]));
+        } while (board.getFlag(wrong[0], wrong[1]) != board.getPiece(wrong[0], wrong[1]));
+        assertEquals(GameSession.Outcome.WIN, session.finish());
+        // the first outcome counts, as with the recorded results
+        assertEquals(1, registry.get("chess-sweeper.games").tag("outcome", "nearly").counter().count());
+        assertEquals(0, registry.get("chess-sweeper.games").tag("outcome", "win").counter().count());
+    }
+
+    @Test
+    public void hintPointsAtAClosedCell() {
+        GameBoard board = GameBoard.of(8, 42);
+        GameSession session = start(board);
+        int[] safe = find(board, false);
+        session.open(offset(safe[0]), offset(safe[1]));
+        HintEngine.Hint first = session.hint();
+        assertEquals(Board.CellVisibility.CLOSED, board.getVisibility(first.x(), first.y()));
+        double[] chances = session.visibleChances();
+        assertEquals(64, chances.length);
+        assertEquals(first.pieceChance(), chances[first.y() * 8 + first.x()], 1e-6);
+        assertEquals(-1, chances[safe[1] * 8 + safe[0]]);
+        if (board.getPiece(first.x(), first.y()) == null) {
+            session.open(offset(first.x()), offset(first.y()));
+            HintEngine.Hint next = session.hint();
+            assertEquals(Board.CellVisibility.CLOSED, board.getVisibility(next.x(), next.y()));
+        }
+        assertTrue(registry.get("chess-sweeper.interaction").tag("action", "hint").timer().count() >= 1);
+    }
+
+    @Test
+    public void undoAndRedoWalkTheHistory() {
+        GameBoard board = GameBoard.of(8, 42);
+        GameSession session = start(board);
+        int[] safe = find(board, false);
+        session.open(offset(safe[0]), offset(safe[1]));
+        int[] piece = find(board, true);
+        session.flag(offset(piece[0]), offset(piece[1]));
+        assertTrue(session.undo());
+        assertTrue(session.undo());
+        assertEquals(Board.CellVisibility.CLOSED, board.getVisibility(safe[0], safe[1]));
+        assertFalse(session.undo());
+        assertTrue(session.jumpTo(2));
+        assertEquals(Board.CellVisibility.OPENED, board.getVisibility(safe[0], safe[1]));
+        assertEquals(Board.CellVisibility.FLAGGED, board.getVisibility(piece[0], piece[1]));
+        assertFalse(session.redo());
+        assertEquals(3, registry.get("chess-sweeper.interaction").tag("action", "history").timer().count());
+
+        session.open(offset(piece[0]), offset(piece[1]));
+        assertFalse(session.undo(), "a lost game stays lost");
+    }
+
+    @Test
+    public void sharedChangesSkipOwnMoves() {
+        SharedBoard board = new SharedBoard(8, 5);
+        Viewport viewport = new Viewport(8, 60);
+        List<String> sent = new ArrayList<>();
+        GameSession session = new GameSession(board, journal.start(board), viewport, new BoardDeltas(board, viewport, sent::add), journal, metrics, () -> {});
+        session.flag(offset(0), offset(0));
+        assertEquals(1, sent.size());
+
+        session.paintShared(board.drainChanges());
+        assertEquals(1, sent.size(), "the session painted its own flag already");
+        board.flagNext(7, 7);
+        session.flag(offset(0), offset(0));
+        board.flagNext(0, 0);
+        session.paintShared(board.drainChanges());
+        assertEquals(3, sent.size());
+        assertEquals("[0,0," + BoardDeltas.state(board, 0, 0) + ",63," + BoardDeltas.state(board, 7, 7) + "]", sent.get(2),
+                "a cell someone else changed since is painted again");
+    }
+
+    @Test
+    public void frequentInteractionsAreSampled() {
+        SimpleMeterRegistry sampledRegistry = new SimpleMeterRegistry();
+        GameMetrics sampled = new GameMetrics(sampledRegistry, true, 0.5);
+        GameBoard board = GameBoard.of(64, 3);
+        GameSession session = new GameSession(board, new Viewport(64, 8, 8, 60), new CanvasCommandBuffer(batch -> {}), journal, sampled, () -> {});
+        for (int move = 0; move < 200; move++) {
+            session.moveViewport(move % 2 == 0 ? 1 : -1, 0, 0, 0, 0);
+        }
+        int[] safe = find(board, false);
+        session.open(offset(safe[0]), offset(safe[1]));
+
+        long timed = sampledRegistry.get("chess-sweeper.interaction").tag("action", "viewport").timer().count();
+        assertTrue(timed > 0 && timed < 200, "about half of the moves are timed, not " + timed);
+        // each measured move stands for two
+        assertEquals(2.0 * timed, sampledRegistry.get("chess-sweeper.interaction.events").tag("action", "viewport").counter().count());
+        assertEquals(1, sampledRegistry.get("chess-sweeper.interaction").tag("action", "open").timer().count());
+        assertEquals(1, sampledRegistry.get("chess-sweeper.interaction.events").tag("action", "open").counter().count());
+    }
+
+    @Test
+    public void movesThatChangeNothingAreNotRecorded(@TempDir Path directory) throws IOException {
+        MoveJournal recording = new MoveJournal(directory.toString(), 1024, 60_000);
+        GameBoard board = GameBoard.of(8, 42);
+        GameSession session = new GameSession(board, new Viewport(8, 60), new CanvasCommandBuffer(batch -> {}), recording, metrics, () -> {});
+        int[] safe = find(board, false);
+        session.open(offset(safe[0]), offset(safe[1]));
+        int[] piece = find(board, true);
+        session.flag(offset(piece[0]), offset(piece[1]));
+        assertEquals(2, session.getHistory().getLatest());
+
+        // a second click on the opened cell, either button
+        session.open(offset(safe[0]), offset(safe[1]));
+        session.flag(offset(safe[0]), offset(safe[1]));
+        assertEquals(2, session.getHistory().getLatest());
+        assertTrue(session.undo());
+        assertEquals(Board.CellVisibility.CLOSED, board.getVisibility(piece[0], piece[1]), "one undo takes back the flag");
+        session.open(offset(safe[0]), offset(safe[1]));
+        assertTrue(session.redo(), "a stray click keeps the redo");
+        assertTrue(session.undo());
+        recording.close();
+
+        // the journal's jump numbers the same versions
+        List<GameBoard> replayed = new ArrayList<>();
+        JournalReplay.replayAll(directory, (game, replayedBoard) -> replayed.add(replayedBoard));
+        assertEquals(1, replayed.size());
+        assertArrayEquals(BoardCodec.encode(board), BoardCodec.encode(replayed.get(0)));
+    }
+
+    @Test
+    public void disabledMetricsRecordNothing() {
+        GameMetrics off = GameMetrics.disabled();
+        assertFalse(off.sample(GameMetrics.Interaction.OPEN));
+        assertFalse(off.sample(GameMetrics.Interaction.VIEWPORT));
+        new GameSession(GameBoard.of(8, 1), new Viewport(8, 60), new CanvasCommandBuffer(batch -> {}), journal, off, () -> {})
+                .open(offset(0), offset(0));
+    }
+
+    private GameSession start(GameBoard board) {
+        GameSession session = new GameSession(board, new Viewport(8, 60), new CanvasCommandBuffer(batch -> {}), journal, metrics, () -> {});
+        session.paint();
+        return session;
+    }
+
+    private static int offset(int tile) {
+        return (int) Viewport.MARGIN + tile * 60 + 30;
+    }
+
+    private static int[] find(GameBoard board, boolean piece) {
+        for (int x = 0; x < 8; x++) {
+            for (int y = 0; y < 8; y++) {
+                if ((board.getPiece(x, y) != null) == piece && board.getVisibility(x, y) == Board.CellVisibility.CLOSED) {
+                    return new int[]{x, y};
+                }
+            }
+        }
+        throw new AssertionError();
+    }
+}
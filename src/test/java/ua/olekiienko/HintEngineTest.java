@@ -0,0 +1,275 @@
+package ua.olekiienko;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+import ua.oleksiienko.entities.Board;
+import ua.oleksiienko.entities.BoardHistory;
+import ua.oleksiienko.entities.ChangeSet;
+import ua.oleksiienko.entities.GameBoard;
+import ua.oleksiienko.entities.Piece;
+import ua.oleksiienko.solver.Deduction;
+import ua.oleksiienko.solver.HintEngine;
+import ua.oleksiienko.solver.Probabilities;
+import ua.oleksiienko.solver.Solver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HintEngineTest {
+
+    // enough search nodes to count the positions below exactly
+    private static final long EXACT = 100_000;
+
+    private final Solver solver = new Solver();
+
+    @RepeatedTest(20)
+    public void chancesAgreeWithTheSolver() {
+        for (int size : new int[]{8, 13}) {
+            GameBoard board = GameBoard.of(size, ThreadLocalRandom.current().nextLong());
+            openFirstEmpty(board);
+            HintEngine engine = new HintEngine(board);
+            Probabilities probabilities = engine.probabilities();
+            Deduction deduction = solver.solve(board);
+            String seed = "seed " + board.getSeed();
+            assertTrue(probabilities.isConsistent(), seed);
+            double expectedPieces = 0;
+            for (int x = 0; x < size; x++) {
+                for (int y = 0; y < size; y++) {
+                    double sum = probabilities.getChance(x, y, null);
+                    for (Piece piece : Piece.values()) sum += probabilities.getChance(x, y, piece);
+                    assertEquals(1, sum, 1e-4, seed + " at " + x + "," + y);
+                    if (probabilities.isExact()) {
+                        assertTrue(probabilities.getChance(x, y, board.getPiece(x, y)) > 0, seed + " at " + x + "," + y);
+                        if (deduction.isSafe(x, y)) assertEquals(0, probabilities.getPieceChance(x, y), 1e-6, seed);
+                    }
+                    expectedPieces += probabilities.getPieceChance(x, y);
+                }
+            }
+            // every layout holds all the pieces, so the chances add up to their number
+            assertEquals(board.getNumberOfMines(), expectedPieces, 1e-3, seed);
+            HintEngine.Hint hint = engine.best();
+            if (!probabilities.isInformed()) {
+                assertNull(hint, seed);
+                continue;
+            }
+            assertEquals(Board.CellVisibility.CLOSED, board.getVisibility(hint.x(), hint.y()));
+            if (probabilities.isExact() && hasSafeCell(board, deduction)) {
+                assertEquals(0, hint.pieceChance(), 1e-6, seed);
+            }
+        }
+    }
+
+    @Test
+    public void samplesNeverProveAContradiction() {
+        // sampled components here can add up to more pieces than the board has
+        for (int run = 0; run < 40; run++) {
+            GameBoard board = GameBoard.of(13, -1740135999380128000L);
+            openFirstEmpty(board);
+            Probabilities probabilities = new HintEngine(board, 1_000, 200, new Random(run)).probabilities();
+            assertTrue(probabilities.isConsistent(), "run " + run);
+        }
+    }
+
+    @Test
+    public void noHintWithoutInformation() {
+        // some of the samples here don't fit together, which leaves the numbers unused
+        int uninformed = 0;
+        for (int run = 0; run < 40; run++) {
+            GameBoard board = GameBoard.of(13, -1740135999380128000L);
+            openFirstEmpty(board);
+            HintEngine engine = new HintEngine(board, 1_000, 200, new Random(run));
+            if (engine.probabilities().isInformed()) {
+                assertNotNull(engine.best(), "run " + run);
+            } else {
+                assertNull(engine.best(), "run " + run);
+                uninformed++;
+            }
+        }
+        assertTrue(uninformed > 0);
+    }
+
+    @Test
+    public void chancesMatchEveryLayout() {
+        Random random = new Random(5);
+        int checked = 0;
+        while (checked < 10) {
+            GameBoard board = GameBoard.of(5, random.nextLong());
+            if (board.getNumberOfMines() > 4) continue;
+            openFirstEmpty(board);
+            // a few more safe cells keep the layouts few enough to list
+            for (int x = 0; x < 5 && closedCells(board).size() > 12; x++) {
+                for (int y = 0; y < 5; y++) {
+                    if (board.getVisibility(x, y) == Board.CellVisibility.CLOSED && board.getPiece(x, y) == null) {
+                        board.openCell(x, y, true);
+                        break;
+                    }
+                }
+            }
+            double[][][] expected = enumerate(board);
+            if (expected == null) continue;
+            Probabilities probabilities = new HintEngine(board).probabilities();
+            assertTrue(probabilities.isExact());
+            for (int x = 0; x < 5; x++) {
+                for (int y = 0; y < 5; y++) {
+                    if (board.getVisibility(x, y) != Board.CellVisibility.CLOSED) continue;
+                    assertEquals(expected[x][y][0], probabilities.getChance(x, y, null), 1e-4, board.getSeed() + " at " + x + "," + y);
+                    for (Piece piece : Piece.values()) {
+                        assertEquals(expected[x][y][piece.ordinal() + 1], probabilities.getChance(x, y, piece), 1e-4,
+                                board.getSeed() + " at " + x + "," + y + " " + piece);
+                    }
+                }
+            }
+            checked++;
+        }
+    }
+
+    @Test
+    public void updatesMatchAFreshEngine() {
+        GameBoard board = GameBoard.of(8, 11);
+        openFirstEmpty(board);
+        HintEngine engine = new HintEngine(board, EXACT, 200, new Random(1));
+        Probabilities first = engine.probabilities();
+        board.flagNext(0, 0);
+        assertSame(first, engine.probabilities(), "flags don't change what is known");
+
+        for (int move = 0; move < 3; move++) {
+            HintEngine.Hint hint = engine.best();
+            if (board.getPiece(hint.x(), hint.y()) != null) break;
+            engine.update(board.openCell(hint.x(), hint.y(), true));
+            Probabilities updated = engine.probabilities();
+            Probabilities fresh = new HintEngine(board, EXACT, 200, new Random(1)).probabilities();
+            assertTrue(updated.isExact() && fresh.isExact());
+            for (int x = 0; x < board.getSize(); x++) {
+                for (int y = 0; y < board.getSize(); y++) {
+                    assertEquals(fresh.getPieceChance(x, y), updated.getPieceChance(x, y), 1e-6);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void undoneOpensAreForgotten() {
+        GameBoard board = GameBoard.of(8, 11);
+        openFirstEmpty(board);
+        BoardHistory history = new BoardHistory(board);
+        HintEngine engine = new HintEngine(board, EXACT, 200, new Random(1));
+        HintEngine.Hint hint = engine.best();
+        ChangeSet opened = board.openCell(hint.x(), hint.y(), true);
+        history.record(opened);
+        engine.update(opened);
+        engine.probabilities();
+
+        engine.update(history.jumpTo(0));
+        assertEquals(Board.CellVisibility.CLOSED, board.getVisibility(hint.x(), hint.y()));
+        Probabilities fresh = new HintEngine(board, EXACT, 200, new Random(1)).probabilities();
+        Probabilities updated = engine.probabilities();
+        for (int x = 0; x < board.getSize(); x++) {
+            for (int y = 0; y < board.getSize(); y++) {
+                assertEquals(fresh.getPieceChance(x, y), updated.getPieceChance(x, y), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    public void samplingEstimatesTheCounts() {
+        GameBoard board = GameBoard.of(8, 11);
+        openFirstEmpty(board);
+        Probabilities exact = new HintEngine(board, EXACT, 200, new Random(1)).probabilities();
+        Probabilities sampled = new HintEngine(board, 5_000, 1_000, new Random(1)).probabilities();
+        assertTrue(exact.isExact());
+        assertFalse(sampled.isExact());
+        double pieces = 0;
+        for (int x = 0; x < board.getSize(); x++) {
+            for (int y = 0; y < board.getSize(); y++) {
+                assertEquals(exact.getPieceChance(x, y), sampled.getPieceChance(x, y), 0.1, x + "," + y);
+                pieces += sampled.getPieceChance(x, y);
+            }
+        }
+        assertEquals(board.getNumberOfMines(), pieces, 1e-3);
+    }
+
+    /**
+     * Chances of each content, none first, over every layout of the pieces that fits what is open,
+     * or {@code null} if there are too many layouts to list.
+     */
+    private static double[][][] enumerate(GameBoard board) {
+        List<int[]> closed = closedCells(board);
+        if (closed.size() > 12) return null;
+        int size = board.getSize();
+        double[][][] counts = new double[size][size][Piece.values().length + 1];
+        Piece[][] pieces = new Piece[size][size];
+        long layouts = place(board, closed, 0, board.getNumberOfMines(), pieces, counts);
+        for (int[] cell : closed) {
+            double[] chances = counts[cell[0]][cell[1]];
+            double pieced = 0;
+            for (int value = 1; value < chances.length; value++) {
+                chances[value] /= layouts;
+                pieced += chances[value];
+            }
+            chances[0] = 1 - pieced;
+        }
+        return counts;
+    }
+
+    private static long place(GameBoard board, List<int[]> closed, int from, int left, Piece[][] pieces, double[][][] counts) {
+        if (left == 0) {
+            int[][] beats = NaiveAttacks.beats(pieces);
+            for (int x = 0; x < board.getSize(); x++) {
+                for (int y = 0; y < board.getSize(); y++) {
+                    if (board.getVisibility(x, y) == Board.CellVisibility.OPENED && beats[x][y] != board.getBeaten(x, y)) {
+                        return 0;
+                    }
+                }
+            }
+            for (int[] cell : closed) {
+                Piece piece = pieces[cell[0]][cell[1]];
+                if (piece != null) counts[cell[0]][cell[1]][piece.ordinal() + 1]++;
+            }
+            return 1;
+        }
+        long layouts = 0;
+        for (int i = from; i <= closed.size() - left; i++) {
+            int[] cell = closed.get(i);
+            for (Piece piece : Piece.values()) {
+                pieces[cell[0]][cell[1]] = piece;
+                layouts += place(board, closed, i + 1, left - 1, pieces, counts);
+            }
+            pieces[cell[0]][cell[1]] = null;
+        }
+        return layouts;
+    }
+
+    private static List<int[]> closedCells(GameBoard board) {
+        List<int[]> closed = new ArrayList<>();
+        for (int x = 0; x < board.getSize(); x++) {
+            for (int y = 0; y < board.getSize(); y++) {
+                if (board.getVisibility(x, y) == Board.CellVisibility.CLOSED) closed.add(new int[]{x, y});
+            }
+        }
+        return closed;
+    }
+
+    private static boolean hasSafeCell(GameBoard board, Deduction deduction) {
+        for (int x = 0; x < board.getSize(); x++) {
+            for (int y = 0; y < board.getSize(); y++) {
+                if (board.getVisibility(x, y) == Board.CellVisibility.CLOSED && deduction.isSafe(x, y)) return true;
+            }
+        }
+        return false;
+    }
+
+    private static void openFirstEmpty(GameBoard board) {
+        for (int x = 0; x < board.getSize(); x++) {
+            for (int y = 0; y < board.getSize(); y++) {
+                if (board.getStatus(x, y) == Board.CellStatus.EMPTY && board.getBeaten(x, y) == 0) {
+                    board.openCell(x, y, true);
+                    return;
+                }
+            }
+        }
+    }
+}
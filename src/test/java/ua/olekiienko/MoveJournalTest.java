@@ -0,0 +1,181 @@
+package ua.olekiienko;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ua.oleksiienko.entities.Board;
+import ua.oleksiienko.entities.BoardCodec;
+import ua.oleksiienko.entities.BoardHistory;
+import ua.oleksiienko.entities.GameBoard;
+import ua.oleksiienko.entities.SharedBoard;
+import ua.oleksiienko.journal.Action;
+import ua.oleksiienko.journal.JournalReplay;
+import ua.oleksiienko.journal.MoveJournal;
+import ua.oleksiienko.services.NoGuessGenerator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MoveJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void replayRebuildsEveryGame() throws IOException {
+        // small segments, so the games spread over several files
+        MoveJournal journal = new MoveJournal(directory.toString(), 1024, 60_000);
+        Random random = new Random(7);
+        Map<Long, GameBoard> played = new HashMap<>();
+        GameBoard[] boards = new GameBoard[5];
+        long[] games = new long[boards.length];
+        for (int i = 0; i < boards.length; i++) {
+            boards[i] = GameBoard.of(8, random.nextLong());
+            games[i] = journal.start(boards[i]);
+            played.put(games[i], boards[i]);
+        }
+        // interleaved, the way concurrent sessions write
+        for (int move = 0; move < 60; move++) {
+            int i = random.nextInt(boards.length);
+            int x = random.nextInt(8);
+            int y = random.nextInt(8);
+            if (random.nextInt(4) == 0) {
+                journal.open(games[i], x, y);
+                boards[i].openCell(x, y, true);
+            } else {
+                journal.flag(games[i], x, y);
+                boards[i].flagNext(x, y);
+            }
+        }
+        journal.end(games[0]);
+        boards[0].endGame();
+        journal.close();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.count() > 1);
+        }
+        for (long game : games) {
+            assertArrayEquals(BoardCodec.encode(played.get(game)),
+                    BoardCodec.encode(JournalReplay.rebuild(directory, game)));
+        }
+        Map<Long, GameBoard> replayed = new HashMap<>();
+        JournalReplay.replayAll(directory, replayed::put);
+        assertEquals(played.keySet(), replayed.keySet());
+        for (long game : games) {
+            assertArrayEquals(BoardCodec.encode(played.get(game)), BoardCodec.encode(replayed.get(game)));
+        }
+        assertNull(JournalReplay.rebuild(directory, 1000));
+    }
+
+    @Test
+    public void replayFollowsJumps() throws IOException {
+        MoveJournal journal = new MoveJournal(directory.toString(), 1024, 60_000);
+        BoardHistory history = new BoardHistory(GameBoard.of(8, 4));
+        long game = journal.start(history.getBoard());
+        for (int move = 0; move < 4; move++) {
+            journal.flag(game, move, move);
+            JournalReplay.apply(history, Action.FLAG, move, move);
+        }
+        journal.jump(game, 1);
+        JournalReplay.apply(history, Action.JUMP, 1, -1);
+        journal.flag(game, 7, 7);
+        JournalReplay.apply(history, Action.FLAG, 7, 7);
+        journal.close();
+
+        GameBoard replayed = JournalReplay.rebuild(directory, game);
+        assertEquals(Board.CellVisibility.FLAGGED, replayed.getVisibility(0, 0));
+        assertEquals(Board.CellVisibility.CLOSED, replayed.getVisibility(1, 1));
+        assertArrayEquals(BoardCodec.encode(history.getBoard()), BoardCodec.encode(replayed));
+    }
+
+    @Test
+    public void replayOpensTheStartOfNoGuessGames() throws IOException {
+        MoveJournal journal = new MoveJournal(directory.toString(), 1024, 60_000);
+        GameBoard board = GameBoard.of(8, 11);
+        assertTrue(NoGuessGenerator.openStart(board));
+        byte[] started = BoardCodec.encode(board);
+        BoardHistory history = new BoardHistory(board);
+        long game = journal.start(board);
+        journal.flag(game, 0, 0);
+        JournalReplay.apply(history, Action.FLAG, 0, 0);
+        journal.flag(game, 7, 7);
+        JournalReplay.apply(history, Action.FLAG, 7, 7);
+        journal.close();
+
+        assertArrayEquals(BoardCodec.encode(board), BoardCodec.encode(JournalReplay.rebuild(directory, game)));
+
+        // back to the first version is back to the opened start
+        journal = new MoveJournal(directory.toString(), 1024, 60_000);
+        journal.jump(game, 0);
+        journal.close();
+        assertArrayEquals(started, BoardCodec.encode(JournalReplay.rebuild(directory, game)));
+    }
+
+    @Test
+    public void sharedGamesReplayInTheOrderTheBoardTookTheMoves() throws Exception {
+        MoveJournal journal = new MoveJournal(directory.toString(), 1 << 20, 60_000);
+        SharedBoard board = new SharedBoard(32, 9);
+        long game = journal.start(board);
+        List<int[]> pieces = new ArrayList<>();
+        for (int x = 0; x < 32; x++) {
+            for (int y = 0; y < 32; y++) {
+                if (board.getPiece(x, y) != null) pieces.add(new int[]{x, y});
+            }
+        }
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        List<Future<?>> done = new ArrayList<>();
+        for (int player = 0; player < 4; player++) {
+            Random random = new Random(player);
+            // flags racing the end of the game, which keeps the flags placed before it
+            done.add(threads.submit(() -> {
+                for (int move = 0; move < 2_000; move++) {
+                    int[] piece = pieces.get(random.nextInt(pieces.size()));
+                    journal.record(game, Action.FLAG, piece[0], piece[1], () -> board.flagNext(piece[0], piece[1]));
+                    if (move == 1_000 && random.nextBoolean()) journal.record(game, Action.END, -1, -1, board::endGame);
+                }
+            }));
+        }
+        for (Future<?> future : done) future.get(60, TimeUnit.SECONDS);
+        threads.shutdown();
+        journal.record(game, Action.END, -1, -1, board::endGame);
+        journal.close();
+
+        assertArrayEquals(BoardCodec.encode(board), BoardCodec.encode(JournalReplay.rebuild(directory, game)));
+    }
+
+    @Test
+    public void reopenedJournalContinuesTheIds() throws IOException {
+        MoveJournal journal = new MoveJournal(directory.toString(), 1024, 60_000);
+        long first = journal.start(GameBoard.of(8, 1));
+        journal.close();
+
+        journal = new MoveJournal(directory.toString(), 1024, 60_000);
+        long second = journal.start(GameBoard.of(8, 2));
+        journal.open(second, 0, 0);
+        journal.close();
+
+        assertTrue(second > first);
+        assertEquals(2, JournalReplay.rebuild(directory, second).getSeed());
+    }
+
+    @Test
+    public void blankDirectoryTurnsItOff() {
+        MoveJournal journal = new MoveJournal("", 1024, 1000);
+        assertFalse(journal.isEnabled());
+        assertEquals(-1, journal.start(GameBoard.of(8, 1)));
+        journal.open(-1, 0, 0);
+        journal.close();
+    }
+}
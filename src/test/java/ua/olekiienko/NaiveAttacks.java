@@ -0,0 +1,80 @@
+package ua.olekiienko;
+
+import ua.oleksiienko.entities.GameBoard;
+import ua.oleksiienko.entities.Piece;
+
+/**
+ * Straightforward beat counting used as a reference for the optimized engines.
+ */
+final class NaiveAttacks {
+
+    private static final int[][] KNIGHT = {{2, 1}, {1, 2}, {-2, 1}, {-1, 2}, {2, -1}, {1, -2}, {-2, -1}, {-1, -2}};
+    private static final int[][] KING = {{1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}, {-1, -1}, {0, -1}, {1, -1}};
+    private static final int[][] ROOK = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+    private static final int[][] BISHOP = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+
+    private NaiveAttacks() {
+    }
+
+    static int[][] beats(GameBoard board) {
+        int size = board.getSize();
+        Piece[][] pieces = new Piece[size][size];
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) pieces[x][y] = board.getPiece(x, y);
+        }
+        return beats(pieces);
+    }
+
+    static int[][] beats(Piece[][] pieces) {
+        int size = pieces.length;
+        int[][] beats = new int[size][size];
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                Piece piece = pieces[x][y];
+                if (piece == null) continue;
+                switch (piece) {
+                    case KNIGHT -> jump(beats, x, y, KNIGHT);
+                    case KING -> jump(beats, x, y, KING);
+                    case ROOK -> slide(pieces, beats, x, y, ROOK);
+                    case BISHOP -> slide(pieces, beats, x, y, BISHOP);
+                    case QUEEN -> {
+                        slide(pieces, beats, x, y, ROOK);
+                        slide(pieces, beats, x, y, BISHOP);
+                    }
+                }
+            }
+        }
+        return beats;
+    }
+
+    static int countMines(GameBoard board) {
+        int mines = 0;
+        for (int x = 0; x < board.getSize(); x++) {
+            for (int y = 0; y < board.getSize(); y++) {
+                if (board.getPiece(x, y) != null) mines++;
+            }
+        }
+        return mines;
+    }
+
+    private static void jump(int[][] beats, int x, int y, int[][] moves) {
+        int size = beats.length;
+        for (int[] m : moves) {
+            int tx = x + m[0], ty = y + m[1];
+            if (tx >= 0 && ty >= 0 && tx < size && ty < size) beats[tx][ty]++;
+        }
+    }
+
+    private static void slide(Piece[][] pieces, int[][] beats, int x, int y, int[][] dirs) {
+        int size = pieces.length;
+        for (int[] d : dirs) {
+            int tx = x + d[0], ty = y + d[1];
+            while (tx >= 0 && ty >= 0 && tx < size && ty < size) {
+                beats[tx][ty]++;
+                if (pieces[tx][ty] != null) break;
+                tx += d[0];
+                ty += d[1];
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package ua.olekiienko;
+
+import org.junit.jupiter.api.Test;
+import ua.oleksiienko.entities.Board;
+import ua.oleksiienko.entities.GameBoard;
+import ua.oleksiienko.services.NoGuessGenerator;
+import ua.oleksiienko.solver.Solver;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NoGuessGeneratorTest {
+
+    @Test
+    public void generatedBoardsNeedNoGuess() {
+        NoGuessGenerator generator = new NoGuessGenerator(5_000, 2);
+        try {
+            for (int size : new int[]{8, 13}) {
+                GameBoard board = generator.generate(size);
+                assertEquals(0, generator.getFallbacks());
+                assertTrue(countOpened(board) > 0);
+                assertTrue(NoGuessGenerator.isSolvable(GameBoard.of(size, board.getSeed()), new Solver()), "seed " + board.getSeed());
+            }
+        } finally {
+            generator.shutdown();
+        }
+    }
+
+    @Test
+    public void fallsBackWhenOutOfTime() {
+        NoGuessGenerator generator = new NoGuessGenerator(0, 1);
+        try {
+            GameBoard board = generator.generate(8);
+            assertEquals(1, generator.getFallbacks());
+            assertTrue(countOpened(board) > 0);
+        } finally {
+            generator.shutdown();
+        }
+    }
+
+    @Test
+    public void replayedSeedGetsTheSameStart() {
+        GameBoard board = GameBoard.of(8, 42);
+        GameBoard replay = GameBoard.of(8, 42);
+        NoGuessGenerator.openStart(board);
+        NoGuessGenerator.openStart(replay);
+        for (int x = 0; x < 8; x++) {
+            for (int y = 0; y < 8; y++) {
+                assertEquals(board.getVisibility(x, y), replay.getVisibility(x, y));
+            }
+        }
+    }
+
+    private static int countOpened(GameBoard board) {
+        int opened = 0;
+        for (int x = 0; x < board.getSize(); x++) {
+            for (int y = 0; y < board.getSize(); y++) {
+                if (board.getVisibility(x, y) == Board.CellVisibility.OPENED) opened++;
+            }
+        }
+        return opened;
+    }
+}
@@ -0,0 +1,91 @@
+package ua.olekiienko;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import ua.oleksiienko.results.GameResult;
+import ua.oleksiienko.results.Leaderboard;
+import ua.oleksiienko.results.PlayerStats;
+import ua.oleksiienko.results.ResultsStore;
+import ua.oleksiienko.services.GameExecutors;
+import ua.oleksiienko.services.GameSession.Outcome;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResultsStoreTest {
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    public void setUp() {
+        database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+        jdbc = new JdbcTemplate(database);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void flushWritesBatchesAndUpdatesLeaderboard() throws InterruptedException {
+        Leaderboard leaderboard = new Leaderboard(2);
+        ResultsStore store = new ResultsStore(jdbc, leaderboard, GameExecutors.platform(), 1000, 3, 60_000);
+        store.record(result("ann", Outcome.WIN, 9000));
+        store.record(result("bob", Outcome.LOST, 1000));
+        store.record(result("bob", Outcome.WIN, 5000));
+        store.record(result("cid", Outcome.NEARLY, 1000));
+        store.record(result("ann", Outcome.WIN, 7000));
+        assertTrue(leaderboard.top().isEmpty(), "nothing is visible before it is written");
+        store.flush();
+
+        assertEquals(5, jdbc.queryForObject("SELECT COUNT(*) FROM game_result", Integer.class));
+        assertEquals(List.of(new PlayerStats("ann", 2, 0, 0, 7000), new PlayerStats("bob", 1, 0, 1, 5000)), leaderboard.top());
+        assertEquals(new PlayerStats("cid", 0, 1, 0, 0), leaderboard.stats("cid"));
+
+        store.record(result("cid", Outcome.WIN, 100));
+        store.record(result("cid", Outcome.WIN, 200));
+        store.record(result("cid", Outcome.WIN, 300));
+        store.close();
+        assertEquals(List.of("cid", "ann"), leaderboard.top().stream().map(PlayerStats::player).toList());
+    }
+
+    @Test
+    public void fullQueueDropsInsteadOfBlocking() throws InterruptedException {
+        Leaderboard leaderboard = new Leaderboard(10);
+        ResultsStore store = new ResultsStore(jdbc, leaderboard, GameExecutors.platform(), 4, 2, 60_000);
+        int accepted = 0;
+        for (int i = 0; i < 10; i++) {
+            if (store.record(result("ann", Outcome.LOST, i))) accepted++;
+        }
+        assertEquals(4, accepted);
+        assertEquals(6, store.getDropped());
+        store.close();
+        assertEquals(4, leaderboard.stats("ann").losses());
+    }
+
+    @Test
+    public void leaderboardIsRebuiltFromStoredResults() throws InterruptedException {
+        ResultsStore first = new ResultsStore(jdbc, new Leaderboard(10), GameExecutors.platform(), 100, 10, 60_000);
+        first.record(result("ann", Outcome.WIN, 4000));
+        first.record(result("ann", Outcome.WIN, 3000));
+        first.record(result("ann", Outcome.NEARLY, 3000));
+        first.record(result("bob", Outcome.LOST, 3000));
+        first.close();
+
+        Leaderboard leaderboard = new Leaderboard(10);
+        new ResultsStore(jdbc, leaderboard, GameExecutors.platform(), 100, 10, 60_000).close();
+        assertEquals(List.of(new PlayerStats("ann", 2, 1, 0, 3000), new PlayerStats("bob", 0, 0, 1, 0)), leaderboard.top());
+    }
+
+    private static GameResult result(String player, Outcome outcome, long durationMillis) {
+        return new GameResult(player, 8, 42, outcome, durationMillis, System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,179 @@
+package ua.olekiienko;
+
+import org.junit.jupiter.api.Test;
+import ua.oleksiienko.entities.Board;
+import ua.oleksiienko.entities.BoardCodec;
+import ua.oleksiienko.entities.ChangeSet;
+import ua.oleksiienko.entities.SharedBoard;
+import ua.oleksiienko.journal.MoveJournal;
+import ua.oleksiienko.services.GameExecutors;
+import ua.oleksiienko.services.SharedGames;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SharedBoardTest {
+
+    @Test
+    public void playersOpenEachCellOnce() throws Exception {
+        int size = 512;
+        SharedBoard board = new SharedBoard(size, 17, size * size / 16);
+        List<Integer> safe = new ArrayList<>();
+        List<Integer> pieces = new ArrayList<>();
+        for (int index = 0; index < size * size; index++) {
+            (board.getPiece(index / size, index % size) == null ? safe : pieces).add(index);
+        }
+        int players = 200;
+        AtomicInteger reported = new AtomicInteger();
+        Set<Integer> opened = ConcurrentHashMap.newKeySet();
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        List<Future<?>> done = new ArrayList<>();
+        for (int player = 0; player < players; player++) {
+            Random random = new Random(player);
+            done.add(threads.submit(() -> {
+                // every player flags some pieces and opens a share of the safe cells, all overlapping
+                for (int move = 0; move < 2_000; move++) {
+                    int index = random.nextInt(4) == 0
+                            ? pieces.get(random.nextInt(pieces.size()))
+                            : safe.get(random.nextInt(safe.size()));
+                    if (board.getPiece(index / size, index % size) != null) {
+                        board.flagNext(index / size, index % size);
+                        continue;
+                    }
+                    ChangeSet changes = board.openCell(index / size, index % size, true);
+                    reported.addAndGet(changes.size());
+                    for (int i = 0; i < changes.size(); i++) {
+                        assertTrue(opened.add(changes.getX(i) * size + changes.getY(i)), "opened twice");
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : done) future.get(60, TimeUnit.SECONDS);
+        threads.shutdown();
+
+        assertEquals(opened.size(), reported.get());
+        assertFalse(board.isLost());
+        int flagged = 0;
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                boolean open = board.getVisibility(x, y) == Board.CellVisibility.OPENED;
+                assertEquals(opened.contains(x * size + y), open);
+                if (board.getFlag(x, y) != null) flagged++;
+                if (open && board.getStatus(x, y) == Board.CellStatus.EMPTY) {
+                    // a reveal spreads from every empty cell it opens, to all but pieces
+                    for (int dx = -1; dx <= 1; dx++) {
+                        for (int dy = -1; dy <= 1; dy++) {
+                            int nx = x + dx;
+                            int ny = y + dy;
+                            if (nx < 0 || ny < 0 || nx >= size || ny >= size || board.getPiece(nx, ny) != null) continue;
+                            assertEquals(Board.CellVisibility.OPENED, board.getVisibility(nx, ny));
+                        }
+                    }
+                }
+            }
+        }
+        assertEquals(flagged, board.getFlaggedCount());
+    }
+
+    @Test
+    public void changesAreDrainedOnce() {
+        SharedBoard board = new SharedBoard(64, 3);
+        assertTrue(board.drainChanges().isEmpty());
+        board.flagNext(1, 2);
+        board.flagNext(1, 2);
+        board.flagNext(1, 2);
+        board.flagNext(63, 63);
+        ChangeSet changes = board.drainChanges();
+        assertEquals(2, changes.size());
+        assertEquals(1, changes.getX(0));
+        assertEquals(2, changes.getY(0));
+        assertEquals(63, changes.getX(1));
+        assertTrue(board.drainChanges().isEmpty());
+    }
+
+    @Test
+    public void layoutAndSnapshotMatchAPlainBoard() {
+        SharedBoard shared = new SharedBoard(40, 8);
+        Board plain = new Board(40, 8);
+        Random random = new Random(8);
+        for (int move = 0; move < 200; move++) {
+            int x = random.nextInt(40);
+            int y = random.nextInt(40);
+            if (plain.getPiece(x, y) == null && random.nextInt(4) == 0) {
+                shared.openCell(x, y, true);
+                plain.openCell(x, y, true);
+            } else {
+                shared.flagNext(x, y);
+                plain.flagNext(x, y);
+            }
+        }
+        assertEquals(plain.getNumberOfMines(), shared.getNumberOfMines());
+        assertEquals(plain.getFlaggedCount(), shared.getFlaggedCount());
+        assertArrayEquals(BoardCodec.encode(plain), BoardCodec.encode(shared));
+        for (int x = 0; x < 40; x++) {
+            for (int y = 0; y < 40; y++) {
+                assertEquals(plain.getBeaten(x, y), shared.getBeaten(x, y));
+            }
+        }
+        assertEquals(plain.checkAllFlagged(), shared.checkAllFlagged());
+        assertEquals(plain.endGame().size(), shared.endGame().size());
+        assertTrue(shared.isLost());
+    }
+
+    @Test
+    public void roomsBroadcastTheirChanges() throws InterruptedException {
+        SharedGames games = new SharedGames(64, 10, new MoveJournal("", 1024, 1000), GameExecutors.platform());
+        try {
+            LinkedBlockingQueue<ChangeSet> first = new LinkedBlockingQueue<>();
+            LinkedBlockingQueue<ChangeSet> second = new LinkedBlockingQueue<>();
+            SharedGames.Participant one = first::add;
+            SharedGames.Participant two = second::add;
+            SharedGames.Room room = games.join("room", one);
+            assertSame(room, games.join("room", two));
+            assertEquals(2, room.getParticipants());
+
+            room.getBoard().flagNext(5, 5);
+            room.getBoard().flagNext(5, 5);
+            ChangeSet received = first.poll(5, TimeUnit.SECONDS);
+            assertNotNull(received);
+            assertEquals(1, received.size());
+            assertSame(received, second.poll(5, TimeUnit.SECONDS));
+
+            games.leave(room, one);
+            assertSame(room, games.getRoom("room"));
+            games.leave(room, two);
+            assertNull(games.getRoom("room"));
+        } finally {
+            games.close();
+        }
+    }
+
+    @Test
+    public void aLostRoomStartsAfresh() {
+        SharedGames games = new SharedGames(16, 10_000, new MoveJournal("", 1024, 1000), GameExecutors.platform());
+        try {
+            SharedGames.Participant player = changes -> {};
+            SharedGames.Room room = games.join("room", player);
+            room.getBoard().endGame();
+            SharedGames.Room next = games.join("room", changes -> {});
+            assertNotSame(room, next);
+            assertFalse(next.getBoard().isLost());
+            // leaving the lost room doesn't close the new one
+            games.leave(room, player);
+            assertSame(next, games.getRoom("room"));
+        } finally {
+            games.close();
+        }
+    }
+}
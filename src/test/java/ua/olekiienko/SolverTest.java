@@ -0,0 +1,104 @@
+package ua.olekiienko;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+import ua.oleksiienko.entities.Board;
+import ua.oleksiienko.entities.GameBoard;
+import ua.oleksiienko.entities.Piece;
+import ua.oleksiienko.solver.Deduction;
+import ua.oleksiienko.solver.Position;
+import ua.oleksiienko.solver.Solver;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SolverTest {
+
+    private final Solver solver = new Solver();
+
+    @RepeatedTest(30)
+    public void deductionsHoldOnRealBoards() {
+        for (int size : new int[]{8, 13}) {
+            GameBoard board = GameBoard.of(size, ThreadLocalRandom.current().nextLong());
+            openFirstEmpty(board);
+            Deduction deduction = solver.solve(board);
+            assertTrue(deduction.isConsistent(), "seed " + board.getSeed());
+            for (int x = 0; x < size; x++) {
+                for (int y = 0; y < size; y++) {
+                    int actual = 1 << Position.valueOf(board.getPiece(x, y));
+                    assertNotEquals(0, deduction.getPossible(x, y) & actual, "seed " + board.getSeed() + " at " + x + "," + y);
+                    if (deduction.isSafe(x, y)) {
+                        assertNull(board.getPiece(x, y));
+                    }
+                    if (deduction.getForcedPiece(x, y) != null) {
+                        assertEquals(board.getPiece(x, y), deduction.getForcedPiece(x, y));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void contradictionIsReported() {
+        Position position = new Position(3, 1);
+        for (int x = 0; x < 3; x++) {
+            for (int y = 0; y < 3; y++) {
+                position.open(x, y, 0);
+            }
+        }
+        position.open(1, 1, 1);
+        assertFalse(solver.solve(position).isConsistent());
+    }
+
+    @Test
+    public void lastCellIsForcedKnight() {
+        // a knight in the corner attacks exactly (0,1) and (1,0)
+        Position position = new Position(3, 1);
+        for (int x = 0; x < 3; x++) {
+            for (int y = 0; y < 3; y++) {
+                if (x != 2 || y != 2) position.open(x, y, x + y == 1 ? 1 : 0);
+            }
+        }
+        Deduction deduction = solver.solve(position);
+        assertTrue(deduction.isConsistent());
+        assertTrue(deduction.isSolved());
+        assertEquals(Piece.KNIGHT, deduction.getForcedPiece(2, 2));
+    }
+
+    @Test
+    public void layoutsCompletedByPropagationAreKept() {
+        // ruling out a bishop forces the last rook; the six pieces are all the board has
+        String[] rows = {
+                ". 2 0 1 1 0 1 0",
+                "1 1 0 0 1 B 0 0",
+                ". R N 1 2 1 1 0",
+                ". . . 2 K 1 0 1",
+                "1 R 2 3 2 2 1 1",
+                ". 2 0 0 0 0 0 0",
+                ". 2 1 0 0 0 0 0",
+                ". K 1 0 0 0 0 0"};
+        Position position = new Position(8, 6);
+        for (int y = 0; y < 8; y++) {
+            String[] cells = rows[y].split(" ");
+            for (int x = 0; x < 8; x++) {
+                if (Character.isDigit(cells[x].charAt(0))) position.open(x, y, cells[x].charAt(0) - '0');
+            }
+        }
+        Deduction deduction = solver.solve(position);
+        assertTrue(deduction.isConsistent());
+        assertNotEquals(0, deduction.getPossible(1, 2) & 1 << Position.valueOf(Piece.ROOK));
+        assertNotEquals(0, deduction.getPossible(2, 2) & 1 << Position.valueOf(Piece.KNIGHT));
+    }
+
+    private static void openFirstEmpty(GameBoard board) {
+        for (int x = 0; x < board.getSize(); x++) {
+            for (int y = 0; y < board.getSize(); y++) {
+                if (board.getStatus(x, y) == Board.CellStatus.EMPTY && board.getBeaten(x, y) == 0) {
+                    board.openCell(x, y, true);
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package ua.olekiienko;
+
+import org.junit.jupiter.api.Test;
+import ua.oleksiienko.entities.Board;
+import ua.oleksiienko.utils.BoardPainter;
+import ua.oleksiienko.utils.CanvasCommandBuffer;
+import ua.oleksiienko.utils.Viewport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ViewportTest {
+
+    @Test
+    public void clicksMapThroughTheWindow() {
+        Viewport viewport = new Viewport(1000, 10, 32, 50);
+        assertEquals(0, viewport.tileX(5));
+        assertEquals(-1, viewport.tileX(4));
+        assertEquals(9, viewport.tileX(504));
+        assertEquals(-1, viewport.tileX(505));
+
+        assertTrue(viewport.pan(100, 3));
+        assertEquals(100, viewport.tileX(5));
+        assertEquals(4, viewport.tileY(55));
+        assertEquals(5, viewport.left(100));
+        assertTrue(viewport.isVisible(109, 12));
+        assertFalse(viewport.isVisible(110, 12));
+    }
+
+    @Test
+    public void panStopsAtTheEdges() {
+        Viewport viewport = new Viewport(1000, 10, 32, 50);
+        assertFalse(viewport.pan(-1, -1));
+        viewport.pan(5000, 5000);
+        assertEquals(990, viewport.getOriginX());
+        assertEquals(990, viewport.getOriginY());
+        assertFalse(viewport.pan(1, 0));
+    }
+
+    @Test
+    public void zoomKeepsTheCanvasAndTheAnchor() {
+        Viewport viewport = new Viewport(1000, 16, 32, 40);
+        viewport.pan(500, 500);
+        int canvas = viewport.getCanvasSize();
+        int anchor = viewport.tileX(325);
+
+        assertTrue(viewport.zoom(-3, 325, 325));
+        assertTrue(viewport.getTiles() > 16);
+        assertEquals(anchor, viewport.tileX(325), 1);
+        assertEquals(canvas, viewport.getCanvasSize(), 1);
+
+        while (viewport.zoom(-1, 0, 0)) ;
+        assertEquals(32, viewport.getTiles());
+        while (viewport.zoom(1, 0, 0)) ;
+        assertEquals(4, viewport.getTiles());
+    }
+
+    @Test
+    public void painterDrawsOnlyTheWindow() {
+        Board board = new Board(1000, 42);
+        Viewport viewport = new Viewport(1000, 10, 32, 50);
+        CanvasCommandBuffer commands = new CanvasCommandBuffer(batch -> {});
+        BoardPainter painter = new BoardPainter(board, commands, viewport, () -> {});
+
+        painter.paintBoard();
+        long window = commands.getRecordedCount();
+        assertTrue(window <= 10 * 10 * 4);
+        painter.paintTile(500, 500);
+        assertEquals(window, commands.getRecordedCount());
+        viewport.pan(495, 495);
+        painter.paintTile(500, 500);
+        assertTrue(commands.getRecordedCount() > window);
+    }
+}